@@ -1,21 +1,43 @@
 package com.burchard36.bukkit;
 
+import com.burchard36.bukkit.capability.EnergyBlockIndex;
+import com.burchard36.bukkit.command.EnergyCommand;
 import com.burchard36.bukkit.capability.EnergyFactory;
+import com.burchard36.bukkit.capability.EnergySavePipeline;
 import com.burchard36.bukkit.energy.BukkitEnergy;
+import com.burchard36.bukkit.energy.EnergySlabs;
 import com.burchard36.bukkit.energy.IEnergyStorage;
+import com.burchard36.bukkit.energy.SlabEnergy;
+import com.burchard36.bukkit.metrics.BukkitEnergyMetrics;
+import com.burchard36.bukkit.metrics.EnergyMetrics;
+import com.burchard36.bukkit.network.NetworkTickExecutor;
+import com.burchard36.bukkit.network.ParallelTickExecutor;
+import com.burchard36.bukkit.scheduler.EnergyScheduler;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.command.PluginCommand;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.world.WorldSaveEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.function.Function;
 
 public final class BukkitEnergyPlugin extends JavaPlugin implements Listener {
 
     private static BukkitEnergyPlugin INSTANCE;
     private final HashMap<Class<?>, EnergyFactory<?>> registeredEnergyFactorys = new HashMap<>();
+    private final EnergyBlockIndex energyBlockIndex = new EnergyBlockIndex();
+    private final EnergySavePipeline savePipeline = new EnergySavePipeline();
+    private final EnergyScheduler energyScheduler = new EnergyScheduler();
+    private final EnergySlabs energySlabs = new EnergySlabs();
+    private final BukkitEnergyMetrics metrics = new BukkitEnergyMetrics();
+    private NetworkTickExecutor networkTickExecutor = NetworkTickExecutor.DIRECT;
+    private int networkRegionShift = -1;
 
     @Override
     public void onLoad() {
@@ -25,11 +47,41 @@ public final class BukkitEnergyPlugin extends JavaPlugin implements Listener {
     @Override
     public void onEnable() {
         INSTANCE = this;
+        this.saveDefaultConfig();
+        final int networkThreads = this.getConfig().getInt("networks.parallel-threads", 0);
+        if (networkThreads > 0) {
+            this.setNetworkTickExecutor(new ParallelTickExecutor(networkThreads), this.getConfig().getInt("networks.region-shift", 3));
+        }
+        Bukkit.getPluginManager().registerEvents(this.energyBlockIndex, this);
+        this.getDefaultEnergyFactory().setPreloadChunks(this.getConfig().getBoolean("preload-chunks", false));
+        this.savePipeline.setTickBudgetMillis(this.getConfig().getDouble("save.tick-budget-ms", 2.0D));
+        this.savePipeline.start(this);
+        Bukkit.getPluginManager().registerEvents(this.energyScheduler, this);
+        this.energyScheduler.setTickBudgetMillis(this.getConfig().getDouble("scheduler.tick-budget-ms", 10.0D));
+        this.energyScheduler.start(this);
+        this.metrics.start(this);
+        final PluginCommand energyCommand = this.getCommand("energy");
+        if (energyCommand != null) {
+            final EnergyCommand executor = new EnergyCommand(this);
+            energyCommand.setExecutor(executor);
+            energyCommand.setTabCompleter(executor);
+        }
     }
 
     @Override
     public void onDisable() {
-        // Plugin shutdown logic
+        this.energyScheduler.stop();
+        this.metrics.stop();
+        /* Worlds are saved after plugins are disabled, so nothing would write the energy data after this */
+        this.registeredEnergyFactorys.values().forEach(EnergyFactory::saveAll);
+        this.savePipeline.shutdown();
+        if (this.networkTickExecutor instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                this.getLogger().warning("Could not stop the network tick executor " + e);
+            }
+        }
     }
 
     @EventHandler
@@ -45,6 +97,72 @@ public final class BukkitEnergyPlugin extends JavaPlugin implements Listener {
         return INSTANCE;
     }
 
+    /**
+     * Gets the index of which blocks hold energy data, shared by every {@link EnergyFactory}
+     * @return the {@link EnergyBlockIndex}
+     */
+    public EnergyBlockIndex getEnergyBlockIndex() {
+        return this.energyBlockIndex;
+    }
+
+    /**
+     * Gets the pipeline writing energy data to PDC over several ticks, shared by every {@link EnergyFactory}
+     * @return the {@link EnergySavePipeline}
+     */
+    public EnergySavePipeline getSavePipeline() {
+        return this.savePipeline;
+    }
+
+    /**
+     * Gets the scheduler machines should register their tick logic with, instead of running their own tasks
+     * @return the {@link EnergyScheduler}
+     */
+    public EnergyScheduler getEnergyScheduler() {
+        return this.energyScheduler;
+    }
+
+    /**
+     * Gets the counters & timers of the energy layer, also shown by {@code /energy stats}
+     * @return the {@link EnergyMetrics}
+     */
+    public EnergyMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Used by the energy layer to record its {@link EnergyMetrics}, plugins only need {@link #getMetrics()}
+     * @return the {@link BukkitEnergyMetrics}
+     */
+    public BukkitEnergyMetrics getMetricsRecorder() {
+        return this.metrics;
+    }
+
+    /**
+     * @return every registered {@link EnergyFactory}
+     */
+    public Collection<EnergyFactory<?>> getEnergyFactories() {
+        return Collections.unmodifiableCollection(this.registeredEnergyFactorys.values());
+    }
+
+    /**
+     * Sets the executor & shard size used by network managers created after this call, a plugin adapting BukkitEnergy
+     * to a regionized server calls this before any factory creates its {@link com.burchard36.bukkit.network.EnergyNetworkManager}
+     * @param networkTickExecutor runs the tick of every network shard
+     * @param networkRegionShift a shard spans {@code 2^networkRegionShift} chunks on each axis, negative for a single shard per world
+     */
+    public void setNetworkTickExecutor(final NetworkTickExecutor networkTickExecutor, final int networkRegionShift) {
+        this.networkTickExecutor = networkTickExecutor;
+        this.networkRegionShift = networkRegionShift;
+    }
+
+    public NetworkTickExecutor getNetworkTickExecutor() {
+        return this.networkTickExecutor;
+    }
+
+    public int getNetworkRegionShift() {
+        return this.networkRegionShift;
+    }
+
     /**
      * Gets a {@link EnergyFactory} for easily managing IEnergyStorage blocks
      * @param energyStorage A Class implementing {@link IEnergyStorage} you want to get/register
@@ -52,8 +170,22 @@ public final class BukkitEnergyPlugin extends JavaPlugin implements Listener {
      * @param <T> the generic
      */
     public <T extends IEnergyStorage> EnergyFactory<T> getEnergyFactory(Class<T> energyStorage) {
+        return this.getEnergyFactory(energyStorage, null);
+    }
+
+    /**
+     * Gets a {@link EnergyFactory} that creates its IEnergyStorages with the given function, skipping reflection
+     * If the class already has a registered factory that one is returned and the function is ignored
+     * @param energyStorage A Class implementing {@link IEnergyStorage} you want to get/register
+     * @param constructor creates a new IEnergyStorage for a {@link Block}, for example {@code MyEnergy::new}. May be null to use reflection
+     * @return the singleton instance of the EnergyFactory
+     * @param <T> the generic
+     */
+    public <T extends IEnergyStorage> EnergyFactory<T> getEnergyFactory(Class<T> energyStorage, Function<Block, T> constructor) {
         this.registeredEnergyFactorys.computeIfAbsent(energyStorage, (v) -> {
-            final EnergyFactory<T> energyFactory = new EnergyFactory<>(energyStorage);
+            final EnergyFactory<T> energyFactory = constructor == null
+                    ? new EnergyFactory<>(energyStorage)
+                    : new EnergyFactory<>(energyStorage, constructor);
             Bukkit.getPluginManager().registerEvents(energyFactory, this);
             return energyFactory;
         });
@@ -66,6 +198,24 @@ public final class BukkitEnergyPlugin extends JavaPlugin implements Listener {
      * @return a singleton {@link EnergyFactory} you may use to get & create energy blocks
      */
     public EnergyFactory<BukkitEnergy> getDefaultEnergyFactory() {
-        return this.getEnergyFactory(BukkitEnergy.class);
+        return this.getEnergyFactory(BukkitEnergy.class, BukkitEnergy::new);
+    }
+
+    /**
+     * Returns the energy factory for servers with huge amounts of energy blocks, its {@link SlabEnergy}s behave like
+     * {@link BukkitEnergy}s & share the same PDC data, but keep their state in primitive arrays, see {@link EnergySlabs}.
+     * A block is held by one factory at a time, a block already loaded by another factory is not handed out by this one
+     * @return a singleton {@link EnergyFactory} you may use to get & create energy blocks
+     */
+    public EnergyFactory<SlabEnergy> getSlabEnergyFactory() {
+        return this.getEnergyFactory(SlabEnergy.class, this.energySlabs::allocate);
+    }
+
+    /**
+     * Gets the slots of every {@link SlabEnergy} of {@link #getSlabEnergyFactory()}, to count or sum them without touching a block
+     * @return the {@link EnergySlabs}
+     */
+    public EnergySlabs getEnergySlabs() {
+        return this.energySlabs;
     }
 }
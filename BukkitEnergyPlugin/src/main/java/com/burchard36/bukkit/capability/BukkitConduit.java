@@ -0,0 +1,50 @@
+package com.burchard36.bukkit.capability;
+
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Default {@link IEnergyConduit}, with a throughput for each of the 6 faces of its block
+ *
+ * The throughput is only read when the network compiles,
+ * call {@link com.burchard36.bukkit.network.EnergyNetworkManager#refreshConduit(IEnergyConduit)} after changing it
+ */
+public class BukkitConduit implements IEnergyConduit {
+
+    /* NORTH, EAST, SOUTH, WEST, UP & DOWN are the first 6 constants of BlockFace */
+    private static final int FACE_COUNT = 6;
+
+    private final Block block;
+    private final int[] throughput = new int[FACE_COUNT];
+
+    /**
+     * @param block the {@link Block} of the conduit
+     * @param throughput the max energy per tick through every face
+     */
+    public BukkitConduit(final @NonNull Block block, final int throughput) {
+        this.block = block;
+        Arrays.fill(this.throughput, Math.max(0, throughput));
+    }
+
+    @Override
+    public final Block getBlock() {
+        return this.block;
+    }
+
+    @Override
+    public final int getThroughput(final @NonNull BlockFace face) {
+        return face.ordinal() < FACE_COUNT ? this.throughput[face.ordinal()] : 0;
+    }
+
+    /**
+     * @param face the {@link BlockFace} to change, only NORTH, EAST, SOUTH, WEST, UP & DOWN exist
+     * @param throughput the max energy per tick through the face, 0 to close it
+     */
+    public final void setThroughput(final @NonNull BlockFace face, final int throughput) {
+        if (face.ordinal() >= FACE_COUNT) throw new RuntimeException("A conduit has no %s face".formatted(face));
+        this.throughput[face.ordinal()] = Math.max(0, throughput);
+    }
+}
@@ -0,0 +1,237 @@
+package com.burchard36.bukkit.capability;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.bukkit.energy.EnergyStorageData;
+import com.burchard36.energy.core.BlockKey;
+import com.burchard36.energy.core.LongObjectMap;
+import com.jeff_media.customblockdata.CustomBlockData;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.persistence.PersistentDataContainer;
+
+/**
+ * Chunk level membership index answering "is there an energy block here" from memory
+ *
+ * Every chunk gets a bitset per 16x16x16 section, allocated only for sections that actually hold energy blocks.
+ * A chunk is scanned from PDC once, the first time it is queried, after that hits and misses never touch PDC.
+ * The index is shared by every {@link EnergyFactory}, since they all share the same PDC keys. For the same reason it
+ * tracks which factory holds the storage of every loaded block, two storages of one block would overwrite each other's PDC.
+ * Chunks & worlds are dropped from the index when they unload, and scanned again the next time they are queried.
+ */
+public final class EnergyBlockIndex implements Listener {
+
+    private static final int SECTION_WORDS = 4096 / Long.SIZE;
+
+    private final WorldSlots<WorldIndex> worldIndexes = new WorldSlots<>();
+
+    /**
+     * Checks if the given position holds an energy block, scanning the chunk from PDC if it was not indexed yet
+     * @param world {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @return true if there is an energy block at the position
+     */
+    public boolean contains(final World world, final int x, final int y, final int z) {
+        final WorldIndex worldIndex = this.getWorldIndex(world);
+        final long chunkKey = BlockKey.chunkKeyOfBlock(x, z);
+        ChunkIndex chunkIndex = worldIndex.getChunk(chunkKey);
+        if (chunkIndex == null) chunkIndex = this.indexChunk(worldIndex, world.getChunkAt(x >> 4, z >> 4));
+        return chunkIndex.get(x, y, z);
+    }
+
+    /**
+     * Marks a position as holding an energy block
+     * @param world {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     */
+    public void add(final World world, final int x, final int y, final int z) {
+        final WorldIndex worldIndex = this.getWorldIndex(world);
+        final long chunkKey = BlockKey.chunkKeyOfBlock(x, z);
+        ChunkIndex chunkIndex = worldIndex.getChunk(chunkKey);
+        /* Index the chunk first, otherwise a later scan would be skipped and miss the other blocks of this chunk */
+        if (chunkIndex == null) chunkIndex = this.indexChunk(worldIndex, world.getChunkAt(x >> 4, z >> 4));
+        chunkIndex.set(x, y, z, true);
+    }
+
+    /**
+     * Marks a position as no longer holding an energy block
+     * @param world {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     */
+    public void remove(final World world, final int x, final int y, final int z) {
+        final ChunkIndex chunkIndex = this.getWorldIndex(world).getChunk(BlockKey.chunkKeyOfBlock(x, z));
+        if (chunkIndex != null) chunkIndex.set(x, y, z, false);
+    }
+
+    /**
+     * Claims a block for the factory about to hold its storage, every factory has to claim a block before registering it
+     * @param world {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @param owner the claiming {@link EnergyFactory}
+     * @return true if the block was not claimed yet, or already claimed by the owner
+     */
+    public boolean claim(final World world, final int x, final int y, final int z, final EnergyFactory<?> owner) {
+        return this.getWorldIndex(world).claim(BlockKey.pack(x, y, z), owner);
+    }
+
+    /**
+     * Gives up the claim of a factory on a block, once its storage left the factory
+     * @param world {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @param owner the {@link EnergyFactory} that claimed the block, claims of any other factory are kept
+     */
+    public void unclaim(final World world, final int x, final int y, final int z, final EnergyFactory<?> owner) {
+        final WorldIndex worldIndex = this.worldIndexes.get(world);
+        if (worldIndex != null) worldIndex.unclaim(BlockKey.pack(x, y, z), owner);
+    }
+
+    /**
+     * Scans a chunk from PDC in a single pass, replacing whatever was indexed for it
+     * @param chunk the {@link Chunk} to scan
+     * @param visitor receives every energy block found & its data container, may be null
+     */
+    public void scanChunk(final Chunk chunk, final ChunkScanVisitor visitor) {
+        final WorldIndex worldIndex = this.getWorldIndex(chunk.getWorld());
+        final ChunkIndex chunkIndex = this.readChunk(worldIndex, chunk, visitor);
+        worldIndex.putChunk(BlockKey.chunkKey(chunk.getX(), chunk.getZ()), chunkIndex);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(final ChunkUnloadEvent unloadEvent) {
+        final Chunk chunk = unloadEvent.getChunk();
+        final WorldIndex worldIndex = this.worldIndexes.get(chunk.getWorld());
+        if (worldIndex != null) worldIndex.removeChunk(BlockKey.chunkKey(chunk.getX(), chunk.getZ()));
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final WorldUnloadEvent unloadEvent) {
+        this.worldIndexes.remove(unloadEvent.getWorld());
+    }
+
+    private WorldIndex getWorldIndex(final World world) {
+        final WorldIndex worldIndex = this.worldIndexes.get(world);
+        if (worldIndex != null) return worldIndex;
+        return this.worldIndexes.getOrCreate(world, () -> new WorldIndex(world.getMinHeight(), world.getMaxHeight()));
+    }
+
+    /**
+     * Cold path, reads every custom block of the chunk once and records the energy blocks
+     */
+    private ChunkIndex indexChunk(final WorldIndex worldIndex, final Chunk chunk) {
+        final ChunkIndex chunkIndex = this.readChunk(worldIndex, chunk, null);
+        return worldIndex.putChunkIfAbsent(BlockKey.chunkKey(chunk.getX(), chunk.getZ()), chunkIndex);
+    }
+
+    private ChunkIndex readChunk(final WorldIndex worldIndex, final Chunk chunk, final ChunkScanVisitor visitor) {
+        final ChunkIndex chunkIndex = new ChunkIndex(worldIndex.minSection, worldIndex.sectionCount);
+        final BukkitEnergyPlugin plugin = BukkitEnergyPlugin.getInstance();
+        for (final Block block : CustomBlockData.getBlocksWithCustomData(plugin, chunk)) {
+            final PersistentDataContainer dataContainer = new CustomBlockData(block, plugin);
+            if (!EnergyStorageData.isEnergyData(dataContainer)) continue;
+            chunkIndex.set(block.getX(), block.getY(), block.getZ(), true);
+            if (visitor != null) visitor.visit(block, dataContainer);
+        }
+        return chunkIndex;
+    }
+
+    /**
+     * Receives the energy blocks found while scanning a chunk
+     */
+    @FunctionalInterface
+    public interface ChunkScanVisitor {
+        void visit(final Block block, final PersistentDataContainer dataContainer);
+    }
+
+    private static final class WorldIndex {
+        private final int minSection;
+        private final int sectionCount;
+        private final LongObjectMap<ChunkIndex> chunks = new LongObjectMap<>(64);
+        /* the factory holding the storage of every loaded block, see BlockKey#pack */
+        private final LongObjectMap<EnergyFactory<?>> owners = new LongObjectMap<>(64);
+
+        WorldIndex(final int minHeight, final int maxHeight) {
+            this.minSection = minHeight >> 4;
+            this.sectionCount = ((maxHeight - 1) >> 4) - this.minSection + 1;
+        }
+
+        synchronized ChunkIndex getChunk(final long chunkKey) {
+            return this.chunks.get(chunkKey);
+        }
+
+        synchronized ChunkIndex putChunkIfAbsent(final long chunkKey, final ChunkIndex chunkIndex) {
+            final ChunkIndex existing = this.chunks.putIfAbsent(chunkKey, chunkIndex);
+            return existing == null ? chunkIndex : existing;
+        }
+
+        synchronized void putChunk(final long chunkKey, final ChunkIndex chunkIndex) {
+            this.chunks.put(chunkKey, chunkIndex);
+        }
+
+        synchronized void removeChunk(final long chunkKey) {
+            this.chunks.remove(chunkKey);
+        }
+
+        synchronized boolean claim(final long position, final EnergyFactory<?> owner) {
+            final EnergyFactory<?> existing = this.owners.putIfAbsent(position, owner);
+            return existing == null || existing == owner;
+        }
+
+        synchronized void unclaim(final long position, final EnergyFactory<?> owner) {
+            if (this.owners.get(position) == owner) this.owners.remove(position);
+        }
+    }
+
+    /**
+     * One bit per block of the chunk, sections without any energy block stay null
+     */
+    private static final class ChunkIndex {
+        private final int minSection;
+        private final long[][] sections;
+
+        ChunkIndex(final int minSection, final int sectionCount) {
+            this.minSection = minSection;
+            this.sections = new long[sectionCount][];
+        }
+
+        synchronized boolean get(final int x, final int y, final int z) {
+            final int section = (y >> 4) - this.minSection;
+            if (section < 0 || section >= this.sections.length) return false;
+            final long[] bits = this.sections[section];
+            if (bits == null) return false;
+            final int bit = bitIndex(x, y, z);
+            return (bits[bit >>> 6] & (1L << bit)) != 0;
+        }
+
+        synchronized void set(final int x, final int y, final int z, final boolean value) {
+            final int section = (y >> 4) - this.minSection;
+            if (section < 0 || section >= this.sections.length) return;
+            long[] bits = this.sections[section];
+            if (bits == null) {
+                if (!value) return;
+                bits = this.sections[section] = new long[SECTION_WORDS];
+            }
+            final int bit = bitIndex(x, y, z);
+            if (value) bits[bit >>> 6] |= 1L << bit;
+            else bits[bit >>> 6] &= ~(1L << bit);
+        }
+
+        private static int bitIndex(final int x, final int y, final int z) {
+            return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        }
+    }
+}
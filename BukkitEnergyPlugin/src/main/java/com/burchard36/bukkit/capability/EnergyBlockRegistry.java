@@ -0,0 +1,384 @@
+package com.burchard36.bukkit.capability;
+
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import com.burchard36.bukkit.energy.ILongEnergyStorage;
+import com.burchard36.energy.core.BlockKey;
+import com.burchard36.energy.core.LongObjectMap;
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * In memory index of loaded energy blocks for a {@link EnergyFactory}
+ *
+ * Blocks are split per world, then per chunk, and each level is a primitive {@link LongObjectMap}.
+ * A lookup never allocates a {@link org.bukkit.Location} or boxes a key, it only needs a {@link World} and block coordinates.
+ * Lookups & visits never lock, every world table publishes its chunks copy-on-write & only writers take its monitor,
+ * so separate worlds never contend.
+ * @param <T> the {@link IEnergyStorage} implementation stored
+ */
+public final class EnergyBlockRegistry<T extends IEnergyStorage> {
+
+    private final WorldSlots<WorldTable<T>> worldTables = new WorldSlots<>();
+
+    /**
+     * Gets the storage registered at the given position
+     * @param world the {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @return the registered storage, or null if nothing is registered there
+     */
+    public T get(final World world, final int x, final int y, final int z) {
+        final WorldTable<T> table = this.worldTables.get(world);
+        if (table == null) return null;
+        return table.get(x, y, z);
+    }
+
+    /**
+     * Registers a storage at the given position unless one is already present
+     * @param world the {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @param energyImpl the storage to register
+     * @return the storage now registered at the position, either {@code energyImpl} or the one that was already present
+     */
+    public T putIfAbsent(final World world, final int x, final int y, final int z, final T energyImpl) {
+        return this.worldTables.getOrCreate(world, WorldTable::new).putIfAbsent(x, y, z, energyImpl);
+    }
+
+    /**
+     * Removes the storage registered at the given position
+     * @param world the {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @return the removed storage, or null if nothing was registered there
+     */
+    public T remove(final World world, final int x, final int y, final int z) {
+        final WorldTable<T> table = this.worldTables.get(world);
+        if (table == null) return null;
+        return table.remove(x, y, z);
+    }
+
+    /**
+     * Removes every storage registered in a chunk, typically when the chunk unloads
+     * @param world the {@link World} of the chunk
+     * @param chunkX chunk X
+     * @param chunkZ chunk Z
+     * @param removed receives every removed storage
+     */
+    public void removeChunk(final World world, final int chunkX, final int chunkZ, final Consumer<? super T> removed) {
+        final WorldTable<T> table = this.worldTables.get(world);
+        if (table != null) table.removeChunk(BlockKey.chunkKey(chunkX, chunkZ), removed);
+    }
+
+    /**
+     * Removes every storage registered in a world, typically when the world unloads
+     * @param world the {@link World} to drop
+     * @param removed receives every removed storage
+     */
+    public void removeWorld(final World world, final Consumer<? super T> removed) {
+        final WorldTable<T> table = this.worldTables.remove(world);
+        if (table != null) table.forEach((x, y, z, energyImpl) -> removed.accept(energyImpl));
+    }
+
+    /**
+     * Visits every storage registered in a world, the visitor must not modify this registry
+     * @param world the {@link World} to visit
+     * @param visitor the visitor
+     */
+    public void forEach(final World world, final BlockVisitor<? super T> visitor) {
+        final WorldTable<T> table = this.worldTables.get(world);
+        if (table != null) table.forEach(visitor);
+    }
+
+    /**
+     * Visits every storage registered across every world, the visitor must not modify this registry
+     * @param consumer the visitor
+     */
+    public void forEach(final Consumer<? super T> consumer) {
+        this.worldTables.forEach((table) -> table.forEach((x, y, z, energyImpl) -> consumer.accept(energyImpl)));
+    }
+
+    /**
+     * Visits every storage registered in a chunk, the visitor must not modify this registry
+     * @param world the {@link World} of the chunk
+     * @param chunkX chunk X
+     * @param chunkZ chunk Z
+     * @param visitor the visitor
+     */
+    public void forEachInChunk(final World world, final int chunkX, final int chunkZ, final BlockVisitor<? super T> visitor) {
+        final WorldTable<T> table = this.worldTables.get(world);
+        if (table != null) table.forEachInChunk(BlockKey.chunkKey(chunkX, chunkZ), visitor);
+    }
+
+    /**
+     * Visits every storage registered inside a box of blocks, the visitor must not modify this registry.
+     * Only the chunks overlapping the box are looked at
+     * @param world the {@link World} to visit
+     * @param minX lowest block X, inclusive
+     * @param minY lowest block Y, inclusive
+     * @param minZ lowest block Z, inclusive
+     * @param maxX highest block X, inclusive
+     * @param maxY highest block Y, inclusive
+     * @param maxZ highest block Z, inclusive
+     * @param visitor the visitor
+     */
+    public void forEachInRegion(final World world, final int minX, final int minY, final int minZ,
+                                final int maxX, final int maxY, final int maxZ, final BlockVisitor<? super T> visitor) {
+        if (minX > maxX || minY > maxY || minZ > maxZ) return;
+        final WorldTable<T> table = this.worldTables.get(world);
+        if (table != null) table.forEachInRegion(minX, minY, minZ, maxX, maxY, maxZ, visitor);
+    }
+
+    /**
+     * Sums the energy stored inside a box of blocks, see {@link #forEachInRegion}
+     * @return the total stored energy, {@link ILongEnergyStorage}s count with their full long amount
+     */
+    public long sumStored(final World world, final int minX, final int minY, final int minZ,
+                          final int maxX, final int maxY, final int maxZ) {
+        final long[] sum = {0};
+        this.forEachInRegion(world, minX, minY, minZ, maxX, maxY, maxZ, (x, y, z, energyImpl) -> sum[0] += storedOf(energyImpl));
+        return sum[0];
+    }
+
+    /**
+     * Sums the energy stored in a chunk
+     * @return the total stored energy, {@link ILongEnergyStorage}s count with their full long amount
+     */
+    public long sumStoredInChunk(final World world, final int chunkX, final int chunkZ) {
+        final long[] sum = {0};
+        this.forEachInChunk(world, chunkX, chunkZ, (x, y, z, energyImpl) -> sum[0] += storedOf(energyImpl));
+        return sum[0];
+    }
+
+    private static long storedOf(final IEnergyStorage energyImpl) {
+        if (energyImpl instanceof ILongEnergyStorage longStorage) return longStorage.getStoredEnergyLong();
+        return energyImpl.getStoredEnergy();
+    }
+
+    /**
+     * @return the total amount of storages registered across every world
+     */
+    public int size() {
+        final int[] size = {0};
+        this.worldTables.forEach((table) -> size[0] += table.size());
+        return size[0];
+    }
+
+    /**
+     * @param world the {@link World} to check
+     * @return the amount of storages registered in the given world
+     */
+    public int size(final World world) {
+        final WorldTable<T> table = this.worldTables.get(world);
+        return table == null ? 0 : table.size();
+    }
+
+    /**
+     * Primitive visitor over registered blocks
+     * @param <T> the storage type
+     */
+    @FunctionalInterface
+    public interface BlockVisitor<T> {
+        void visit(final int x, final int y, final int z, final T energyImpl);
+    }
+
+    /**
+     * All energy blocks of a single world, keyed by chunk
+     *
+     * Reads never lock, the chunk tables are published through a copy-on-write map like {@link WorldSlots} does.
+     * Only writers hold the monitor of the table, the map is copied when a chunk gains its first block or loses its last
+     */
+    private static final class WorldTable<T> {
+        private volatile LongObjectMap<ChunkTable<T>> chunks = new LongObjectMap<>(64);
+        private volatile int size = 0;
+
+        T get(final int x, final int y, final int z) {
+            final ChunkTable<T> chunk = this.chunks.get(BlockKey.chunkKeyOfBlock(x, z));
+            if (chunk == null) return null;
+            return chunk.get(BlockKey.localIndex(x, y, z));
+        }
+
+        synchronized T putIfAbsent(final int x, final int y, final int z, final T energyImpl) {
+            final long chunkKey = BlockKey.chunkKeyOfBlock(x, z);
+            ChunkTable<T> chunk = this.chunks.get(chunkKey);
+            if (chunk == null) {
+                chunk = new ChunkTable<>(chunkKey);
+                final LongObjectMap<ChunkTable<T>> chunks = this.copyChunks(1);
+                chunks.put(chunkKey, chunk);
+                this.chunks = chunks;
+            }
+            final T existing = chunk.putIfAbsent(BlockKey.localIndex(x, y, z), energyImpl);
+            if (existing != null) return existing;
+            this.size++;
+            return energyImpl;
+        }
+
+        synchronized T remove(final int x, final int y, final int z) {
+            final long chunkKey = BlockKey.chunkKeyOfBlock(x, z);
+            final ChunkTable<T> chunk = this.chunks.get(chunkKey);
+            if (chunk == null) return null;
+            final T removed = chunk.remove(BlockKey.localIndex(x, y, z));
+            if (removed == null) return null;
+            this.size--;
+            if (chunk.size() == 0) this.dropChunk(chunkKey);
+            return removed;
+        }
+
+        void removeChunk(final long chunkKey, final Consumer<? super T> removed) {
+            final ChunkTable<T> chunk;
+            synchronized (this) {
+                chunk = this.chunks.get(chunkKey);
+                if (chunk == null) return;
+                this.dropChunk(chunkKey);
+                this.size -= chunk.size();
+            }
+            /* outside the lock, the chunk table is no longer reachable by anyone else */
+            chunk.forEach((x, y, z, energyImpl) -> removed.accept(energyImpl));
+        }
+
+        private void dropChunk(final long chunkKey) {
+            final LongObjectMap<ChunkTable<T>> chunks = this.copyChunks(0);
+            chunks.remove(chunkKey);
+            this.chunks = chunks;
+        }
+
+        /* published maps are never written again, every change goes to a copy */
+        private LongObjectMap<ChunkTable<T>> copyChunks(final int extra) {
+            final LongObjectMap<ChunkTable<T>> chunks = this.chunks;
+            final LongObjectMap<ChunkTable<T>> copy = new LongObjectMap<>(chunks.size() + extra);
+            chunks.forEach(copy::put);
+            return copy;
+        }
+
+        void forEach(final BlockVisitor<? super T> visitor) {
+            this.chunks.forEach((chunkKey, chunk) -> chunk.forEach(visitor));
+        }
+
+        void forEachInChunk(final long chunkKey, final BlockVisitor<? super T> visitor) {
+            final ChunkTable<T> chunk = this.chunks.get(chunkKey);
+            if (chunk != null) chunk.forEach(visitor);
+        }
+
+        void forEachInRegion(final int minX, final int minY, final int minZ,
+                             final int maxX, final int maxY, final int maxZ, final BlockVisitor<? super T> visitor) {
+            final LongObjectMap<ChunkTable<T>> chunks = this.chunks;
+            final int minChunkX = minX >> 4;
+            final int minChunkZ = minZ >> 4;
+            final int maxChunkX = maxX >> 4;
+            final int maxChunkZ = maxZ >> 4;
+            final BlockVisitor<T> filter = (x, y, z, energyImpl) -> {
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) visitor.visit(x, y, z, energyImpl);
+            };
+
+            /* look up the chunks of the box one by one when that is cheaper than walking every loaded chunk */
+            final long chunkSpan = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+            if (chunkSpan <= chunks.size()) {
+                for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                    for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                        final ChunkTable<T> chunk = chunks.get(BlockKey.chunkKey(chunkX, chunkZ));
+                        if (chunk != null) chunk.forEach(filter);
+                    }
+                }
+                return;
+            }
+            chunks.forEach((chunkKey, chunk) -> {
+                final int chunkX = BlockKey.chunkX(chunkKey);
+                final int chunkZ = BlockKey.chunkZ(chunkKey);
+                if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) chunk.forEach(filter);
+            });
+        }
+
+        int size() {
+            return this.size;
+        }
+    }
+
+    /**
+     * All energy blocks of a single chunk, sorted by {@link BlockKey#localIndex(int, int, int)}
+     *
+     * Copy-on-write like the chunk map of its {@link WorldTable}, so a lookup is a lock-free binary search.
+     * Chunks rarely hold more than a few hundred energy blocks, copying them on a write is cheaper than locking every read.
+     * Only written while holding the monitor of its {@link WorldTable}
+     */
+    private static final class ChunkTable<T> {
+        private static final Blocks EMPTY = new Blocks(new int[0], new Object[0]);
+
+        private final long chunkKey;
+        /* local indexes & storages are always swapped together, so readers never see a mismatched pair */
+        private volatile Blocks blocks = EMPTY;
+
+        ChunkTable(final long chunkKey) {
+            this.chunkKey = chunkKey;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(final int localIndex) {
+            final Blocks blocks = this.blocks;
+            final int index = Arrays.binarySearch(blocks.localIndexes, localIndex);
+            return index < 0 ? null : (T) blocks.storages[index];
+        }
+
+        /**
+         * @return the storage already registered at the index, null if the given one was added
+         */
+        @SuppressWarnings("unchecked")
+        T putIfAbsent(final int localIndex, final T energyImpl) {
+            final Blocks blocks = this.blocks;
+            final int index = Arrays.binarySearch(blocks.localIndexes, localIndex);
+            if (index >= 0) return (T) blocks.storages[index];
+            final int at = -index - 1;
+            final int length = blocks.localIndexes.length;
+            final int[] localIndexes = new int[length + 1];
+            final Object[] storages = new Object[length + 1];
+            System.arraycopy(blocks.localIndexes, 0, localIndexes, 0, at);
+            System.arraycopy(blocks.storages, 0, storages, 0, at);
+            localIndexes[at] = localIndex;
+            storages[at] = energyImpl;
+            System.arraycopy(blocks.localIndexes, at, localIndexes, at + 1, length - at);
+            System.arraycopy(blocks.storages, at, storages, at + 1, length - at);
+            this.blocks = new Blocks(localIndexes, storages);
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        T remove(final int localIndex) {
+            final Blocks blocks = this.blocks;
+            final int index = Arrays.binarySearch(blocks.localIndexes, localIndex);
+            if (index < 0) return null;
+            final int length = blocks.localIndexes.length;
+            if (length == 1) {
+                this.blocks = EMPTY;
+                return (T) blocks.storages[0];
+            }
+            final int[] localIndexes = new int[length - 1];
+            final Object[] storages = new Object[length - 1];
+            System.arraycopy(blocks.localIndexes, 0, localIndexes, 0, index);
+            System.arraycopy(blocks.storages, 0, storages, 0, index);
+            System.arraycopy(blocks.localIndexes, index + 1, localIndexes, index, length - index - 1);
+            System.arraycopy(blocks.storages, index + 1, storages, index, length - index - 1);
+            this.blocks = new Blocks(localIndexes, storages);
+            return (T) blocks.storages[index];
+        }
+
+        int size() {
+            return this.blocks.localIndexes.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(final BlockVisitor<? super T> visitor) {
+            final Blocks blocks = this.blocks;
+            for (int i = 0; i < blocks.localIndexes.length; i++) {
+                final long packed = BlockKey.packFromLocal(this.chunkKey, blocks.localIndexes[i]);
+                visitor.visit(BlockKey.unpackX(packed), BlockKey.unpackY(packed), BlockKey.unpackZ(packed), (T) blocks.storages[i]);
+            }
+        }
+
+        private record Blocks(int[] localIndexes, Object[] storages) {
+        }
+    }
+}
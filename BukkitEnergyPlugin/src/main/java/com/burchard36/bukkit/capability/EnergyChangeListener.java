@@ -0,0 +1,17 @@
+package com.burchard36.bukkit.capability;
+
+/**
+ * Told when a storage moves to another energy level, see {@link EnergyChangeNotifier}
+ * @param <T> the IEnergyStorage implementation
+ */
+@FunctionalInterface
+public interface EnergyChangeListener<T> {
+
+    /**
+     * Called on the main thread, at most once per storage per tick
+     * @param energyStorage the storage that changed
+     * @param previousLevel the level it was at during the previous dispatch
+     * @param level the level it is at now, see {@link EnergyChangeNotifier#EMPTY} & {@link EnergyChangeNotifier#getFullLevel()}
+     */
+    void onLevelChanged(final T energyStorage, final int previousLevel, final int level);
+}
@@ -0,0 +1,199 @@
+package com.burchard36.bukkit.capability;
+
+import com.burchard36.bukkit.energy.EnergyObserver;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import com.burchard36.bukkit.energy.ILongEnergyStorage;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+
+/**
+ * Tells {@link EnergyChangeListener}s when the storages of a {@link EnergyFactory} cross an energy level, instead of
+ * machines polling their storage & re-rendering their block every tick
+ *
+ * Levels are {@link #EMPTY}, {@link #getFullLevel()} & one level between every threshold set with {@link #setThresholds(double...)}.
+ * A change only queues its storage once, the queue is looked at once per tick on the main thread & listeners are only told
+ * about storages whose level actually changed, so a storage changing a hundred times in a tick costs one check.
+ * Only storages supporting {@link IEnergyStorage#addEnergyObserver(EnergyObserver)} are watched
+ * @param <T> the IEnergyStorage implementation
+ */
+public final class EnergyChangeNotifier<T extends IEnergyStorage> {
+
+    /**
+     * Level of a storage holding no energy
+     */
+    public static final int EMPTY = 0;
+
+    private final CopyOnWriteArrayList<EnergyChangeListener<? super T>> listeners = new CopyOnWriteArrayList<>();
+    /* Guarded by this */
+    private final IdentityHashMap<T, Watch> watches = new IdentityHashMap<>();
+    /* Storages that changed since the last dispatch, filled by any thread */
+    private final ConcurrentLinkedQueue<Watch> changed = new ConcurrentLinkedQueue<>();
+    private volatile double[] thresholds = new double[0];
+    private Plugin plugin;
+    private BukkitTask dispatchTask;
+
+    /**
+     * Starts dispatching changes once per tick
+     * @param plugin the {@link Plugin} owning the task
+     */
+    public void start(final @NonNull Plugin plugin) {
+        if (this.dispatchTask != null) return;
+        this.plugin = plugin;
+        this.dispatchTask = Bukkit.getScheduler().runTaskTimer(plugin, this::dispatch, 1L, 1L);
+    }
+
+    public void stop() {
+        if (this.dispatchTask != null) this.dispatchTask.cancel();
+        this.dispatchTask = null;
+    }
+
+    public void addListener(final @NonNull EnergyChangeListener<? super T> listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(final @NonNull EnergyChangeListener<? super T> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Sets the fractions of the max energy splitting the levels between empty & full, every storage is checked again on the next tick
+     * @param thresholds fractions between 0 & 1 exclusive, for example {@code 0.25, 0.5, 0.75}
+     */
+    public synchronized void setThresholds(final double @NonNull ... thresholds) {
+        final double[] sorted = thresholds.clone();
+        Arrays.sort(sorted);
+        for (final double threshold : sorted) {
+            if (threshold <= 0D || threshold >= 1D) throw new RuntimeException("Energy level thresholds have to be between 0 and 1, got %s".formatted(threshold));
+        }
+        this.thresholds = sorted;
+        this.watches.values().forEach(Watch::queue);
+    }
+
+    /**
+     * @return the level of a full storage, the amount of thresholds + 2
+     */
+    public int getFullLevel() {
+        return this.thresholds.length + 2;
+    }
+
+    /**
+     * Gets the level a storage had at the last dispatch
+     * @param energyStorage the storage
+     * @return the level, or -1 if the storage is not watched
+     */
+    public synchronized int getLevel(final @NonNull T energyStorage) {
+        final Watch watch = this.watches.get(energyStorage);
+        return watch == null ? -1 : watch.level;
+    }
+
+    /**
+     * Computes the level of a storage right now
+     * @param energyStorage the storage
+     * @return the level of the storage
+     */
+    public int computeLevel(final @NonNull IEnergyStorage energyStorage) {
+        final long stored;
+        final long max;
+        if (energyStorage instanceof ILongEnergyStorage longStorage) {
+            stored = longStorage.getStoredEnergyLong();
+            max = longStorage.getMaxEnergyStorageLong();
+        } else {
+            stored = energyStorage.getStoredEnergy();
+            max = energyStorage.getMaxEnergyStorage();
+        }
+        final double[] thresholds = this.thresholds;
+        if (stored <= 0) return EMPTY;
+        if (stored >= max) return thresholds.length + 2;
+        final double fraction = (double) stored / max;
+        int level = 1;
+        for (final double threshold : thresholds) {
+            if (fraction >= threshold) level++;
+        }
+        return level;
+    }
+
+    /**
+     * Starts watching a storage, used by {@link EnergyFactory} when a storage gets registered
+     */
+    synchronized void watch(final T energyStorage) {
+        if (this.watches.containsKey(energyStorage)) return;
+        final Watch watch = new Watch(energyStorage, this.computeLevel(energyStorage));
+        if (energyStorage.addEnergyObserver(watch)) this.watches.put(energyStorage, watch);
+    }
+
+    /**
+     * Stops watching a storage, used by {@link EnergyFactory} when a storage leaves the registry
+     */
+    synchronized void unwatch(final T energyStorage) {
+        final Watch watch = this.watches.remove(energyStorage);
+        if (watch == null) return;
+        watch.removed = true; // may still be queued, skipped by the next dispatch
+        energyStorage.removeEnergyObserver(watch);
+    }
+
+    /**
+     * @return amount of watched storages
+     */
+    public synchronized int size() {
+        return this.watches.size();
+    }
+
+    /**
+     * Tells the listeners about every storage that changed level since the last dispatch, must be called on the main thread
+     */
+    public void dispatch() {
+        Watch watch;
+        while ((watch = this.changed.poll()) != null) {
+            watch.queued = false; // cleared first, a change racing with this queues the storage again
+            if (watch.removed) continue;
+            final int level = this.computeLevel(watch.energyStorage);
+            final int previousLevel = watch.level;
+            if (level == previousLevel) continue;
+            watch.level = level;
+            for (final EnergyChangeListener<? super T> listener : this.listeners) {
+                try {
+                    listener.onLevelChanged(watch.energyStorage, previousLevel, level);
+                } catch (Throwable e) {
+                    final String message = "Energy change listener threw for the block at %s".formatted(watch.energyStorage.getBlock().getLocation());
+                    if (this.plugin != null) this.plugin.getLogger().log(Level.SEVERE, message, e);
+                    else Bukkit.getLogger().log(Level.SEVERE, message, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Level of one storage, queued at most once between two dispatches
+     */
+    private final class Watch implements EnergyObserver {
+        private final T energyStorage;
+        /* Only touched by the dispatching thread after creation */
+        private int level;
+        private volatile boolean queued = false;
+        private volatile boolean removed = false;
+
+        Watch(final T energyStorage, final int level) {
+            this.energyStorage = energyStorage;
+            this.level = level;
+        }
+
+        @Override
+        public void onEnergyChanged(final IEnergyStorage energyStorage) {
+            this.queue();
+        }
+
+        void queue() {
+            if (this.queued) return; // two threads may both queue it, the second dispatch finds the level unchanged
+            this.queued = true;
+            EnergyChangeNotifier.this.changed.offer(this);
+        }
+    }
+}
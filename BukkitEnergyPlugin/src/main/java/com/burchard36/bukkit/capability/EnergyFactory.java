@@ -1,61 +1,183 @@
 package com.burchard36.bukkit.capability;
 
 import com.burchard36.bukkit.energy.EnergyStorageData;
+import com.burchard36.bukkit.energy.EnergyTransfer;
 import com.burchard36.bukkit.BukkitEnergyPlugin;
 import com.burchard36.bukkit.energy.IEnergyStorage;
-import com.burchard36.bukkit.energy.Keys;
+import com.burchard36.bukkit.network.EnergyNetworkManager;
 import com.jeff_media.customblockdata.CustomBlockData;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.util.BoundingBox;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 ;
 public class EnergyFactory<T extends IEnergyStorage> extends SimpleReflection<T> implements Listener {
 
-    private final ConcurrentHashMap<Location, T> energyBlocksRegistered = new ConcurrentHashMap<>();
+    private final EnergyBlockRegistry<T> energyBlocksRegistered = new EnergyBlockRegistry<>();
+    private EnergyNetworkManager<T> networkManager;
+    private EnergyChangeNotifier<T> changeNotifier;
+    /* snapshots chunks are filled from when they load, instead of reading block PDC, see warmStart */
+    private final WorldSlots<EnergySnapshot> warmStarts = new WorldSlots<>();
+    private volatile boolean preloadChunks = false;
 
     public EnergyFactory(Class<T> clazz) {
         super(clazz);
     }
 
+    /**
+     * Creates a factory that builds its IEnergyStorages with the given function instead of reflection
+     * @param clazz the class of the IEnergyStorage implementation
+     * @param constructor creates a new IEnergyStorage for a {@link Block}, for example {@code MyEnergy::new}
+     */
+    public EnergyFactory(Class<T> clazz, Function<Block, T> constructor) {
+        super(clazz, constructor);
+    }
+
     /**
      * To better make this feel vanilla, we will write the IEnergyStorage -> PDC on every world save
      * This will also save on performance splitting and making out own save
      * (We can still create a custom event for other plugins to listen to if this will be needed)
      *
      * And yes, only the world save will have the IES -> PDC flashed in this event
+     * Only storages that changed since they were last flushed get written, see {@link IEnergyStorage#consumeDirty()}
+     * They are only snapshotted here, the {@link EnergySavePipeline} writes them to PDC over the next ticks
      * @param saveEvent {@link WorldSaveEvent} provided by Bukkit/Spigot/Paper/Whatever weird fucking fork your using
      */
     @EventHandler(priority = EventPriority.MONITOR)
     public final void onWorldSave(final WorldSaveEvent saveEvent) {
+        final long start = System.nanoTime();
         final World savedWorld = saveEvent.getWorld();
-        this.energyBlocksRegistered.forEach((location, energyBlock) -> {
-            final World locationWorld = location.getWorld();
-            assert locationWorld != null;
-            /* UUID Check will be slightly faster than .equals on full World objects */
-            if (locationWorld.getUID().equals(savedWorld.getUID())) {
-                EnergyStorageData.deserializeTo(energyBlock); // flashes the data from a IEnergyStorage variables to the Block PDC
-            }
+        final ArrayList<T> changed = new ArrayList<>();
+        /* The registry is split per world, so only the saved world gets walked */
+        this.energyBlocksRegistered.forEach(savedWorld, (x, y, z, energyBlock) -> {
+            if (energyBlock.consumeDirty()) changed.add(energyBlock);
+        });
+        BukkitEnergyPlugin.getInstance().getSavePipeline().submit(changed);
+        BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordWorldSave(System.nanoTime() - start, changed.size());
+    }
+
+    /**
+     * Writes every changed IEnergyStorage of this factory to PDC right away, used when the plugin disables
+     */
+    public final void saveAll() {
+        this.energyBlocksRegistered.forEach(this::flush);
+    }
+
+    /**
+     * Flushes & evicts every energy block of an unloading chunk & drops its conduits, so the registry only ever holds loaded chunks
+     * @param unloadEvent {@link ChunkUnloadEvent} provided by Bukkit
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public final void onChunkUnload(final ChunkUnloadEvent unloadEvent) {
+        final Chunk chunk = unloadEvent.getChunk();
+        this.energyBlocksRegistered.removeChunk(chunk.getWorld(), chunk.getX(), chunk.getZ(), this::evict);
+        if (this.networkManager != null) this.networkManager.removeConduits(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /**
+     * Flushes & evicts every energy block of an unloading world, the registry keeps no reference to the world afterwards
+     * @param unloadEvent {@link WorldUnloadEvent} provided by Bukkit
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public final void onWorldUnload(final WorldUnloadEvent unloadEvent) {
+        this.energyBlocksRegistered.removeWorld(unloadEvent.getWorld(), this::evict);
+        this.warmStarts.remove(unloadEvent.getWorld());
+        if (this.networkManager != null) this.networkManager.removeConduits(unloadEvent.getWorld());
+    }
+
+    /**
+     * Fills a loading chunk from a pending {@link #warmStart} snapshot,
+     * then preloads every energy block of it, if enabled with {@link #setPreloadChunks(boolean)}
+     * @param loadEvent {@link ChunkLoadEvent} provided by Bukkit
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public final void onChunkLoad(final ChunkLoadEvent loadEvent) {
+        if (loadEvent.isNewChunk()) return; // freshly generated chunks can not hold energy blocks yet
+        final Chunk chunk = loadEvent.getChunk();
+        this.warmChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        if (this.preloadChunks) this.loadChunk(chunk);
+    }
+
+    /**
+     * Sets if every energy block of a chunk should be loaded into this factory as soon as the chunk loads,
+     * instead of lazily the first time each block is requested
+     * @param preloadChunks true to preload chunks
+     */
+    public final void setPreloadChunks(final boolean preloadChunks) {
+        this.preloadChunks = preloadChunks;
+    }
+
+    public final boolean isPreloadChunks() {
+        return this.preloadChunks;
+    }
+
+    /**
+     * Loads every energy block of a chunk into this factory, reading the chunk PDC in a single pass
+     * @param chunk the {@link Chunk} to load
+     */
+    public final void loadChunk(final @NonNull Chunk chunk) {
+        final World world = chunk.getWorld();
+        BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().scanChunk(chunk, (block, dataContainer) -> {
+            if (this.energyBlocksRegistered.get(world, block.getX(), block.getY(), block.getZ()) != null) return;
+            this.materialize(world, block, dataContainer);
         });
     }
 
+    /**
+     * Removes energy blocks that get broken, so their PDC & the in memory indexes stay in sync
+     * @param breakEvent {@link BlockBreakEvent} provided by Bukkit
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public final void onBlockBreak(final BlockBreakEvent breakEvent) {
+        this.removeEnergyBlock(breakEvent.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public final void onBlockBurn(final BlockBurnEvent burnEvent) {
+        this.removeEnergyBlock(burnEvent.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public final void onBlockExplode(final BlockExplodeEvent explodeEvent) {
+        explodeEvent.blockList().forEach(this::removeEnergyBlock);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public final void onEntityExplode(final EntityExplodeEvent explodeEvent) {
+        explodeEvent.blockList().forEach(this::removeEnergyBlock);
+    }
+
     /**
      * Checks if the given location is a IEnergyBlock
      * @param location {@link Location} to check
      * @return true if the given Location is a IEnergyStorage block
      */
     public final boolean isEnergyBlock(final Location location) {
-        return new CustomBlockData(location.getBlock(), BukkitEnergyPlugin.getInstance()).has(Keys.storedEnergyKey);
+        final World world = location.getWorld();
+        assert world != null;
+        return BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().contains(world, location.getBlockX(), location.getBlockY(), location.getBlockZ());
     }
 
     /**
@@ -64,7 +186,20 @@ public class EnergyFactory<T extends IEnergyStorage> extends SimpleReflection<T>
      * @return true if the given Location is a IEnergyStorage block
      */
     public final boolean isEnergyBlock(final Block block) {
-        return isEnergyBlock(block.getLocation());
+        return BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().contains(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Checks if the given position is a IEnergyBlock, energy blocks already loaded by this factory are answered from memory
+     * @param world {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @return true if the given position is a IEnergyStorage block
+     */
+    public final boolean isEnergyBlock(final @NonNull World world, final int x, final int y, final int z) {
+        if (this.energyBlocksRegistered.get(world, x, y, z) != null) return true;
+        return BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().contains(world, x, y, z);
     }
 
     /**
@@ -76,30 +211,370 @@ public class EnergyFactory<T extends IEnergyStorage> extends SimpleReflection<T>
         if (this.isEnergyBlock(block)) return Optional.empty();
         //Bukkit.broadcastMessage("createEnergyBlock");
         final T energyImpl = this.newInstance(block);
+        energyImpl.consumeDirty(); // about to be written, only later changes need saving
+        final T registered = this.register(block.getWorld(), block.getX(), block.getY(), block.getZ(), energyImpl);
+        if (registered != energyImpl) return Optional.empty(); // another factory or thread created it first
         EnergyStorageData.deserializeTo(energyImpl);
-        return Optional.of(this.energyBlocksRegistered.getOrDefault(block.getLocation(), energyImpl));
+        BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().add(block.getWorld(), block.getX(), block.getY(), block.getZ());
+        return Optional.of(energyImpl);
+    }
+
+    /**
+     * Removes a IEnergyBlock, wiping its PDC data & unregistering it from this factory
+     * @param block {@link Block} to remove
+     * @return true if the block was a IEnergyStorage block
+     */
+    public final boolean removeEnergyBlock(final @NonNull Block block) {
+        final World world = block.getWorld();
+        final T removed = this.energyBlocksRegistered.remove(world, block.getX(), block.getY(), block.getZ());
+        if (removed != null) {
+            BukkitEnergyPlugin.getInstance().getSavePipeline().cancel(removed); // its data is about to be wiped
+            BukkitEnergyPlugin.getInstance().getEnergyScheduler().unregister(removed);
+            if (this.networkManager != null) this.networkManager.remove(removed);
+            if (this.changeNotifier != null) this.changeNotifier.unwatch(removed);
+            BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().unclaim(world, block.getX(), block.getY(), block.getZ(), this);
+            removed.release();
+        }
+        if (!this.isEnergyBlock(block)) return false;
+        EnergyStorageData.clear(new CustomBlockData(block, BukkitEnergyPlugin.getInstance()));
+        BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().remove(world, block.getX(), block.getY(), block.getZ());
+        return true;
     }
 
     /**
      * Gets a Block as a IEnergyStorage block
      * @param block {@link Block} to get
-     * @return an Empty {@link Optional} if the given Block is not a IEnergyStorage
+     * @return an Empty {@link Optional} if the given Block is not a IEnergyStorage, or is held by another {@link EnergyFactory}
      */
     public final @NonNull Optional<T> getEnergyBlock(final @NonNull Block block) {
-        final Location location = block.getLocation();
-        if (!this.isEnergyBlock(location)) return Optional.empty();
-        this.energyBlocksRegistered.computeIfAbsent(location, (v) -> {
-            final T energyImpl = this.newInstance(block);
-            final PersistentDataContainer dataContainer = new CustomBlockData(block, BukkitEnergyPlugin.getInstance());
-            if (!dataContainer.isEmpty()) {
-                energyImpl.deserialize(EnergyStorageData.serializeFrom(dataContainer));
-            }
+        final World world = block.getWorld();
+        final T registered = this.energyBlocksRegistered.get(world, block.getX(), block.getY(), block.getZ());
+        BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordLookup(registered != null);
+        if (registered != null) return Optional.of(registered);
+        return Optional.ofNullable(this.loadEnergyBlock(world, block.getX(), block.getY(), block.getZ(), block));
+    }
 
-            //Bukkit.broadcastMessage("Computing for absent returning %s".formatted(energyImpl.toString()));
-            return energyImpl;
+    /**
+     * Gets the block at the given position as a IEnergyStorage block, without allocating a {@link Location}
+     * @param world {@link World} of the block
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @return an Empty {@link Optional} if the given position is not a IEnergyStorage, or is held by another {@link EnergyFactory}
+     */
+    public final @NonNull Optional<T> getEnergyBlock(final @NonNull World world, final int x, final int y, final int z) {
+        final T registered = this.energyBlocksRegistered.get(world, x, y, z);
+        BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordLookup(registered != null);
+        if (registered != null) return Optional.of(registered);
+        return Optional.ofNullable(this.loadEnergyBlock(world, x, y, z, null));
+    }
+
+    /**
+     * Visits every loaded energy block of a chunk straight from memory, blocks that were never looked up since their chunk
+     * loaded are only included when {@link #isPreloadChunks()} is on. The visitor must not create or remove energy blocks
+     * @param world the {@link World} of the chunk
+     * @param chunkX chunk X
+     * @param chunkZ chunk Z
+     * @param visitor receives the position & IEnergyStorage of every block
+     */
+    public final void forEachInChunk(final @NonNull World world, final int chunkX, final int chunkZ,
+                                     final EnergyBlockRegistry.@NonNull BlockVisitor<? super T> visitor) {
+        this.energyBlocksRegistered.forEachInChunk(world, chunkX, chunkZ, visitor);
+    }
+
+    /**
+     * Visits every loaded energy block inside a box of blocks, see {@link #forEachInChunk}
+     * @param world the {@link World} to visit
+     * @param minX lowest block X, inclusive
+     * @param minY lowest block Y, inclusive
+     * @param minZ lowest block Z, inclusive
+     * @param maxX highest block X, inclusive
+     * @param maxY highest block Y, inclusive
+     * @param maxZ highest block Z, inclusive
+     * @param visitor receives the position & IEnergyStorage of every block
+     */
+    public final void forEachInRegion(final @NonNull World world, final int minX, final int minY, final int minZ,
+                                      final int maxX, final int maxY, final int maxZ,
+                                      final EnergyBlockRegistry.@NonNull BlockVisitor<? super T> visitor) {
+        this.energyBlocksRegistered.forEachInRegion(world, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+    }
+
+    /**
+     * Visits every loaded energy block overlapping a {@link BoundingBox}, see {@link #forEachInChunk}
+     * @param world the {@link World} to visit
+     * @param bounds the box, {@link BoundingBox#of(Block, Block)} covers both blocks
+     * @param visitor receives the position & IEnergyStorage of every block
+     */
+    public final void forEachInRegion(final @NonNull World world, final @NonNull BoundingBox bounds,
+                                      final EnergyBlockRegistry.@NonNull BlockVisitor<? super T> visitor) {
+        this.energyBlocksRegistered.forEachInRegion(world, minBlock(bounds.getMinX()), minBlock(bounds.getMinY()), minBlock(bounds.getMinZ()),
+                maxBlock(bounds.getMaxX()), maxBlock(bounds.getMaxY()), maxBlock(bounds.getMaxZ()), visitor);
+    }
+
+    /**
+     * Sums the energy stored in every loaded energy block overlapping a {@link BoundingBox}, see {@link #forEachInChunk}
+     * @param world the {@link World} to sum
+     * @param bounds the box, {@link BoundingBox#of(Block, Block)} covers both blocks
+     * @return the total stored energy
+     */
+    public final long sumStored(final @NonNull World world, final @NonNull BoundingBox bounds) {
+        return this.energyBlocksRegistered.sumStored(world, minBlock(bounds.getMinX()), minBlock(bounds.getMinY()), minBlock(bounds.getMinZ()),
+                maxBlock(bounds.getMaxX()), maxBlock(bounds.getMaxY()), maxBlock(bounds.getMaxZ()));
+    }
+
+    /**
+     * Sums the energy stored in every loaded energy block of a chunk, see {@link #forEachInChunk}
+     * @param world the {@link World} of the chunk
+     * @param chunkX chunk X
+     * @param chunkZ chunk Z
+     * @return the total stored energy
+     */
+    public final long sumStoredInChunk(final @NonNull World world, final int chunkX, final int chunkZ) {
+        return this.energyBlocksRegistered.sumStoredInChunk(world, chunkX, chunkZ);
+    }
+
+    /**
+     * @param world the {@link World} to count
+     * @return the amount of energy blocks of this factory loaded in memory in the world
+     */
+    public final int getLoadedCount(final @NonNull World world) {
+        return this.energyBlocksRegistered.size(world);
+    }
+
+    /* A block overlaps the box when x < maxX && x + 1 > minX */
+    private static int minBlock(final double min) {
+        return (int) Math.floor(min);
+    }
+
+    private static int maxBlock(final double max) {
+        return (int) Math.ceil(max) - 1;
+    }
+
+    /**
+     * Loads a block from its PDC into the registry, negative lookups are answered by the {@link EnergyBlockIndex} alone
+     * @param block the {@link Block} at the position if the caller already has it, null otherwise
+     * @return the registered IEnergyStorage, or null if the block is not an energy block or held by another factory
+     */
+    private T loadEnergyBlock(final World world, final int x, final int y, final int z, Block block) {
+        final EnergyBlockIndex blockIndex = BukkitEnergyPlugin.getInstance().getEnergyBlockIndex();
+        if (!blockIndex.contains(world, x, y, z)) return null;
+        if (!blockIndex.claim(world, x, y, z, this)) return null; // held by another factory, skip reading its PDC
+        if (block == null) block = world.getBlockAt(x, y, z);
+        return this.materialize(world, block, new CustomBlockData(block, BukkitEnergyPlugin.getInstance()));
+    }
+
+    /**
+     * Creates the IEnergyStorage of a block from its already read PDC & registers it
+     * @return the registered IEnergyStorage, or null if another factory holds the block
+     */
+    private T materialize(final World world, final Block block, final PersistentDataContainer dataContainer) {
+        final T energyImpl = this.newInstance(block);
+        boolean legacy = false;
+        if (!dataContainer.isEmpty()) {
+            BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordPdcRead();
+            final EnergyStorageData storageData = EnergyStorageData.serializeFrom(dataContainer);
+            energyImpl.deserialize(storageData);
+            legacy = storageData.isLegacy();
+        }
+
+        //Bukkit.broadcastMessage("Computing for absent returning %s".formatted(energyImpl.toString()));
+        final T registered = this.register(world, block.getX(), block.getY(), block.getZ(), energyImpl);
+        if (legacy && registered == energyImpl) EnergyStorageData.deserializeTo(energyImpl); // migrate to the compact layout once
+        return registered;
+    }
+
+    /**
+     * Drops an IEnergyStorage that is about to leave the registry from the networks, then flushes & releases it
+     */
+    private void evict(final T energyImpl) {
+        /* removing settles the energy in transit from & to it between shards, which the flush has to include */
+        if (this.networkManager != null) this.networkManager.remove(energyImpl);
+        if (this.changeNotifier != null) this.changeNotifier.unwatch(energyImpl);
+        this.flush(energyImpl);
+        final Block block = energyImpl.getBlock();
+        BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().unclaim(block.getWorld(), block.getX(), block.getY(), block.getZ(), this);
+        energyImpl.release();
+    }
+
+    /**
+     * Writes an IEnergyStorage to PDC right away if it changed or still has a write pending in the {@link EnergySavePipeline}
+     */
+    private void flush(final T energyImpl) {
+        final boolean pending = BukkitEnergyPlugin.getInstance().getSavePipeline().cancel(energyImpl);
+        /* the current state is newer than the pending snapshot, so it replaces it */
+        if (energyImpl.consumeDirty() || pending) EnergyStorageData.deserializeTo(energyImpl);
+    }
+
+    /**
+     * Registers a freshly created IEnergyStorage, unless another one got registered at the same position first,
+     * or another factory claimed the block, see {@link EnergyBlockIndex#claim}
+     * @return the IEnergyStorage registered at the position, or null if another factory holds the block
+     */
+    private T register(final World world, final int x, final int y, final int z, final T energyImpl) {
+        if (!BukkitEnergyPlugin.getInstance().getEnergyBlockIndex().claim(world, x, y, z, this)) {
+            energyImpl.release(); // its storage already lives in another factory, which is the one writing its PDC
+            return null;
+        }
+        final T registered = this.energyBlocksRegistered.putIfAbsent(world, x, y, z, energyImpl);
+        if (registered != energyImpl) {
+            energyImpl.release(); // lost the race, never left this method
+            return registered;
+        }
+        if (this.networkManager != null) this.networkManager.add(energyImpl);
+        if (this.changeNotifier != null) this.changeNotifier.watch(energyImpl);
+        return registered;
+    }
+
+    /**
+     * Captures every energy block of a world this factory holds in memory, blocks of unloaded chunks
+     * or never looked up ones (unless {@link #setPreloadChunks(boolean)} is on) are not part of it.
+     * Call {@link #saveAll()} first if the snapshot should match PDC
+     * @param world the {@link World} to capture
+     * @return the snapshot, sorted by chunk
+     */
+    public final @NonNull EnergySnapshot createSnapshot(final @NonNull World world) {
+        return EnergySnapshot.capture(world, this.energyBlocksRegistered);
+    }
+
+    /**
+     * Captures a world with {@link #createSnapshot(World)} & writes it to a file
+     * @param world the {@link World} to capture
+     * @param path the file to write
+     * @return the amount of energy blocks written
+     */
+    public final int exportSnapshot(final @NonNull World world, final @NonNull Path path) {
+        final EnergySnapshot snapshot = this.createSnapshot(world);
+        snapshot.write(path);
+        return snapshot.size();
+    }
+
+    /**
+     * Reads a snapshot file & warm starts a world with it, see {@link #warmStart(World, EnergySnapshot)}
+     * @param world the {@link World} the snapshot was taken of
+     * @param path the file written by {@link #exportSnapshot(World, Path)}
+     * @return the snapshot read
+     */
+    public final @NonNull EnergySnapshot importSnapshot(final @NonNull World world, final @NonNull Path path) {
+        final EnergySnapshot snapshot = EnergySnapshot.read(path);
+        this.warmStart(world, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Fills the energy blocks of a world from a snapshot instead of their PDC. Loaded chunks are filled right away,
+     * every other chunk of the snapshot the first time it loads. Blocks already in memory are newer & kept,
+     * blocks no longer marked as energy blocks are skipped. The snapshot must be newer than the PDC it replaces,
+     * every block filled from it is written through to its PDC so the snapshot state survives the chunk unloading
+     * @param world the {@link World} the snapshot was taken of
+     * @param snapshot the snapshot, typically from {@link EnergySnapshot#read(Path)}
+     */
+    public final void warmStart(final @NonNull World world, final @NonNull EnergySnapshot snapshot) {
+        if (!world.getUID().equals(snapshot.getWorldId())) {
+            throw new RuntimeException("Energy snapshot of world %s can not warm start world %s".formatted(snapshot.getWorldId(), world.getName()));
+        }
+        synchronized (this.warmStarts) {
+            this.warmStarts.remove(world);
+            this.warmStarts.getOrCreate(world, () -> snapshot);
+        }
+        snapshot.forEachChunk((chunkX, chunkZ) -> {
+            if (world.isChunkLoaded(chunkX, chunkZ)) this.warmChunk(world, chunkX, chunkZ);
         });
+    }
 
-        return Optional.of(this.energyBlocksRegistered.get(location));
+    /**
+     * Registers the energy blocks of a chunk from the pending warm start snapshot of its world, once per chunk
+     */
+    private void warmChunk(final World world, final int chunkX, final int chunkZ) {
+        final EnergySnapshot snapshot = this.warmStarts.get(world);
+        if (snapshot == null) return;
+        final EnergyBlockIndex blockIndex = BukkitEnergyPlugin.getInstance().getEnergyBlockIndex();
+        snapshot.claimChunk(chunkX, chunkZ, (index) -> {
+            final int x = snapshot.getX(index);
+            final int y = snapshot.getY(index);
+            final int z = snapshot.getZ(index);
+            if (this.energyBlocksRegistered.get(world, x, y, z) != null) return;
+            if (!blockIndex.contains(world, x, y, z)) return; // removed since the snapshot was taken
+            final T energyImpl = this.newInstance(world.getBlockAt(x, y, z));
+            energyImpl.deserialize(snapshot.getData(index));
+            /* deserialize left it clean, but its PDC still holds the older state */
+            if (this.register(world, x, y, z, energyImpl) == energyImpl) EnergyStorageData.deserializeTo(energyImpl);
+        });
+        if (snapshot.isFullyClaimed()) {
+            synchronized (this.warmStarts) {
+                if (this.warmStarts.get(world) == snapshot) this.warmStarts.remove(world);
+            }
+        }
     }
-}
 
+    /**
+     * Moves energy from one IEnergyStorage to another as a single operation, see {@link EnergyTransfer}
+     * @param source the {@link IEnergyStorage} energy is taken from
+     * @param sourceFace the {@link BlockFace} of the source energy leaves through
+     * @param target the {@link IEnergyStorage} energy is given to
+     * @param targetFace the {@link BlockFace} of the target energy enters through
+     * @param amount the max amount of energy to move
+     * @return the amount of energy that was moved
+     */
+    public final int transfer(final @NonNull IEnergyStorage source, final @NonNull BlockFace sourceFace,
+                              final @NonNull IEnergyStorage target, final @NonNull BlockFace targetFace, final int amount) {
+        return EnergyTransfer.transfer(source, sourceFace, target, targetFace, amount);
+    }
+
+    /**
+     * Moves energy along many source/target pairs in one call, see {@link EnergyTransfer#transferAll}
+     * @param sources the {@link IEnergyStorage}s energy is taken from
+     * @param sourceFaces the {@link BlockFace}s energy leaves the sources through
+     * @param targets the {@link IEnergyStorage}s energy is given to
+     * @param targetFaces the {@link BlockFace}s energy enters the targets through
+     * @param amounts the max amount of energy to move for every pair
+     * @param moved if not null, receives the amount of energy actually moved for every pair
+     * @param count the amount of pairs to process
+     * @return the total amount of energy moved
+     */
+    public final long transferAll(final @NonNull IEnergyStorage[] sources, final @NonNull BlockFace[] sourceFaces,
+                                  final @NonNull IEnergyStorage[] targets, final @NonNull BlockFace[] targetFaces,
+                                  final int[] amounts, final int[] moved, final int count) {
+        return EnergyTransfer.transferAll(sources, sourceFaces, targets, targetFaces, amounts, moved, count);
+    }
+
+    /**
+     * Gets the {@link EnergyNetworkManager} of this factory, networks are opt-in and start ticking the first time this is called
+     *
+     * Every energy block loaded by this factory joins a network, adjacent blocks move energy between each other
+     * according to their {@link com.burchard36.bukkit.enums.IOType} faces
+     * @return the singleton {@link EnergyNetworkManager} of this factory
+     */
+    public final synchronized @NonNull EnergyNetworkManager<T> getNetworkManager() {
+        if (this.networkManager == null) {
+            final EnergyNetworkManager<T> networkManager = new EnergyNetworkManager<>();
+            final BukkitEnergyPlugin plugin = BukkitEnergyPlugin.getInstance();
+            networkManager.setTickExecutor(plugin.getNetworkTickExecutor(), plugin.getNetworkRegionShift());
+            this.energyBlocksRegistered.forEach(networkManager::add);
+            Bukkit.getScheduler().runTaskTimer(BukkitEnergyPlugin.getInstance(), networkManager::tick, 1L, 1L);
+            this.networkManager = networkManager;
+        }
+        return this.networkManager;
+    }
+
+    /**
+     * Gets the {@link EnergyChangeNotifier} of this factory, notifications are opt-in and start the first time this is called
+     * @return the singleton {@link EnergyChangeNotifier} of this factory
+     */
+    public final synchronized @NonNull EnergyChangeNotifier<T> getChangeNotifier() {
+        if (this.changeNotifier == null) {
+            final EnergyChangeNotifier<T> changeNotifier = new EnergyChangeNotifier<>();
+            this.energyBlocksRegistered.forEach(changeNotifier::watch);
+            changeNotifier.start(BukkitEnergyPlugin.getInstance());
+            this.changeNotifier = changeNotifier;
+        }
+        return this.changeNotifier;
+    }
+
+    /**
+     * Tells a listener once per tick about every energy block of this factory that crossed an energy level, see {@link EnergyChangeNotifier}
+     * @param listener the {@link EnergyChangeListener}
+     */
+    public final void addChangeListener(final @NonNull EnergyChangeListener<? super T> listener) {
+        this.getChangeNotifier().addListener(listener);
+    }
+}
@@ -0,0 +1,128 @@
+package com.burchard36.bukkit.capability;
+
+import com.burchard36.bukkit.energy.EnergyStorageData;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import org.bukkit.Bukkit;
+import org.bukkit.block.Block;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes energy data to chunk PDC spread over several ticks, instead of all at once when a world saves
+ *
+ * The main thread only snapshots the storages in {@link #submit(Collection)}, the snapshots are encoded & written to PDC
+ * on the main thread over the next ticks, at most {@link #setTickBudgetMillis(double)} every tick.
+ * Only the newest snapshot of a storage is ever written, older ones still queued are skipped.
+ * Before a storage leaves memory its pending write has to be taken back with {@link #cancel(IEnergyStorage)},
+ * {@link EnergyFactory} does this for chunk & world unloads and removed blocks.
+ */
+public final class EnergySavePipeline {
+
+    /* Newest write of every storage that was not written yet */
+    private final ConcurrentHashMap<IEnergyStorage, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    /* Writes waiting for the main thread, in the order they were submitted */
+    private final ConcurrentLinkedQueue<PendingWrite> queuedWrites = new ConcurrentLinkedQueue<>();
+    private volatile long tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(2);
+    private BukkitTask applyTask;
+
+    /**
+     * Starts the task writing queued data every tick, until then snapshots are only written by {@link #flush()}
+     * @param plugin the {@link Plugin} owning the task
+     */
+    public synchronized void start(final Plugin plugin) {
+        if (this.applyTask != null) return;
+        this.applyTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> this.apply(this.tickBudgetNanos), 1, 1);
+    }
+
+    /**
+     * Stops the task & writes everything still pending right away, must be called on the main thread
+     */
+    public synchronized void shutdown() {
+        if (this.applyTask != null) this.applyTask.cancel();
+        this.applyTask = null;
+        this.flush();
+    }
+
+    /**
+     * @param tickBudgetMillis max time spent writing energy data to PDC every tick
+     */
+    public void setTickBudgetMillis(final double tickBudgetMillis) {
+        this.tickBudgetNanos = (long) (Math.max(0.05D, tickBudgetMillis) * 1_000_000D);
+    }
+
+    public double getTickBudgetMillis() {
+        return this.tickBudgetNanos / 1_000_000D;
+    }
+
+    /**
+     * @return amount of storages with data that was not written to PDC yet
+     */
+    public int getPendingCount() {
+        return this.pendingWrites.size();
+    }
+
+    /**
+     * Snapshots storages & queues them to be written to PDC, must be called on the main thread
+     * @param storages the IEnergyStorages to save, typically the ones {@link IEnergyStorage#consumeDirty()} returned true for
+     */
+    public void submit(final Collection<? extends IEnergyStorage> storages) {
+        for (final IEnergyStorage storage : storages) {
+            final PendingWrite write = new PendingWrite(storage, storage.getBlock(), storage.serialize());
+            this.pendingWrites.put(storage, write); // replaces an older write still queued
+            this.queuedWrites.offer(write);
+        }
+    }
+
+    /**
+     * Takes back the pending write of a storage, so nothing gets written after it left memory
+     * @param storage the IEnergyStorage
+     * @return true if the storage had data that was not written yet, the caller should write it
+     */
+    public boolean cancel(final IEnergyStorage storage) {
+        return this.pendingWrites.remove(storage) != null;
+    }
+
+    /**
+     * Writes every pending snapshot right away, must be called on the main thread
+     */
+    public void flush() {
+        for (final PendingWrite write : this.pendingWrites.values()) {
+            write.writeIfNewest(this.pendingWrites);
+        }
+        this.queuedWrites.clear();
+    }
+
+    /**
+     * Encodes & writes queued data to PDC until the budget runs out, whatever is left carries over to the next tick
+     */
+    private void apply(final long budgetNanos) {
+        final long deadline = System.nanoTime() + budgetNanos;
+        PendingWrite write;
+        while ((write = this.queuedWrites.poll()) != null) {
+            write.writeIfNewest(this.pendingWrites);
+            if (System.nanoTime() - deadline >= 0) return;
+        }
+    }
+
+    private static final class PendingWrite {
+        private final IEnergyStorage storage;
+        private final Block block;
+        private final EnergyStorageData storageData;
+
+        PendingWrite(final IEnergyStorage storage, final Block block, final EnergyStorageData storageData) {
+            this.storage = storage;
+            this.block = block;
+            this.storageData = storageData;
+        }
+
+        void writeIfNewest(final ConcurrentHashMap<IEnergyStorage, PendingWrite> pendingWrites) {
+            if (!pendingWrites.remove(this.storage, this)) return; // a newer snapshot was queued, or it was cancelled
+            EnergyStorageData.writeTo(this.block, this.storageData.encode());
+        }
+    }
+}
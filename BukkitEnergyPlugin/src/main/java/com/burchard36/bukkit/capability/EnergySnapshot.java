@@ -0,0 +1,430 @@
+package com.burchard36.bukkit.capability;
+
+import com.burchard36.bukkit.energy.EnergyStorageData;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import com.burchard36.energy.core.BlockKey;
+import org.bukkit.World;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * The energy blocks of one world frozen into flat arrays, that can be written to & read from a binary file
+ *
+ * Entries are sorted by chunk, so every chunk is one contiguous range that is found with a binary search.
+ * Files are written to a temporary sibling that replaces the file once complete, & read through a memory mapped {@link FileChannel}, layout:
+ * <pre>
+ * header: int magic, int version, long world UUID most, long world UUID least, long created millis, int entries, int CRC32 of the entries
+ * entry:  long packed position (see {@link BlockKey#pack}), long stored energy, long max energy, long face IO types (see {@link com.burchard36.bukkit.energy.PackedFaces}),
+ *         long energy rate, long game time the rate was applied up to (both since version 2, version 1 entries have no rate),
+ *         long priority (since version 3)
+ * </pre>
+ * Used by {@link EnergyFactory#warmStart} to fill chunks without reading block PDC, for backups, or offline analysis
+ */
+public final class EnergySnapshot {
+
+    public static final int MAGIC = 0x4245534E; // "BESN"
+    public static final int VERSION = 3;
+    public static final int HEADER_BYTES = 40;
+    public static final int ENTRY_BYTES = 56;
+    private static final int ENTRY_BYTES_V1 = 32;
+    private static final int ENTRY_BYTES_V2 = 48;
+
+    private final UUID worldId;
+    private final long createdAt;
+    private final long[] positions;
+    private final long[] stored;
+    private final long[] max;
+    private final long[] faces;
+    private final int[] rates;
+    private final long[] rateTicks;
+    private final int[] priorities;
+    /* distinct chunk keys in entry order, chunk i spans the entries [chunkStarts[i], chunkStarts[i + 1]) */
+    private final long[] chunkKeys;
+    private final int[] chunkStarts;
+    /* chunks already handed out by claimChunk, only touched by EnergyFactory */
+    private final BitSet claimed;
+
+    private EnergySnapshot(final UUID worldId, final long createdAt, final long[] positions,
+                           final long[] stored, final long[] max, final long[] faces,
+                           final int[] rates, final long[] rateTicks, final int[] priorities) {
+        this.worldId = worldId;
+        this.createdAt = createdAt;
+        this.positions = positions;
+        this.stored = stored;
+        this.max = max;
+        this.faces = faces;
+        this.rates = rates;
+        this.rateTicks = rateTicks;
+        this.priorities = priorities;
+
+        int chunkCount = 0;
+        final long[] chunkKeys = new long[positions.length];
+        final int[] chunkStarts = new int[positions.length + 1];
+        for (int i = 0; i < positions.length; i++) {
+            final long chunkKey = chunkKeyOf(positions[i]);
+            if (chunkCount > 0 && chunkKeys[chunkCount - 1] == chunkKey) continue;
+            if (chunkCount > 0 && chunkKeys[chunkCount - 1] > chunkKey) {
+                throw new RuntimeException("Energy snapshot entries are not sorted by chunk at entry %s".formatted(i));
+            }
+            chunkKeys[chunkCount] = chunkKey;
+            chunkStarts[chunkCount++] = i;
+        }
+        chunkStarts[chunkCount] = positions.length;
+        this.chunkKeys = Arrays.copyOf(chunkKeys, chunkCount);
+        this.chunkStarts = Arrays.copyOf(chunkStarts, chunkCount + 1);
+        this.claimed = new BitSet(chunkCount);
+    }
+
+    /**
+     * Captures every storage of a world held by a registry, see {@link EnergyFactory#createSnapshot(World)}
+     */
+    static <T extends IEnergyStorage> EnergySnapshot capture(final World world, final EnergyBlockRegistry<T> registry) {
+        final int size = registry.size(world);
+        final long[] positions = new long[size];
+        final long[] stored = new long[size];
+        final long[] max = new long[size];
+        final long[] faces = new long[size];
+        final int[] rates = new int[size];
+        final long[] rateTicks = new long[size];
+        final int[] priorities = new int[size];
+        final int[] count = {0};
+        registry.forEach(world, (x, y, z, energyImpl) -> {
+            if (count[0] == size) return; // only when the registry grew while being visited
+            final int i = count[0]++;
+            positions[i] = BlockKey.pack(x, y, z);
+            final EnergyStorageData data = energyImpl.serialize();
+            stored[i] = data.getStoredEnergyLong();
+            max[i] = data.getMaxEnergyLong();
+            faces[i] = data.getPackedFaceIOTypes();
+            rates[i] = data.getEnergyRate();
+            rateTicks[i] = data.getRateTick();
+            priorities[i] = data.getPriority();
+        });
+
+        final int length = count[0];
+        final int[] order = sortOrder(positions, length);
+        final long[] sortedPositions = new long[length];
+        final long[] sortedStored = new long[length];
+        final long[] sortedMax = new long[length];
+        final long[] sortedFaces = new long[length];
+        final int[] sortedRates = new int[length];
+        final long[] sortedRateTicks = new long[length];
+        final int[] sortedPriorities = new int[length];
+        for (int i = 0; i < length; i++) {
+            final int from = order[i];
+            sortedPositions[i] = positions[from];
+            sortedStored[i] = stored[from];
+            sortedMax[i] = max[from];
+            sortedFaces[i] = faces[from];
+            sortedRates[i] = rates[from];
+            sortedRateTicks[i] = rateTicks[from];
+            sortedPriorities[i] = priorities[from];
+        }
+        return new EnergySnapshot(world.getUID(), System.currentTimeMillis(), sortedPositions, sortedStored, sortedMax, sortedFaces,
+                sortedRates, sortedRateTicks, sortedPriorities);
+    }
+
+    /**
+     * Writes this snapshot to a file, replacing it if it exists. Does not touch any Bukkit state, so it may run async.
+     * The previous file is only replaced once the new one is fully on disk, a crash or full disk half way leaves it intact
+     * @param path the file to write
+     */
+    public void write(final @NonNull Path path) {
+        final int size = this.size();
+        final long bodyBytes = (long) size * ENTRY_BYTES;
+        if (HEADER_BYTES + bodyBytes > Integer.MAX_VALUE) throw new RuntimeException("Energy snapshot of %s entries is too large".formatted(size));
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            /* a plain buffer instead of a mapping, a mapped file can not be moved on every platform until it gets unmapped */
+            final ByteBuffer buffer = ByteBuffer.allocateDirect((int) (HEADER_BYTES + bodyBytes));
+            buffer.position(HEADER_BYTES);
+            for (int i = 0; i < size; i++) {
+                buffer.putLong(this.positions[i]);
+                buffer.putLong(this.stored[i]);
+                buffer.putLong(this.max[i]);
+                buffer.putLong(this.faces[i]);
+                buffer.putLong(this.rates[i]);
+                buffer.putLong(this.rateTicks[i]);
+                buffer.putLong(this.priorities[i]);
+            }
+            final CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(HEADER_BYTES, (int) bodyBytes));
+
+            buffer.position(0);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(this.worldId.getMostSignificantBits());
+            buffer.putLong(this.worldId.getLeastSignificantBits());
+            buffer.putLong(this.createdAt);
+            buffer.putInt(size);
+            buffer.putInt((int) checksum.getValue());
+            buffer.position(0);
+
+            try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (final AtomicMoveNotSupportedException exception) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING); // the temporary file is complete either way
+            }
+        } catch (final IOException exception) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (final IOException ignored) {
+                /* the write already failed, that is what gets reported */
+            }
+            throw new RuntimeException("Could not write energy snapshot %s".formatted(path), exception);
+        }
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(Path)}, checking its version & checksum
+     * @param path the file to read
+     * @return the snapshot
+     */
+    public static @NonNull EnergySnapshot read(final @NonNull Path path) {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long fileBytes = channel.size();
+            if (fileBytes < HEADER_BYTES) throw new RuntimeException("Energy snapshot %s is truncated".formatted(path));
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileBytes);
+
+            if (buffer.getInt() != MAGIC) throw new RuntimeException("%s is not an energy snapshot".formatted(path));
+            final int version = buffer.getInt();
+            if (version < 1) throw new RuntimeException("Energy snapshot %s has an invalid version %s".formatted(path, version));
+            if (version > VERSION) {
+                throw new RuntimeException("Unsupported energy snapshot version %s in %s, was it written by a newer BukkitEnergy?".formatted(version, path));
+            }
+            final UUID worldId = new UUID(buffer.getLong(), buffer.getLong());
+            final long createdAt = buffer.getLong();
+            final int size = buffer.getInt();
+            final int expectedChecksum = buffer.getInt();
+            final int entryBytes = switch (version) {
+                case 1 -> ENTRY_BYTES_V1;
+                case 2 -> ENTRY_BYTES_V2;
+                default -> ENTRY_BYTES;
+            };
+            if (size < 0 || fileBytes != HEADER_BYTES + (long) size * entryBytes) {
+                throw new RuntimeException("Energy snapshot %s is truncated, expected %s entries".formatted(path, size));
+            }
+
+            final CRC32 checksum = new CRC32();
+            checksum.update(buffer.slice(HEADER_BYTES, size * entryBytes));
+            if ((int) checksum.getValue() != expectedChecksum) throw new RuntimeException("Energy snapshot %s is corrupted, checksum mismatch".formatted(path));
+
+            final long[] positions = new long[size];
+            final long[] stored = new long[size];
+            final long[] max = new long[size];
+            final long[] faces = new long[size];
+            final int[] rates = new int[size];
+            final long[] rateTicks = new long[size];
+            final int[] priorities = new int[size];
+            for (int i = 0; i < size; i++) {
+                positions[i] = buffer.getLong();
+                stored[i] = buffer.getLong();
+                max[i] = buffer.getLong();
+                faces[i] = buffer.getLong();
+                if (entryBytes == ENTRY_BYTES_V1) continue; // written before rates existed
+                rates[i] = (int) buffer.getLong();
+                rateTicks[i] = buffer.getLong();
+                if (entryBytes == ENTRY_BYTES_V2) continue; // written before priorities existed
+                priorities[i] = (int) buffer.getLong();
+            }
+            return new EnergySnapshot(worldId, createdAt, positions, stored, max, faces, rates, rateTicks, priorities);
+        } catch (final IOException exception) {
+            throw new RuntimeException("Could not read energy snapshot %s".formatted(path), exception);
+        }
+    }
+
+    /**
+     * @return the {@link UUID} of the world this snapshot was taken of
+     */
+    public UUID getWorldId() {
+        return this.worldId;
+    }
+
+    /**
+     * @return when this snapshot was taken, in epoch millis
+     */
+    public long getCreatedAt() {
+        return this.createdAt;
+    }
+
+    /**
+     * @return amount of energy blocks in this snapshot
+     */
+    public int size() {
+        return this.positions.length;
+    }
+
+    /**
+     * @return amount of chunks holding at least one energy block in this snapshot
+     */
+    public int getChunkCount() {
+        return this.chunkKeys.length;
+    }
+
+    public int getX(final int index) {
+        return BlockKey.unpackX(this.positions[index]);
+    }
+
+    public int getY(final int index) {
+        return BlockKey.unpackY(this.positions[index]);
+    }
+
+    public int getZ(final int index) {
+        return BlockKey.unpackZ(this.positions[index]);
+    }
+
+    public long getStoredEnergy(final int index) {
+        return this.stored[index];
+    }
+
+    public long getMaxEnergy(final int index) {
+        return this.max[index];
+    }
+
+    /**
+     * @return the IOType of every face of the entry packed into one long, see {@link com.burchard36.bukkit.energy.PackedFaces}
+     */
+    public long getPackedFaceIOTypes(final int index) {
+        return this.faces[index];
+    }
+
+    /**
+     * @return the net energy per tick of the entry, see {@link com.burchard36.bukkit.energy.BukkitEnergy#setEnergyRate(int)}
+     */
+    public int getEnergyRate(final int index) {
+        return this.rates[index];
+    }
+
+    /**
+     * @return the priority of the entry as a receiver, see {@link IEnergyStorage#getPriority()}
+     */
+    public int getPriority(final int index) {
+        return this.priorities[index];
+    }
+
+    /**
+     * @param index the entry
+     * @return the entry as {@link EnergyStorageData}, ready for {@link IEnergyStorage#deserialize(EnergyStorageData)}
+     */
+    public EnergyStorageData getData(final int index) {
+        return new EnergyStorageData.Builder(this.stored[index])
+                .setMaxEnergyStorage(this.max[index])
+                .setPackedFaceIOTypes(this.faces[index])
+                .setEnergyRate(this.rates[index], this.rateTicks[index])
+                .setPriority(this.priorities[index])
+                .build();
+    }
+
+    /**
+     * @return the total energy stored in this snapshot
+     */
+    public long sumStored() {
+        long sum = 0;
+        for (final long energy : this.stored) sum += energy;
+        return sum;
+    }
+
+    /**
+     * Visits the index of every entry in a chunk, read them with the getters of this snapshot
+     * @param chunkX chunk X
+     * @param chunkZ chunk Z
+     * @param visitor receives the index of every entry in the chunk
+     */
+    public void forEachInChunk(final int chunkX, final int chunkZ, final @NonNull IntConsumer visitor) {
+        final int chunk = Arrays.binarySearch(this.chunkKeys, BlockKey.chunkKey(chunkX, chunkZ));
+        if (chunk < 0) return;
+        for (int i = this.chunkStarts[chunk]; i < this.chunkStarts[chunk + 1]; i++) visitor.accept(i);
+    }
+
+    /**
+     * Visits the entries of a chunk only the first time the chunk is claimed, so a warm start never applies a chunk twice
+     * @return true if the chunk was in this snapshot & not claimed before
+     */
+    synchronized boolean claimChunk(final int chunkX, final int chunkZ, final IntConsumer visitor) {
+        final int chunk = Arrays.binarySearch(this.chunkKeys, BlockKey.chunkKey(chunkX, chunkZ));
+        if (chunk < 0 || this.claimed.get(chunk)) return false;
+        this.claimed.set(chunk);
+        for (int i = this.chunkStarts[chunk]; i < this.chunkStarts[chunk + 1]; i++) visitor.accept(i);
+        return true;
+    }
+
+    /**
+     * @return true once every chunk of this snapshot was claimed
+     */
+    synchronized boolean isFullyClaimed() {
+        return this.claimed.cardinality() == this.chunkKeys.length;
+    }
+
+    /**
+     * @param consumer receives the chunk X & Z of every chunk in this snapshot
+     */
+    void forEachChunk(final ChunkConsumer consumer) {
+        for (final long chunkKey : this.chunkKeys) consumer.accept(BlockKey.chunkX(chunkKey), BlockKey.chunkZ(chunkKey));
+    }
+
+    @FunctionalInterface
+    interface ChunkConsumer {
+        void accept(int chunkX, int chunkZ);
+    }
+
+    /**
+     * Sorts entries by chunk, then by position inside the chunk, on primitives only.
+     * A chunk key, a local index & an entry do not fit in one long together, so entries are first bucketed by the rank of
+     * their chunk, then every bucket sorts {@code localIndex << 32 | entry} keys
+     * @return the entry at every sorted position
+     */
+    private static int[] sortOrder(final long[] positions, final int length) {
+        final long[] chunks = new long[length];
+        for (int i = 0; i < length; i++) chunks[i] = chunkKeyOf(positions[i]);
+        final long[] distinct = Arrays.copyOf(chunks, length);
+        Arrays.sort(distinct);
+        int chunkCount = 0;
+        for (int i = 0; i < length; i++) {
+            if (chunkCount == 0 || distinct[chunkCount - 1] != distinct[i]) distinct[chunkCount++] = distinct[i];
+        }
+
+        final int[] ranks = new int[length];
+        final int[] bucketStarts = new int[chunkCount + 1];
+        for (int i = 0; i < length; i++) {
+            ranks[i] = Arrays.binarySearch(distinct, 0, chunkCount, chunks[i]);
+            bucketStarts[ranks[i] + 1]++;
+        }
+        for (int rank = 0; rank < chunkCount; rank++) bucketStarts[rank + 1] += bucketStarts[rank];
+        final int[] bucketEnds = Arrays.copyOf(bucketStarts, chunkCount);
+        final long[] keys = new long[length];
+        for (int i = 0; i < length; i++) keys[bucketEnds[ranks[i]]++] = (long) localIndexOf(positions[i]) << 32 | i;
+        for (int rank = 0; rank < chunkCount; rank++) Arrays.sort(keys, bucketStarts[rank], bucketStarts[rank + 1]);
+
+        final int[] order = new int[length];
+        for (int i = 0; i < length; i++) order[i] = (int) keys[i];
+        return order;
+    }
+
+    private static long chunkKeyOf(final long position) {
+        return BlockKey.chunkKeyOfBlock(BlockKey.unpackX(position), BlockKey.unpackZ(position));
+    }
+
+    private static int localIndexOf(final long position) {
+        return BlockKey.localIndex(BlockKey.unpackX(position), BlockKey.unpackY(position), BlockKey.unpackZ(position));
+    }
+}
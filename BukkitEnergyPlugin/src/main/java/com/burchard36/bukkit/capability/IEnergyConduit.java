@@ -0,0 +1,24 @@
+package com.burchard36.bukkit.capability;
+
+import com.burchard36.bukkit.network.EnergyNetworkManager;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+/**
+ * A block that carries energy between the storages of an {@link EnergyNetworkManager} without storing any itself
+ *
+ * Conduits are folded away when a network compiles, linked conduits become a single hub the storages touching it feed
+ * & drain, moving no more per tick than its narrowest face. So a line of cables costs one budget per tick instead of
+ * a transfer per block, like a pipe network carrying only what its weakest pipe can.
+ * Add them with {@link EnergyNetworkManager#addConduit(IEnergyConduit)}
+ */
+public interface IEnergyConduit {
+
+    Block getBlock();
+
+    /**
+     * @param face the {@link BlockFace} energy enters or leaves through
+     * @return the max energy per tick that may pass through the face, 0 if the face is closed
+     */
+    int getThroughput(BlockFace face);
+}
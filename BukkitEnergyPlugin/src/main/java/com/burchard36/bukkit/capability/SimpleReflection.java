@@ -1,36 +1,95 @@
 package com.burchard36.bukkit.capability;
 
 import com.burchard36.bukkit.energy.IEnergyStorage;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.util.function.Function;
 
 /**
  * Simple reflection utility for {@link EnergyFactory} to initiate new objects of its generic IEnergyStorage to blocks
+ *
+ * The constructor is resolved once, when the factory is built, and bound to a {@link MethodHandle}.
+ * A {@link Block} constructor is preferred over a {@link Location} one, a class with neither fails right away.
  * @param <SomeEnergyImpl> a class extending {@link IEnergyStorage}
  */
 public class SimpleReflection<SomeEnergyImpl extends IEnergyStorage> {
 
     private final Class<SomeEnergyImpl> clazz;
+    private final Function<Block, SomeEnergyImpl> constructor;
 
     public SimpleReflection(final Class<SomeEnergyImpl> clazz) {
         this.clazz = clazz;
+        this.constructor = resolveConstructor(clazz);
+    }
+
+    /**
+     * Skips reflection entirely, every new instance is created by the given function
+     * @param clazz the class of the IEnergyStorage implementation
+     * @param constructor creates a new IEnergyStorage for a {@link Block}
+     */
+    public SimpleReflection(final Class<SomeEnergyImpl> clazz, final Function<Block, SomeEnergyImpl> constructor) {
+        this.clazz = clazz;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Creates a new instance of the IEnergyStorage for a block
+     * @param block the {@link Block} of the energy storage
+     * @return a new IEnergyStorage
+     */
+    public SomeEnergyImpl newInstance(final Block block) {
+        return this.constructor.apply(block);
     }
 
-    @SuppressWarnings("unchecked")
     public SomeEnergyImpl newInstance(final Object o) {
-        Constructor<?>[] constructors = this.clazz.getConstructors();
-        for (Constructor<?> constructor : constructors) {
-            final Class<?>[] constructorParameterTypes = constructor.getParameterTypes();
-            if (constructorParameterTypes.length == 0) throw new RuntimeException("Class %s did not provider a valid constructor for a IEnergyStorage type. Smh.".formatted(this.clazz.getName()));
-            try {
-                return (SomeEnergyImpl) constructor.newInstance(o);
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                throw new RuntimeException("Error with class %s ".formatted(this.clazz.getName()) + e);
-            }
+        if (o instanceof Block block) return this.newInstance(block);
+        if (o instanceof Location location) return this.newInstance(location.getBlock());
+        throw new RuntimeException("Class %s can only be created from a Block or Location, got %s".formatted(this.clazz.getName(), o));
+    }
+
+    private static <SomeEnergyImpl extends IEnergyStorage> Function<Block, SomeEnergyImpl> resolveConstructor(final Class<SomeEnergyImpl> clazz) {
+        final MethodHandle blockHandle = findConstructor(clazz, Block.class);
+        if (blockHandle != null) return (block) -> invoke(clazz, blockHandle, block);
+
+        final MethodHandle locationHandle = findConstructor(clazz, Location.class);
+        if (locationHandle != null) return (block) -> invoke(clazz, locationHandle, block.getLocation());
+
+        throw new RuntimeException("Class %s did not provider a valid constructor for a IEnergyStorage type, it needs one taking a Block or a Location. Smh.".formatted(clazz.getName()));
+    }
+
+    /**
+     * @return a handle of type (parameterType)Object, or null if the class has no such constructor
+     */
+    private static MethodHandle findConstructor(final Class<?> clazz, final Class<?> parameterType) {
+        final Constructor<?> constructor;
+        try {
+            constructor = clazz.getDeclaredConstructor(parameterType);
+        } catch (NoSuchMethodException e) {
+            return null;
         }
 
-        throw new RuntimeException("Class %s did not have a constructor to initiate!".formatted(this.clazz.getName()));
+        try {
+            constructor.trySetAccessible();
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Object.class, parameterType));
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Error with class %s ".formatted(clazz.getName()) + e);
+        }
+    }
+
+    private static <SomeEnergyImpl> SomeEnergyImpl invoke(final Class<SomeEnergyImpl> clazz, final MethodHandle handle, final Object argument) {
+        try {
+            return clazz.cast(handle.invoke(argument));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Error with class %s ".formatted(clazz.getName()) + e);
+        }
     }
 
 }
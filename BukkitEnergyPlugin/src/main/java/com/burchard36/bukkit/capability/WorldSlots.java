@@ -0,0 +1,92 @@
+package com.burchard36.bukkit.capability;
+
+import org.bukkit.World;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Tiny copy-on-write table holding one value per {@link World}
+ *
+ * Servers only have a handful of worlds, so a linear scan over the world UUIDs beats hashing them.
+ * Only the {@link UUID} is kept, never the {@link World} itself.
+ * @param <V> the per world value
+ */
+public final class WorldSlots<V> {
+
+    /* ids & values are always swapped together, so readers never see a mismatched pair */
+    private volatile Snapshot snapshot = new Snapshot(new UUID[0], new Object[0]);
+
+    /**
+     * @param world the {@link World} to look up
+     * @return the value of the world, or null if none was created yet
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final World world) {
+        final UUID worldId = world.getUID();
+        final Snapshot snapshot = this.snapshot;
+        final UUID[] worldIds = snapshot.worldIds;
+        for (int i = 0; i < worldIds.length; i++) {
+            if (worldIds[i].equals(worldId)) return (V) snapshot.values[i];
+        }
+        return null;
+    }
+
+    /**
+     * @param world the {@link World} to look up
+     * @param factory creates the value if the world has none yet
+     * @return the existing or newly created value of the world
+     */
+    public synchronized V getOrCreate(final World world, final Supplier<V> factory) {
+        final V existing = this.get(world);
+        if (existing != null) return existing;
+
+        final Snapshot snapshot = this.snapshot;
+        final int index = snapshot.worldIds.length;
+        final V value = factory.get();
+        final UUID[] worldIds = Arrays.copyOf(snapshot.worldIds, index + 1);
+        final Object[] values = Arrays.copyOf(snapshot.values, index + 1);
+        worldIds[index] = world.getUID();
+        values[index] = value;
+        this.snapshot = new Snapshot(worldIds, values);
+        return value;
+    }
+
+    /**
+     * Drops the value of a world, typically when the world unloads
+     * @param world the {@link World} to drop
+     * @return the dropped value, or null if the world had none
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(final World world) {
+        final UUID worldId = world.getUID();
+        final Snapshot snapshot = this.snapshot;
+        final UUID[] worldIds = snapshot.worldIds;
+        for (int i = 0; i < worldIds.length; i++) {
+            if (!worldIds[i].equals(worldId)) continue;
+            final int last = worldIds.length - 1;
+            final UUID[] newIds = Arrays.copyOf(worldIds, last);
+            final Object[] newValues = Arrays.copyOf(snapshot.values, last);
+            if (i != last) {
+                newIds[i] = worldIds[last];
+                newValues[i] = snapshot.values[last];
+            }
+            this.snapshot = new Snapshot(newIds, newValues);
+            return (V) snapshot.values[i];
+        }
+        return null;
+    }
+
+    /**
+     * @param consumer visits the value of every world
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final Consumer<V> consumer) {
+        for (final Object value : this.snapshot.values) consumer.accept((V) value);
+    }
+
+    private record Snapshot(UUID[] worldIds, Object[] values) {
+    }
+}
@@ -0,0 +1,71 @@
+package com.burchard36.bukkit.command;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.bukkit.metrics.EnergyMetrics;
+import com.burchard36.bukkit.scheduler.EnergyScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code /energy} command, {@code /energy stats} prints the {@link EnergyMetrics} of the server
+ */
+public final class EnergyCommand implements TabExecutor {
+
+    private static final String STATS_PERMISSION = "bukkitenergy.stats";
+
+    private final BukkitEnergyPlugin plugin;
+
+    public EnergyCommand(final @NonNull BukkitEnergyPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(final CommandSender sender, final Command command, final String label, final String[] args) {
+        if (args.length != 1 || !args[0].equalsIgnoreCase("stats")) return false; // prints the usage from plugin.yml
+        if (!sender.hasPermission(STATS_PERMISSION)) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission to view energy stats");
+            return true;
+        }
+        this.sendStats(sender);
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(final CommandSender sender, final Command command, final String label, final String[] args) {
+        final List<String> completions = new ArrayList<>(1);
+        if (args.length == 1 && "stats".startsWith(args[0].toLowerCase()) && sender.hasPermission(STATS_PERMISSION)) completions.add("stats");
+        return completions;
+    }
+
+    private void sendStats(final CommandSender sender) {
+        final EnergyMetrics metrics = this.plugin.getMetrics();
+        final EnergyScheduler scheduler = this.plugin.getEnergyScheduler();
+
+        sender.sendMessage(ChatColor.GOLD + "BukkitEnergy stats");
+        for (final World world : Bukkit.getWorlds()) {
+            line(sender, "Loaded in " + world.getName(), "%,d blocks".formatted(metrics.getLoadedBlocks(world)));
+        }
+        line(sender, "Lookups", "%,d hits, %,d misses (%.1f%% hit)".formatted(metrics.getLookupHits(), metrics.getLookupMisses(), metrics.getLookupHitRate() * 100D));
+        line(sender, "PDC", "%,d reads, %,d writes, %,d pending".formatted(metrics.getPdcReads(), metrics.getPdcWrites(), this.plugin.getSavePipeline().getPendingCount()));
+        line(sender, "Last save", "%.2f ms, %,d blocks".formatted(metrics.getLastSaveNanos() / 1_000_000D, metrics.getLastSaveBlocks()));
+        line(sender, "Energy per tick", "%,.0f generated, %,.0f burned, %,.0f transferred"
+                .formatted(metrics.getGeneratedPerTick(), metrics.getBurnedPerTick(), metrics.getTransferredPerTick()));
+        if (metrics.getEnergyLost() > 0) line(sender, "Energy lost", "%,d to released storages".formatted(metrics.getEnergyLost()));
+        line(sender, "Networks", "%,.0f per tick, %.3f ms per tick (%.4f ms per network)"
+                .formatted(metrics.getNetworksPerTick(), metrics.getNetworkTickMillis(), metrics.getNetworkTickMillisPerNetwork()));
+        line(sender, "Scheduler", "%,d machines (%,d asleep), %.2f ms last tick%s"
+                .formatted(scheduler.size(), scheduler.getSleepingCount(), scheduler.getLastTickNanos() / 1_000_000D, scheduler.isBehind() ? ", behind" : ""));
+    }
+
+    private static void line(final CommandSender sender, final String name, final String value) {
+        sender.sendMessage(ChatColor.GRAY + " " + name + ": " + ChatColor.WHITE + value);
+    }
+}
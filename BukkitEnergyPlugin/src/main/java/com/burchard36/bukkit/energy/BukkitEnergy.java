@@ -1,131 +1,114 @@
 package com.burchard36.bukkit.energy;
 
 import com.burchard36.bukkit.enums.IOType;
-import org.bukkit.Bukkit;
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.energy.core.EnergyCell;
 import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-
 /**
  * An example & Standard implementation of {@link IEnergyStorage}
  *
  * Most plugins should use this as a standard energy
+ * Machines producing or consuming at a steady rate declare it with {@link #setEnergyRate(int)},
+ * it is applied lazily from the game time of the world whenever the storage is read or changed, not every tick.
+ * The storage itself is the {@link EnergyCell} of energy-core, this class adapts it to {@link Block}s & {@link BlockFace}s
  */
-public class BukkitEnergy implements IEnergyStorage {
+public class BukkitEnergy extends EnergyCell implements IEnergyStorage {
     protected final Block block;
-    protected final AtomicInteger storedEnergy = new AtomicInteger(0);
-    protected final AtomicInteger maxStoredEnergy = new AtomicInteger(Integer.MAX_VALUE);
-    protected final ConcurrentHashMap<BlockFace, IOType> allowedFaces = new ConcurrentHashMap<>();
-
+    private final EnergyObservers observers = new EnergyObservers();
 
     public BukkitEnergy(final @NonNull Block block) {
         this.block = block;
-        List.of(BlockFace.values()).forEach((face) -> this.allowedFaces.put(face, IOType.BOTH));
     }
 
     public BukkitEnergy(final @NonNull Location location) {
         this.block = location.getBlock();
-        List.of(BlockFace.values()).forEach((face) -> this.allowedFaces.put(face, IOType.BOTH));
     }
 
     @Override
     public final void deserialize(final @NonNull EnergyStorageData storageObject) {
-        this.storedEnergy.set(storageObject.storedEnergy);
-        this.maxStoredEnergy.set(storageObject.maxEnergy);
-        this.allowedFaces.putAll(storageObject.allowedFaces);
+        /* data written by a long storage is clamped, an int storage cannot hold more */
+        this.restore(storageObject.getStoredEnergy(), storageObject.getMaxEnergy(), storageObject.packedFaces,
+                storageObject.getEnergyRate(), storageObject.getRateTick(), storageObject.getPriority());
     }
 
     @Override
     public final @NonNull EnergyStorageData serialize() {
-        return new EnergyStorageData.Builder(this.getStoredEnergy())
-                .setMaxEnergyStorage(this.getMaxEnergyStorage())
-                .setFaceIOTypes(this.allowedFaces)
+        return new EnergyStorageData.Builder((long) this.getStoredEnergy())
+                .setMaxEnergyStorage((long) this.getMaxEnergyStorage())
+                .setPackedFaceIOTypes(this.getPackedFaces())
+                .setEnergyRate(this.getEnergyRate(), this.getRateTick())
+                .setPriority(this.getPriority())
                 .build();
     }
 
     @Override
-    public final int getStoredEnergy() {
-        return this.storedEnergy.get();
-    }
-
-    @Override
-    public final int getMaxEnergyStorage() {
-        return this.maxStoredEnergy.get();
+    protected final long currentTick() {
+        return this.block.getWorld().getGameTime();
     }
 
     @Override
-    public void setMaxEnergyStored(int amount) {
-        this.maxStoredEnergy.set(amount);
+    protected final void onChanged() {
+        this.observers.notify(this);
     }
 
     @Override
-    public final void generateEnergy(int amount) {
-        int newEnergy = this.storedEnergy.get() + amount;
-        if (newEnergy > this.getMaxEnergyStorage()) newEnergy = this.getMaxEnergyStorage();
-        this.storedEnergy.set(newEnergy);
+    protected final void onGenerated(final int amount) {
+        BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordGenerated(amount);
     }
 
     @Override
-    public final boolean burnEnergy(int amount) {
-        int newEnergy = this.storedEnergy.get() - amount;
-        if (newEnergy < 0) {
-            newEnergy = 0;
-            this.storedEnergy.set(0);
-            return false;
-        }
-        this.storedEnergy.set(newEnergy);
-        return true;
+    protected final void onBurned(final int amount) {
+        BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordBurned(amount);
     }
 
     @Override
     public final boolean canExtract(BlockFace face) {
-        final IOType type = this.allowedFaces.get(face);
-        return type == IOType.BOTH || type == IOType.OUTPUT;
+        return PackedFaces.canExtract(this.allowedFaces.get(), face);
     }
 
     @Override
     public final void toggleFaceIOType(BlockFace face, IOType ioType) {
-        this.allowedFaces.put(face, ioType);
+        this.setFaceMode(face.ordinal(), ioType.ordinal());
+    }
+
+    /**
+     * @param face the {@link BlockFace} to look up
+     * @return the current {@link IOType} of the face
+     */
+    public final IOType getFaceIOType(final @NonNull BlockFace face) {
+        return PackedFaces.get(this.allowedFaces.get(), face);
     }
 
     @Override
     public final boolean canReceive(BlockFace face) {
-        final IOType type = this.allowedFaces.get(face);
-        return type == IOType.BOTH || type == IOType.INPUT;
+        return PackedFaces.canReceive(this.allowedFaces.get(), face);
     }
 
     @Override
     public final int receiveEnergy(final @NonNull BlockFace face, int amount, boolean simulate) {
-        if (!this.canReceive(face)) {
-            return 0;
-        }
-
-        int energyReceived = amount + this.getStoredEnergy();
-        if (energyReceived > this.getMaxEnergyStorage()) energyReceived = this.getMaxEnergyStorage();
-        if (simulate) return energyReceived;
-        this.storedEnergy.set(energyReceived);
-        return this.storedEnergy.get();
+        if (!this.canReceive(face)) return 0;
+        return this.receive(amount, simulate);
     }
 
     @Override
     public final int extractEnergy(final @NonNull BlockFace face, final int amount, final boolean simulate) {
         if (!this.canExtract(face)) return 0;
+        return this.extract(amount, simulate);
+    }
 
-        int newEnergyBalance = this.getStoredEnergy() - amount;
-        if (newEnergyBalance < 0) {
-            final int before = amount - this.getStoredEnergy();
-            this.storedEnergy.set(0);
-            if (before == amount) return 0; // Container is empty
-            return before; // there was actually some power that was moved
-        }
-        if (simulate) return 0;
-        this.storedEnergy.set(newEnergyBalance);
-        return amount;
+    @Override
+    public final boolean addEnergyObserver(final @NonNull EnergyObserver observer) {
+        this.observers.add(observer);
+        return true;
+    }
+
+    @Override
+    public final boolean removeEnergyObserver(final @NonNull EnergyObserver observer) {
+        return this.observers.remove(observer);
     }
 
     @Override
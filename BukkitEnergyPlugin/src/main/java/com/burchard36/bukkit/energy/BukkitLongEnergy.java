@@ -0,0 +1,236 @@
+package com.burchard36.bukkit.energy;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.bukkit.enums.IOType;
+import com.burchard36.energy.core.EnergyOps;
+import com.burchard36.energy.core.LongEnergySlots;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The long counterpart of {@link BukkitEnergy}, holding up to {@link Long#MAX_VALUE} energy, for banks that would otherwise be split over many blocks
+ *
+ * Every addition saturates at {@link Long#MAX_VALUE} instead of wrapping, the int API from {@link IEnergyStorage} is
+ * served by the adapters in {@link ILongEnergyStorage}. Energy moves through the long loops of {@link EnergyOps}.
+ * Saved in the same PDC layout as {@link BukkitEnergy}
+ */
+public class BukkitLongEnergy implements ILongEnergyStorage {
+    protected final Block block;
+    protected final AtomicLong storedEnergy = new AtomicLong(0);
+    protected final AtomicLong maxStoredEnergy = new AtomicLong(Long.MAX_VALUE);
+    /* The IOType of every face packed into one long, see PackedFaces */
+    protected final AtomicLong allowedFaces = new AtomicLong(PackedFaces.ALL_BOTH);
+    /* Set after every change, cleared when the factory flushes this storage to PDC */
+    private volatile boolean dirty = true;
+    /* Higher is filled first when energy is split over several receivers, see IEnergyStorage#getPriority */
+    private volatile int priority = 0;
+    private final EnergyObservers observers = new EnergyObservers();
+    /* The fields above as EnergyOps sees them, a single slot */
+    private final LongEnergySlots state = new LongEnergySlots() {
+        @Override
+        public long getStored(final int slot) {
+            return BukkitLongEnergy.this.storedEnergy.get();
+        }
+
+        @Override
+        public boolean casStored(final int slot, final long expected, final long value) {
+            return BukkitLongEnergy.this.storedEnergy.compareAndSet(expected, value);
+        }
+
+        @Override
+        public long getMax(final int slot) {
+            return BukkitLongEnergy.this.getMaxEnergyStorageLong();
+        }
+
+        @Override
+        public boolean isDirty(final int slot) {
+            return BukkitLongEnergy.this.dirty;
+        }
+
+        @Override
+        public void setDirty(final int slot, final boolean dirty) {
+            BukkitLongEnergy.this.dirty = dirty;
+        }
+    };
+
+    public BukkitLongEnergy(final @NonNull Block block) {
+        this.block = block;
+    }
+
+    public BukkitLongEnergy(final @NonNull Location location) {
+        this.block = location.getBlock();
+    }
+
+    @Override
+    public final void deserialize(final @NonNull EnergyStorageData storageObject) {
+        this.storedEnergy.set(storageObject.getStoredEnergyLong());
+        /* blocks saved by an int storage keep their int max */
+        this.maxStoredEnergy.set(storageObject.getMaxEnergyLong());
+        this.allowedFaces.set(storageObject.packedFaces);
+        this.priority = storageObject.getPriority();
+        this.dirty = false; // freshly loaded, matches what is in PDC
+    }
+
+    @Override
+    public final @NonNull EnergyStorageData serialize() {
+        return new EnergyStorageData.Builder(this.getStoredEnergyLong())
+                .setMaxEnergyStorage(this.getMaxEnergyStorageLong())
+                .setPackedFaceIOTypes(this.allowedFaces.get())
+                .setPriority(this.priority)
+                .build();
+    }
+
+    @Override
+    public final long getStoredEnergyLong() {
+        return this.storedEnergy.get();
+    }
+
+    @Override
+    public final long getMaxEnergyStorageLong() {
+        return this.maxStoredEnergy.get();
+    }
+
+    @Override
+    public void setMaxEnergyStoredLong(final long amount) {
+        this.maxStoredEnergy.set(amount);
+        this.markDirty();
+    }
+
+    /**
+     * @param priority the priority of this storage when energy is split over several receivers, see {@link #getPriority()}
+     */
+    public final void setPriority(final int priority) {
+        if (this.priority == priority) return;
+        this.priority = priority;
+        this.markDirty();
+    }
+
+    @Override
+    public int getPriority() {
+        return this.priority;
+    }
+
+    @Override
+    public final void generateEnergyLong(final long amount) {
+        final long generated = this.give(amount);
+        if (generated > 0) BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordGenerated(generated);
+    }
+
+    @Override
+    public final boolean burnEnergyLong(final long amount) {
+        if (amount <= 0) return true;
+        final long burnt = EnergyOps.burn(this.state, 0, amount);
+        if (burnt > 0) {
+            this.observers.notify(this);
+            BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordBurned(burnt);
+        }
+        return burnt == amount;
+    }
+
+    @Override
+    public final boolean canExtract(final BlockFace face) {
+        return PackedFaces.canExtract(this.allowedFaces.get(), face);
+    }
+
+    @Override
+    public final void toggleFaceIOType(final BlockFace face, final IOType ioType) {
+        final long previous = this.allowedFaces.getAndUpdate((packed) -> PackedFaces.with(packed, face, ioType));
+        if (PackedFaces.get(previous, face) != ioType) this.markDirty();
+    }
+
+    /**
+     * @param face the {@link BlockFace} to look up
+     * @return the current {@link IOType} of the face
+     */
+    public final IOType getFaceIOType(final @NonNull BlockFace face) {
+        return PackedFaces.get(this.allowedFaces.get(), face);
+    }
+
+    @Override
+    public final boolean canReceive(final BlockFace face) {
+        return PackedFaces.canReceive(this.allowedFaces.get(), face);
+    }
+
+    @Override
+    public final long receiveEnergyLong(final @NonNull BlockFace face, final long amount, final boolean simulate) {
+        if (amount <= 0 || !this.canReceive(face)) return 0;
+        if (simulate) return Math.min(amount, this.getFreeSpace());
+        return this.give(amount);
+    }
+
+    @Override
+    public final long extractEnergyLong(final @NonNull BlockFace face, final long amount, final boolean simulate) {
+        if (amount <= 0 || !this.canExtract(face)) return 0;
+        if (simulate) return Math.min(amount, Math.max(0, this.storedEnergy.get()));
+        return this.take(amount);
+    }
+
+    @Override
+    public final boolean consumeDirty() {
+        return EnergyOps.consumeDirty(this.state, 0);
+    }
+
+    @Override
+    public final boolean addEnergyObserver(final @NonNull EnergyObserver observer) {
+        this.observers.add(observer);
+        return true;
+    }
+
+    @Override
+    public final boolean removeEnergyObserver(final @NonNull EnergyObserver observer) {
+        return this.observers.remove(observer);
+    }
+
+    private void markDirty() {
+        EnergyOps.markDirty(this.state, 0);
+        this.observers.notify(this);
+    }
+
+    /**
+     * @return how much more energy this storage may hold right now
+     */
+    final long getFreeSpace() {
+        return EnergyOps.getFreeSpace(this.state, 0);
+    }
+
+    /**
+     * Takes energy out of this storage without any face check, used by {@link EnergyTransfer}
+     * @param amount the max amount to take
+     * @return the amount taken
+     */
+    final long take(final long amount) {
+        final long taken = EnergyOps.take(this.state, 0, amount);
+        if (taken > 0) this.observers.notify(this);
+        return taken;
+    }
+
+    /**
+     * Puts energy into this storage without any face check, used by {@link EnergyTransfer}
+     * @param amount the max amount to put
+     * @return the amount that fit
+     */
+    final long give(final long amount) {
+        final long given = EnergyOps.give(this.state, 0, amount);
+        if (given > 0) this.observers.notify(this);
+        return given;
+    }
+
+    /**
+     * Returns energy previously taken by {@link #take(long)}, ignoring the max storage so nothing is ever voided
+     * @param amount the amount to hand back
+     */
+    final void giveBack(final long amount) {
+        if (amount <= 0) return;
+        EnergyOps.giveBack(this.state, 0, amount);
+        this.observers.notify(this);
+    }
+
+    @Override
+    public final @NonNull Block getBlock() {
+        return this.block;
+    }
+}
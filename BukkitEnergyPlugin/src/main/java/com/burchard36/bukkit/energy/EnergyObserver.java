@@ -0,0 +1,13 @@
+package com.burchard36.bukkit.energy;
+
+/**
+ * Told every time the energy, max energy or faces of a {@link IEnergyStorage} change, see {@link IEnergyStorage#addEnergyObserver(EnergyObserver)}
+ *
+ * Called on whatever thread changed the storage, right after the change, so this has to be cheap & thread safe.
+ * {@link com.burchard36.bukkit.capability.EnergyChangeNotifier} only queues the storage & looks at it once per tick
+ */
+@FunctionalInterface
+public interface EnergyObserver {
+
+    void onEnergyChanged(final IEnergyStorage energyStorage);
+}
@@ -0,0 +1,44 @@
+package com.burchard36.bukkit.energy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@link EnergyObserver}s of one storage, copy on write so telling them is a single volatile read when there are none
+ */
+final class EnergyObservers {
+
+    private static final EnergyObserver[] NONE = new EnergyObserver[0];
+
+    private final AtomicReference<EnergyObserver[]> observers = new AtomicReference<>(NONE);
+
+    void add(final EnergyObserver observer) {
+        this.observers.updateAndGet((current) -> {
+            final EnergyObserver[] added = Arrays.copyOf(current, current.length + 1);
+            added[current.length] = observer;
+            return added;
+        });
+    }
+
+    boolean remove(final EnergyObserver observer) {
+        final EnergyObserver[] previous = this.observers.getAndUpdate((current) -> {
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != observer) continue;
+                if (current.length == 1) return NONE;
+                final EnergyObserver[] removed = new EnergyObserver[current.length - 1];
+                System.arraycopy(current, 0, removed, 0, i);
+                System.arraycopy(current, i + 1, removed, i, current.length - i - 1);
+                return removed;
+            }
+            return current;
+        });
+        for (final EnergyObserver existing : previous) {
+            if (existing == observer) return true;
+        }
+        return false;
+    }
+
+    void notify(final IEnergyStorage energyStorage) {
+        for (final EnergyObserver observer : this.observers.get()) observer.onEnergyChanged(energyStorage);
+    }
+}
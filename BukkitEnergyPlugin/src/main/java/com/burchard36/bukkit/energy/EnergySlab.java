@@ -0,0 +1,170 @@
+package com.burchard36.bukkit.energy;
+
+import com.burchard36.energy.core.EnergySlots;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A fixed size page of {@link SlabEnergy} state, every field is one primitive array indexed by the slot of the storage
+ *
+ * Pages never grow or move, a pool that runs out of slots adds another page, so handles keep pointing at the same arrays
+ * while other threads read them. Elements are read & written through {@link VarHandle}s with the same volatile &
+ * compare-and-set semantics the atomics of {@link BukkitEnergy} have, so the arithmetic of
+ * {@link com.burchard36.energy.core.EnergyOps} runs on a slot as it does on a cell. Freed slots are zeroed, so scanning
+ * a page never needs to know which slots are live.
+ */
+final class EnergySlab implements EnergySlots {
+
+    static final int SIZE = 1024;
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BOOLEANS = MethodHandles.arrayElementVarHandle(boolean[].class);
+    private static final VarHandle OBSERVERS = MethodHandles.arrayElementVarHandle(EnergyObservers[].class);
+
+    final EnergySlabs.WorldPool pool;
+    /* index of this page in its pool, slot i of this page is slot (index * SIZE + i) of the pool */
+    final int index;
+    private final int[] stored = new int[SIZE];
+    private final int[] max = new int[SIZE];
+    private final long[] faces = new long[SIZE];
+    private final int[] rates = new int[SIZE];
+    private final long[] rateTicks = new long[SIZE];
+    private final int[] priorities = new int[SIZE];
+    private final boolean[] dirty = new boolean[SIZE];
+    /* see BlockKey#pack, only written while the slot is handed out */
+    private final long[] positions = new long[SIZE];
+    /* created the first time a storage gets observed, most never are */
+    private final EnergyObservers[] observers = new EnergyObservers[SIZE];
+
+    EnergySlab(final EnergySlabs.WorldPool pool, final int index) {
+        this.pool = pool;
+        this.index = index;
+    }
+
+    /**
+     * Sets up a slot for a storage, with the same defaults as a new {@link BukkitEnergy}
+     */
+    void claim(final int slot, final long position) {
+        this.positions[slot] = position;
+        this.faces[slot] = PackedFaces.ALL_BOTH;
+        this.rates[slot] = 0;
+        this.rateTicks[slot] = 0;
+        this.priorities[slot] = 0;
+        INTS.setVolatile(this.max, slot, Integer.MAX_VALUE);
+        INTS.setVolatile(this.stored, slot, 0);
+        BOOLEANS.setVolatile(this.dirty, slot, true);
+    }
+
+    /**
+     * Zeroes a slot given back to the pool
+     */
+    void clear(final int slot) {
+        INTS.setVolatile(this.stored, slot, 0);
+        INTS.setVolatile(this.max, slot, 0);
+        BOOLEANS.setVolatile(this.dirty, slot, false);
+        OBSERVERS.setVolatile(this.observers, slot, null);
+    }
+
+    long getPosition(final int slot) {
+        return this.positions[slot];
+    }
+
+    @Override
+    public int getStored(final int slot) {
+        return (int) INTS.getVolatile(this.stored, slot);
+    }
+
+    void setStored(final int slot, final int value) {
+        INTS.setVolatile(this.stored, slot, value);
+    }
+
+    @Override
+    public boolean casStored(final int slot, final int expected, final int value) {
+        return INTS.compareAndSet(this.stored, slot, expected, value);
+    }
+
+    @Override
+    public int getMax(final int slot) {
+        return (int) INTS.getVolatile(this.max, slot);
+    }
+
+    void setMax(final int slot, final int value) {
+        INTS.setVolatile(this.max, slot, value);
+    }
+
+    long getFaces(final int slot) {
+        return (long) LONGS.getVolatile(this.faces, slot);
+    }
+
+    void setFaces(final int slot, final long value) {
+        LONGS.setVolatile(this.faces, slot, value);
+    }
+
+    boolean casFaces(final int slot, final long expected, final long value) {
+        return LONGS.compareAndSet(this.faces, slot, expected, value);
+    }
+
+    @Override
+    public int getRate(final int slot) {
+        return (int) INTS.getVolatile(this.rates, slot);
+    }
+
+    void setRate(final int slot, final int value) {
+        INTS.setVolatile(this.rates, slot, value);
+    }
+
+    int getPriority(final int slot) {
+        return (int) INTS.getVolatile(this.priorities, slot);
+    }
+
+    void setPriority(final int slot, final int value) {
+        INTS.setVolatile(this.priorities, slot, value);
+    }
+
+    @Override
+    public long getRateTick(final int slot) {
+        return (long) LONGS.getVolatile(this.rateTicks, slot);
+    }
+
+    void setRateTick(final int slot, final long value) {
+        LONGS.setVolatile(this.rateTicks, slot, value);
+    }
+
+    @Override
+    public boolean casRateTick(final int slot, final long expected, final long value) {
+        return LONGS.compareAndSet(this.rateTicks, slot, expected, value);
+    }
+
+    @Override
+    public boolean isDirty(final int slot) {
+        return (boolean) BOOLEANS.getVolatile(this.dirty, slot);
+    }
+
+    @Override
+    public void setDirty(final int slot, final boolean value) {
+        BOOLEANS.setVolatile(this.dirty, slot, value);
+    }
+
+    /**
+     * @param create true to create the observers of the slot if it has none yet
+     * @return the observers of the slot, null if it has none & create is false
+     */
+    EnergyObservers getObservers(final int slot, final boolean create) {
+        final EnergyObservers existing = (EnergyObservers) OBSERVERS.getAcquire(this.observers, slot);
+        if (existing != null || !create) return existing;
+        final EnergyObservers created = new EnergyObservers();
+        final EnergyObservers witness = (EnergyObservers) OBSERVERS.compareAndExchange(this.observers, slot, null, created);
+        return witness != null ? witness : created;
+    }
+
+    /**
+     * @return the energy stored in every slot of this page, a plain scan of one array that may miss changes still in flight
+     */
+    long sumStored() {
+        long sum = 0;
+        for (final int energy : this.stored) sum += energy;
+        return sum;
+    }
+}
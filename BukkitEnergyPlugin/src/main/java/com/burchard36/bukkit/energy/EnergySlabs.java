@@ -0,0 +1,135 @@
+package com.burchard36.bukkit.energy;
+
+import com.burchard36.energy.core.BlockKey;
+import com.burchard36.bukkit.capability.WorldSlots;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Hands out the slots {@link SlabEnergy}s keep their state in, one pool of {@link EnergySlab} pages per world
+ *
+ * Pass {@link #allocate(Block)} as the constructor of an {@link com.burchard36.bukkit.capability.EnergyFactory},
+ * see {@link com.burchard36.bukkit.BukkitEnergyPlugin#getSlabEnergyFactory()}. The factory gives every slot back
+ * with {@link IEnergyStorage#release()} once the storage leaves it, a pool left without any storage is dropped
+ * so it keeps no reference to its world.
+ */
+public final class EnergySlabs {
+
+    private final WorldSlots<WorldPool> pools = new WorldSlots<>();
+
+    /**
+     * Creates the storage of a block in a free slot of the pool of its world
+     * @param block the {@link Block} of the storage
+     * @return a new {@link SlabEnergy}, empty & accepting energy on every face like a new {@link BukkitEnergy}
+     */
+    public @NonNull SlabEnergy allocate(final @NonNull Block block) {
+        final World world = block.getWorld();
+        while (true) {
+            final WorldPool pool = this.pools.getOrCreate(world, () -> new WorldPool(this, world));
+            final SlabEnergy energyImpl = pool.allocate(block.getX(), block.getY(), block.getZ());
+            if (energyImpl != null) return energyImpl; // null when the pool was just dropped, the next one is created
+        }
+    }
+
+    /**
+     * @param world the {@link World} to count
+     * @return amount of storages holding a slot in the world
+     */
+    public int size(final @NonNull World world) {
+        final WorldPool pool = this.pools.get(world);
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * @param world the {@link World} to count
+     * @return amount of slots allocated for the world, used or not
+     */
+    public int getCapacity(final @NonNull World world) {
+        final WorldPool pool = this.pools.get(world);
+        return pool == null ? 0 : pool.getCapacity();
+    }
+
+    /**
+     * Sums the energy of every storage of a world by scanning the pages, without touching a single handle.
+     * Energy rates are only included up to when each storage was last read, see {@link SlabEnergy#setEnergyRate(int)}
+     * @param world the {@link World} to sum
+     * @return the total stored energy
+     */
+    public long sumStored(final @NonNull World world) {
+        final WorldPool pool = this.pools.get(world);
+        return pool == null ? 0 : pool.sumStored();
+    }
+
+    /**
+     * The pages of one world, freed slots are reused before another page is added
+     */
+    static final class WorldPool {
+        private final EnergySlabs owner;
+        final World world;
+        private final ArrayList<EnergySlab> slabs = new ArrayList<>();
+        /* free slots of the whole pool as a stack, (page index * SIZE + slot) */
+        private int[] freeSlots = new int[0];
+        private int freeCount = 0;
+        private int live = 0;
+        private boolean dropped = false;
+
+        private WorldPool(final EnergySlabs owner, final World world) {
+            this.owner = owner;
+            this.world = world;
+        }
+
+        private synchronized SlabEnergy allocate(final int x, final int y, final int z) {
+            if (this.dropped) return null;
+            if (this.freeCount == 0) this.addSlab();
+            final int poolSlot = this.freeSlots[--this.freeCount];
+            final EnergySlab slab = this.slabs.get(poolSlot / EnergySlab.SIZE);
+            final int slot = poolSlot % EnergySlab.SIZE;
+            slab.claim(slot, BlockKey.pack(x, y, z));
+            this.live++;
+            return new SlabEnergy(slab, slot);
+        }
+
+        /**
+         * Takes a slot back, called once by {@link SlabEnergy#release()}
+         */
+        void free(final EnergySlab slab, final int slot) {
+            final boolean empty;
+            synchronized (this) {
+                slab.clear(slot);
+                this.freeSlots[this.freeCount++] = slab.index * EnergySlab.SIZE + slot;
+                empty = --this.live == 0;
+                if (empty) this.dropped = true;
+            }
+            /* nothing can allocate from this pool anymore, so the pool removed here is always this one */
+            if (empty) this.owner.pools.remove(this.world);
+        }
+
+        private void addSlab() {
+            final EnergySlab slab = new EnergySlab(this, this.slabs.size());
+            this.slabs.add(slab);
+            final int capacity = this.slabs.size() * EnergySlab.SIZE;
+            if (this.freeSlots.length < capacity) this.freeSlots = Arrays.copyOf(this.freeSlots, capacity);
+            /* pushed in reverse, so the lowest slot is handed out first */
+            final int first = slab.index * EnergySlab.SIZE;
+            for (int slot = EnergySlab.SIZE - 1; slot >= 0; slot--) this.freeSlots[this.freeCount++] = first + slot;
+        }
+
+        private synchronized int size() {
+            return this.live;
+        }
+
+        private synchronized int getCapacity() {
+            return this.slabs.size() * EnergySlab.SIZE;
+        }
+
+        private synchronized long sumStored() {
+            long sum = 0;
+            for (final EnergySlab slab : this.slabs) sum += slab.sumStored();
+            return sum;
+        }
+    }
+}
@@ -2,45 +2,98 @@ package com.burchard36.bukkit.energy;
 
 import com.burchard36.bukkit.BukkitEnergyPlugin;
 import com.burchard36.bukkit.enums.IOType;
+import com.burchard36.energy.core.EnergyDataFormat;
+import com.burchard36.energy.core.EnergyMath;
 import com.jeff_media.customblockdata.CustomBlockData;
 import com.jeff_media.morepersistentdatatypes.DataType;
-import org.bukkit.NamespacedKey;
+import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class EnergyStorageData {
 
-    protected int storedEnergy = 0;
-    protected int maxEnergy = Integer.MAX_VALUE;
-    protected final ConcurrentHashMap<BlockFace, IOType> allowedFaces = new ConcurrentHashMap<>();
-    protected EnergyStorageData(final int storedEnergy, final int maxEnergy,
-                                final ConcurrentHashMap<BlockFace, IOType> allowedFaces) {
+    /*
+     * The Keys.energyDataKey LONG_ARRAY is laid out by EnergyDataFormat,
+     * so int storages & {@link ILongEnergyStorage}s share the same layout
+     */
+    public static final int FORMAT_VERSION = EnergyDataFormat.VERSION;
+
+    protected long storedEnergy = 0;
+    protected long maxEnergy = Integer.MAX_VALUE;
+    /* The IOType of every face, see PackedFaces */
+    protected long packedFaces = PackedFaces.ALL_BOTH;
+    /* Net energy per tick & the game time it was applied up to, see BukkitEnergy#setEnergyRate */
+    protected int energyRate = 0;
+    protected long rateTick = 0;
+    /* Higher is filled first when energy is split over several receivers, see IEnergyStorage#getPriority */
+    protected int priority = 0;
+    /* true when this was read from the old three key layout, and should be written back in the compact one */
+    private boolean legacy = false;
+    protected EnergyStorageData(final long storedEnergy, final long maxEnergy, final long packedFaces) {
         this.storedEnergy = storedEnergy;
         this.maxEnergy = maxEnergy;
-        this.allowedFaces.putAll(allowedFaces);
+        this.packedFaces = packedFaces;
+    }
+
+    protected EnergyStorageData(final long storedEnergy, final long maxEnergy, final long packedFaces,
+                                final int energyRate, final long rateTick) {
+        this(storedEnergy, maxEnergy, packedFaces);
+        this.energyRate = energyRate;
+        this.rateTick = rateTick;
+    }
+
+    protected EnergyStorageData(final long storedEnergy, final long maxEnergy, final long packedFaces,
+                                final int energyRate, final long rateTick, final int priority) {
+        this(storedEnergy, maxEnergy, packedFaces, energyRate, rateTick);
+        this.priority = priority;
+    }
+
+    /**
+     * @deprecated faces are packed into one long now, use {@link #EnergyStorageData(long, long, long)}
+     */
+    @Deprecated
+    protected EnergyStorageData(final int storedEnergy, final int maxEnergy,
+                                final ConcurrentHashMap<BlockFace, IOType> allowedFaces) {
+        this(storedEnergy, maxEnergy, PackedFaces.pack(allowedFaces));
+    }
+
+    /**
+     * Checks if a {@link PersistentDataContainer} holds energy data
+     * @param dataContainer a {@link PersistentDataContainer}, typically from a block using JeffLib
+     * @return true if the container was written by {@link #deserializeTo(IEnergyStorage)}
+     */
+    public static boolean isEnergyData(final PersistentDataContainer dataContainer) {
+        return dataContainer.has(Keys.energyDataKey, PersistentDataType.LONG_ARRAY)
+                || dataContainer.has(Keys.storedEnergyKey, PersistentDataType.INTEGER);
+    }
+
+    /**
+     * Removes all energy data from a {@link PersistentDataContainer}
+     * @param dataContainer a {@link PersistentDataContainer}, typically from a block using JeffLib
+     */
+    public static void clear(final PersistentDataContainer dataContainer) {
+        dataContainer.remove(Keys.energyDataKey);
+        dataContainer.remove(Keys.storedEnergyKey);
+        dataContainer.remove(Keys.maxEnergyKey);
+        dataContainer.remove(Keys.allowedFaces);
     }
 
     /**
      * Serialized a {@link EnergyStorageData} from a {@link PersistentDataContainer}, typically from a block using JeffLib
+     * Reads the compact layout in a single tag read, falling back to the legacy three key layout
      * @param dataContainer a {@link PersistentDataContainer} that gets provided
      * @return a {@link EnergyStorageData} for use  in {@link BukkitEnergy}
      */
     public static EnergyStorageData serializeFrom(final PersistentDataContainer dataContainer) {
-        final int storedEnergy = dataContainer.getOrDefault(Keys.storedEnergyKey, PersistentDataType.INTEGER, 0);
-        final int maxEnergy = dataContainer.getOrDefault(Keys.maxEnergyKey, PersistentDataType.INTEGER, Integer.MAX_VALUE);
-        final HashMap<String, String> allowedFacesSerialized = dataContainer.getOrDefault(Keys.allowedFaces, DataType.asHashMap(PersistentDataType.STRING, PersistentDataType.STRING), new HashMap<>());
-        final ConcurrentHashMap<BlockFace, IOType> allowedFaces = new ConcurrentHashMap<>();
-        allowedFacesSerialized.forEach((blockFaceString, ioTypeString) -> {
-            final BlockFace blockFace = BlockFace.valueOf(blockFaceString);
-            final IOType ioType = IOType.valueOf(ioTypeString);
-            allowedFaces.put(blockFace, ioType);
-        });
-        return new EnergyStorageData(storedEnergy, maxEnergy, allowedFaces);
+        final long[] encoded = dataContainer.get(Keys.energyDataKey, PersistentDataType.LONG_ARRAY);
+        if (encoded != null) return decode(encoded);
+        return serializeFromLegacy(dataContainer);
     }
 
     /**
@@ -50,30 +103,171 @@ public class EnergyStorageData {
      * @param <T> the implementation generic
      */
     public static <T extends IEnergyStorage> PersistentDataContainer deserializeTo(final @NonNull T energyImpl) {
-        final PersistentDataContainer dataContainer = new CustomBlockData(energyImpl.getBlock(), BukkitEnergyPlugin.getInstance());
-        final EnergyStorageData storageData = energyImpl.serialize();
+        return writeTo(energyImpl.getBlock(), energyImpl.serialize().encode());
+    }
+
+    /**
+     * Writes already encoded data to the {@link PersistentDataContainer} of a {@link Block}
+     * @param block the {@link Block} to write to
+     * @param encoded data from {@link #encode()}
+     * @return the {@link PersistentDataContainer} modified
+     */
+    public static PersistentDataContainer writeTo(final @NonNull Block block, final long @NonNull [] encoded) {
+        final PersistentDataContainer dataContainer = new CustomBlockData(block, BukkitEnergyPlugin.getInstance());
 
-        dataContainer.set(Keys.storedEnergyKey, PersistentDataType.INTEGER, storageData.storedEnergy);
-        dataContainer.set(Keys.maxEnergyKey, PersistentDataType.INTEGER, storageData.maxEnergy);
-        final HashMap<String, String> allowedFacesSerialized = new HashMap<>();
-        storageData.allowedFaces.forEach(((blockFace, ioType) -> allowedFacesSerialized.put(blockFace.name(), ioType.name())));
-        dataContainer.set(Keys.allowedFaces, DataType.asHashMap(PersistentDataType.STRING, PersistentDataType.STRING), allowedFacesSerialized);
+        dataContainer.set(Keys.energyDataKey, PersistentDataType.LONG_ARRAY, encoded);
+        BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordPdcWrite();
+        if (dataContainer.has(Keys.storedEnergyKey, PersistentDataType.INTEGER)) {
+            /* migrated, drop the legacy keys so they are never read again */
+            dataContainer.remove(Keys.storedEnergyKey);
+            dataContainer.remove(Keys.maxEnergyKey);
+            dataContainer.remove(Keys.allowedFaces);
+        }
 
         return dataContainer;
     }
 
+    /**
+     * @return true if this data was read from the legacy three key layout
+     */
+    public final boolean isLegacy() {
+        return this.legacy;
+    }
+
+    /**
+     * @return the stored energy, clamped to {@link Integer#MAX_VALUE} for int storages
+     */
+    public final int getStoredEnergy() {
+        return EnergyMath.clampToInt(this.storedEnergy);
+    }
+
+    /**
+     * @return the max energy, clamped to {@link Integer#MAX_VALUE} for int storages
+     */
+    public final int getMaxEnergy() {
+        return EnergyMath.clampToInt(this.maxEnergy);
+    }
+
+    /**
+     * @return the stored energy, as written by a {@link ILongEnergyStorage}
+     */
+    public final long getStoredEnergyLong() {
+        return this.storedEnergy;
+    }
+
+    /**
+     * @return the max energy, as written by a {@link ILongEnergyStorage}
+     */
+    public final long getMaxEnergyLong() {
+        return this.maxEnergy;
+    }
+
+    /**
+     * @param face the {@link BlockFace} to look up
+     * @return the {@link IOType} of the face
+     */
+    public final IOType getFaceIOType(final @NonNull BlockFace face) {
+        return PackedFaces.get(this.packedFaces, face);
+    }
+
+    /**
+     * @return a copy of the {@link IOType} of every face
+     * @deprecated faces are packed into one long now, use {@link #getFaceIOType(BlockFace)} or {@link #getPackedFaceIOTypes()}
+     */
+    @Deprecated
+    public final ConcurrentHashMap<BlockFace, IOType> getAllowedFaces() {
+        final ConcurrentHashMap<BlockFace, IOType> allowedFaces = new ConcurrentHashMap<>();
+        PackedFaces.unpack(this.packedFaces, allowedFaces);
+        return allowedFaces;
+    }
+
+    /**
+     * @return the {@link IOType} of every face packed into one long, see {@link PackedFaces}
+     */
+    public final long getPackedFaceIOTypes() {
+        return this.packedFaces;
+    }
+
+    /**
+     * @return the net energy per tick, positive for generators & negative for consumers
+     */
+    public final int getEnergyRate() {
+        return this.energyRate;
+    }
+
+    /**
+     * @return the world game time the energy rate was applied up to when this data was written
+     */
+    public final long getRateTick() {
+        return this.rateTick;
+    }
+
+    /**
+     * @return the priority of the storage as a receiver, see {@link IEnergyStorage#getPriority()}
+     */
+    public final int getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Encodes this data into the compact {@link Keys#energyDataKey} layout
+     * @return the encoded data
+     */
+    public final long[] encode() {
+        return EnergyDataFormat.encode(this.storedEnergy, this.maxEnergy, this.packedFaces, this.energyRate, this.rateTick, this.priority);
+    }
+
+    /**
+     * Decodes data written by {@link #encode()}
+     * @param encoded the encoded data
+     * @return the decoded {@link EnergyStorageData}
+     */
+    public static EnergyStorageData decode(final long[] encoded) {
+        final int version = EnergyDataFormat.checkVersion(encoded);
+        final long stored = encoded[EnergyDataFormat.STORED];
+        final long max = encoded[EnergyDataFormat.MAX];
+        final long packedFaces = encoded[EnergyDataFormat.FACES];
+        if (version < 2) return new EnergyStorageData(stored, max, packedFaces); // written before rates existed
+        final int energyRate = (int) encoded[EnergyDataFormat.RATE];
+        final long rateTick = encoded[EnergyDataFormat.RATE_TICK];
+        if (version < 3) return new EnergyStorageData(stored, max, packedFaces, energyRate, rateTick); // written before priorities existed
+        return new EnergyStorageData(stored, max, packedFaces, energyRate, rateTick, (int) encoded[EnergyDataFormat.PRIORITY]);
+    }
+
+    private static EnergyStorageData serializeFromLegacy(final PersistentDataContainer dataContainer) {
+        final int storedEnergy = dataContainer.getOrDefault(Keys.storedEnergyKey, PersistentDataType.INTEGER, 0);
+        final int maxEnergy = dataContainer.getOrDefault(Keys.maxEnergyKey, PersistentDataType.INTEGER, Integer.MAX_VALUE);
+        final HashMap<String, String> allowedFacesSerialized = dataContainer.getOrDefault(Keys.allowedFaces, DataType.asHashMap(PersistentDataType.STRING, PersistentDataType.STRING), new HashMap<>());
+        long packedFaces = PackedFaces.ALL_BOTH;
+        for (final Map.Entry<String, String> entry : allowedFacesSerialized.entrySet()) {
+            packedFaces = PackedFaces.with(packedFaces, BlockFace.valueOf(entry.getKey()), IOType.valueOf(entry.getValue()));
+        }
+        final EnergyStorageData storageData = new EnergyStorageData(storedEnergy, maxEnergy, packedFaces);
+        storageData.legacy = true;
+        return storageData;
+    }
+
     /**
      * Basic builder class to initialize {@link EnergyStorageData}
      */
     public static class Builder {
-        final NamespacedKey storedEnergyKey = new NamespacedKey(BukkitEnergyPlugin.getInstance(), "stored_energy");
+        private long maxStorageAmount = Integer.MAX_VALUE;
+        private long storedEnergy = 0;
+        private long packedFaces = PackedFaces.ALL_BOTH;
+        private int energyRate = 0;
+        private long rateTick = 0;
+        private int priority = 0;
 
-        private int maxStorageAmount = Integer.MAX_VALUE;
-        private int storedEnergy = 0;
-        private ConcurrentHashMap<BlockFace, IOType> allowedFaces;
+        public Builder(long storedEnergy) {
+            this.storedEnergy = storedEnergy;
+        }
 
+        /**
+         * @deprecated kept for plugins compiled against it, energy is a long now, use {@link #Builder(long)}
+         */
+        @Deprecated
         public Builder(int storedEnergy) {
-            this.storedEnergy = storedEnergy;
+            this((long) storedEnergy);
         }
 
         public Builder() {
@@ -85,23 +279,81 @@ public class EnergyStorageData {
          * @param energyStored the amount of energy this stored container is holding
          * @return instance of this Builder
          */
-        public final Builder setEnergyStored(int energyStored) {
+        public final Builder setEnergyStored(long energyStored) {
             this.storedEnergy = energyStored;
             return this;
         }
 
-        public final Builder setMaxEnergyStorage(int maxStorageAmount) {
+        /**
+         * @deprecated kept for plugins compiled against it, use {@link #setEnergyStored(long)}
+         */
+        @Deprecated
+        public final Builder setEnergyStored(int energyStored) {
+            return this.setEnergyStored((long) energyStored);
+        }
+
+        public final Builder setMaxEnergyStorage(long maxStorageAmount) {
             this.maxStorageAmount = maxStorageAmount;
             return this;
         }
 
+        /**
+         * @deprecated kept for plugins compiled against it, use {@link #setMaxEnergyStorage(long)}
+         */
+        @Deprecated
+        public final Builder setMaxEnergyStorage(int maxStorageAmount) {
+            return this.setMaxEnergyStorage((long) maxStorageAmount);
+        }
+
+        /**
+         * Copies the IOType of every face in the map, faces missing from it are {@link IOType#BOTH}
+         * @param allowedFaces the IOType of every face
+         * @return instance of this Builder
+         */
+        public final Builder setFaceIOTypes(Map<BlockFace, IOType> allowedFaces) {
+            this.packedFaces = PackedFaces.pack(allowedFaces);
+            return this;
+        }
+
+        /**
+         * @deprecated kept for plugins compiled against it, use {@link #setFaceIOTypes(Map)}
+         */
+        @Deprecated
         public final Builder setFaceIOTypes(ConcurrentHashMap<BlockFace, IOType> allowedFaces) {
-            this.allowedFaces = allowedFaces;
+            return this.setFaceIOTypes((Map<BlockFace, IOType>) allowedFaces);
+        }
+
+        /**
+         * @param packedFaces the IOType of every face packed into one long, see {@link PackedFaces}
+         * @return instance of this Builder
+         */
+        public final Builder setPackedFaceIOTypes(long packedFaces) {
+            this.packedFaces = packedFaces;
             return this;
         }
 
         public final Builder setFaceIOType(BlockFace face, IOType type) {
-            this.allowedFaces.put(face, type);
+            this.packedFaces = PackedFaces.with(this.packedFaces, face, type);
+            return this;
+        }
+
+        /**
+         * @param energyRate the net energy per tick, see {@link BukkitEnergy#setEnergyRate(int)}
+         * @param rateTick the world game time the rate was applied up to
+         * @return instance of this Builder
+         */
+        public final Builder setEnergyRate(int energyRate, long rateTick) {
+            this.energyRate = energyRate;
+            this.rateTick = rateTick;
+            return this;
+        }
+
+        /**
+         * @param priority the priority of the storage as a receiver, see {@link IEnergyStorage#getPriority()}
+         * @return instance of this Builder
+         */
+        public final Builder setPriority(int priority) {
+            this.priority = priority;
             return this;
         }
 
@@ -110,7 +362,8 @@ public class EnergyStorageData {
          * @return a new instance of {@link EnergyStorageData}
          */
         public final EnergyStorageData build() {
-            return new EnergyStorageData(this.storedEnergy, this.maxStorageAmount, this.allowedFaces);
+            return new EnergyStorageData(this.storedEnergy, this.maxStorageAmount, this.packedFaces, this.energyRate, this.rateTick,
+                    this.priority);
         }
     }
 }
@@ -0,0 +1,202 @@
+package com.burchard36.bukkit.energy;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.energy.core.EnergyCell;
+import com.burchard36.energy.core.EnergyMath;
+import com.burchard36.energy.core.EnergyDistribution;
+import org.bukkit.block.BlockFace;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Moves energy between two {@link IEnergyStorage}s as a single operation
+ *
+ * The faces are checked once and the feasible amount is computed once, energy taken from the source
+ * that the target could not accept is always handed back, so a transfer never creates or loses energy.
+ * Transfers between two {@link BukkitEnergy}s, or any other {@link EnergyCell}s, or two {@link SlabEnergy}s skip the simulate/commit round trips entirely,
+ * {@link BukkitLongEnergy}s skip them when energy is taken, delivered or handed back on its own.
+ * {@link #distribute} splits one source over many targets by priority & fair share, see {@link EnergyDistribution}.
+ * A {@link SlabEnergy} released while energy is in transit neither gives nor takes energy anymore, energy that
+ * can not be handed back to a released source is dropped & counted by {@link com.burchard36.bukkit.metrics.EnergyMetrics#getEnergyLost()}.
+ */
+public final class EnergyTransfer {
+
+    private EnergyTransfer() {
+    }
+
+    /**
+     * Moves energy from one storage to another
+     * @param source the {@link IEnergyStorage} energy is taken from
+     * @param sourceFace the {@link BlockFace} of the source energy leaves through
+     * @param target the {@link IEnergyStorage} energy is given to
+     * @param targetFace the {@link BlockFace} of the target energy enters through
+     * @param amount the max amount of energy to move
+     * @return the amount of energy that was moved
+     */
+    public static int transfer(final @NonNull IEnergyStorage source, final @NonNull BlockFace sourceFace,
+                               final @NonNull IEnergyStorage target, final @NonNull BlockFace targetFace, final int amount) {
+        if (amount <= 0 || source == target || isReleased(source) || isReleased(target)) return 0;
+        if (!source.canExtract(sourceFace) || !target.canReceive(targetFace)) return 0;
+
+        if (source instanceof EnergyCell cellSource && target instanceof EnergyCell cellTarget) {
+            final int given = EnergyCell.transfer(cellSource, cellTarget, amount);
+            recordTransferred(given);
+            return given;
+        }
+        if (source instanceof SlabEnergy slabSource && target instanceof SlabEnergy slabTarget) {
+            final int taken = slabSource.take(Math.min(amount, slabTarget.getFreeSpace()));
+            if (taken == 0) return 0;
+            final int given = slabTarget.give(taken);
+            if (given < taken) slabSource.giveBack(taken - given);
+            recordTransferred(given);
+            return given;
+        }
+
+        final int feasible = target.receiveEnergy(targetFace, amount, true);
+        if (feasible <= 0) return 0;
+        final int extracted = source.extractEnergy(sourceFace, feasible, false);
+        if (extracted <= 0) return 0;
+        final int received = target.receiveEnergy(targetFace, extracted, false);
+        if (received < extracted) giveBack(source, extracted - received); // hand back what did not fit
+        recordTransferred(received);
+        return received;
+    }
+
+    /**
+     * Takes energy out of a storage for a transfer that completes later, with {@link #deliver} or {@link #giveBack}.
+     * Used when the target is ticked by another thread, the energy is in transit in between
+     * @param source the {@link IEnergyStorage} energy is taken from
+     * @param sourceFace the {@link BlockFace} of the source energy leaves through
+     * @param amount the max amount of energy to take
+     * @return the amount of energy taken
+     */
+    public static int take(final @NonNull IEnergyStorage source, final @NonNull BlockFace sourceFace, final int amount) {
+        if (amount <= 0 || isReleased(source) || !source.canExtract(sourceFace)) return 0;
+        if (source instanceof EnergyCell cellSource) return cellSource.take(amount);
+        if (source instanceof SlabEnergy slabSource) return slabSource.take(amount);
+        if (source instanceof BukkitLongEnergy longSource) return (int) longSource.take(amount);
+        return Math.max(0, source.extractEnergy(sourceFace, amount, false));
+    }
+
+    /**
+     * Delivers energy taken by {@link #take}, whatever does not fit has to be handed back with {@link #giveBack}.
+     * A released target accepts nothing
+     * @param target the {@link IEnergyStorage} energy is given to
+     * @param targetFace the {@link BlockFace} of the target energy enters through
+     * @param amount the amount of energy in transit
+     * @return the amount of energy the target accepted
+     */
+    public static int deliver(final @NonNull IEnergyStorage target, final @NonNull BlockFace targetFace, final int amount) {
+        if (amount <= 0 || isReleased(target) || !target.canReceive(targetFace)) return 0;
+        final int delivered;
+        if (target instanceof EnergyCell cellTarget) delivered = cellTarget.give(amount);
+        else if (target instanceof SlabEnergy slabTarget) delivered = slabTarget.give(amount);
+        else if (target instanceof BukkitLongEnergy longTarget) delivered = (int) longTarget.give(amount);
+        else delivered = Math.max(0, target.receiveEnergy(targetFace, amount, false));
+        recordTransferred(delivered);
+        return delivered;
+    }
+
+    /**
+     * A released SlabEnergy throws on every access, its slot may already hold another block
+     * @param storage the storage
+     * @return true if the storage is a released SlabEnergy
+     */
+    public static boolean isReleased(final @NonNull IEnergyStorage storage) {
+        return storage instanceof SlabEnergy slabStorage && !slabStorage.isLive();
+    }
+
+    /* Energy taken with take is only counted once it arrives */
+    private static void recordTransferred(final int amount) {
+        if (amount > 0) BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordTransferred(amount);
+    }
+
+    /**
+     * Hands energy taken by {@link #take} back to its source, so a transfer that could not be delivered loses nothing.
+     * Only a source released in the meantime can not take it back, the energy is dropped & recorded as lost
+     * @param source the {@link IEnergyStorage} the energy was taken from
+     * @param amount the amount of energy to hand back
+     */
+    public static void giveBack(final @NonNull IEnergyStorage source, final int amount) {
+        if (amount <= 0) return;
+        if (isReleased(source)) {
+            BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordLost(amount);
+            return;
+        }
+        if (source instanceof EnergyCell cellSource) cellSource.giveBack(amount);
+        else if (source instanceof SlabEnergy slabSource) slabSource.giveBack(amount);
+        else if (source instanceof BukkitLongEnergy longSource) longSource.giveBack(amount);
+        else source.generateEnergy(amount);
+    }
+
+    /**
+     * Splits the energy of one source over many targets with an {@link EnergyDistribution}, highest {@link IEnergyStorage#getPriority()}
+     * first & proportional to the free space of each target, instead of the first target getting everything.
+     * Target {@code i} is made of the {@code i}th element of every array
+     * @param source the {@link IEnergyStorage} energy is taken from
+     * @param sourceFaces the {@link BlockFace}s energy leaves the source through, one for every target
+     * @param targets the {@link IEnergyStorage}s energy is given to
+     * @param targetFaces the {@link BlockFace}s energy enters the targets through
+     * @param count the amount of targets
+     * @param amount the max amount of energy to take from the source
+     * @param distribution reused between calls, so distributing never allocates
+     * @param moved if not null, receives the amount of energy actually moved to every target
+     * @return the total amount of energy moved
+     */
+    public static long distribute(final @NonNull IEnergyStorage source, final @NonNull BlockFace[] sourceFaces,
+                                  final @NonNull IEnergyStorage[] targets, final @NonNull BlockFace[] targetFaces, final int count,
+                                  final int amount, final @NonNull EnergyDistribution distribution, final int[] moved) {
+        distribution.clear();
+        final boolean live = !isReleased(source);
+        for (int i = 0; i < count; i++) {
+            final IEnergyStorage target = targets[i];
+            final boolean open = live && target != source && !isReleased(target)
+                    && source.canExtract(sourceFaces[i]) && target.canReceive(targetFaces[i]);
+            distribution.add(open ? target.getPriority() : 0, open ? freeSpaceOf(target) : 0);
+        }
+        distribution.solve(live ? Math.min(amount, storedOf(source)) : 0);
+
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            final int share = distribution.getAllocation(i);
+            final int transferred = share > 0 ? transfer(source, sourceFaces[i], targets[i], targetFaces[i], share) : 0;
+            if (moved != null) moved[i] = transferred;
+            total += transferred;
+        }
+        return total;
+    }
+
+    private static int storedOf(final IEnergyStorage storage) {
+        if (storage instanceof ILongEnergyStorage longStorage) return EnergyMath.clampToInt(longStorage.getStoredEnergyLong());
+        return storage.getStoredEnergy();
+    }
+
+    private static int freeSpaceOf(final IEnergyStorage storage) {
+        if (storage instanceof ILongEnergyStorage longStorage) {
+            return EnergyMath.clampToInt(longStorage.getMaxEnergyStorageLong() - longStorage.getStoredEnergyLong());
+        }
+        return storage.getMaxEnergyStorage() - storage.getStoredEnergy();
+    }
+
+    /**
+     * Moves energy along many source/target pairs in one call, pair {@code i} is made of the {@code i}th element of every array
+     * @param sources the {@link IEnergyStorage}s energy is taken from
+     * @param sourceFaces the {@link BlockFace}s energy leaves the sources through
+     * @param targets the {@link IEnergyStorage}s energy is given to
+     * @param targetFaces the {@link BlockFace}s energy enters the targets through
+     * @param amounts the max amount of energy to move for every pair
+     * @param moved if not null, receives the amount of energy actually moved for every pair
+     * @param count the amount of pairs to process
+     * @return the total amount of energy moved
+     */
+    public static long transferAll(final @NonNull IEnergyStorage[] sources, final @NonNull BlockFace[] sourceFaces,
+                                   final @NonNull IEnergyStorage[] targets, final @NonNull BlockFace[] targetFaces,
+                                   final int[] amounts, final int[] moved, final int count) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            final int transferred = transfer(sources[i], sourceFaces[i], targets[i], targetFaces[i], amounts[i]);
+            if (moved != null) moved[i] = transferred;
+            total += transferred;
+        }
+        return total;
+    }
+}
@@ -1,6 +1,7 @@
 package com.burchard36.bukkit.energy;
 
 import com.burchard36.bukkit.enums.IOType;
+import com.burchard36.energy.core.EnergyDistribution;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
@@ -47,13 +48,14 @@ public interface IEnergyStorage {
 
     /**
      * Adds power to this block via "generations" means, typically use for generator blocks
+     * Anything above {@link #getMaxEnergyStorage()} is voided
      * @param amount Amount to add
-     * @return the amount of energy in storage
      */
     void generateEnergy(final int amount);
 
     /**
      * Removes power to this block via "Spending" means, typically when a block is using power
+     * If there is not enough power, whatever is left still gets burnt and false is returned
      * @param amount amount fot remove
      * @return true if the storage container had enough power to burn
      */
@@ -93,8 +95,8 @@ public interface IEnergyStorage {
      * Adds energy to this storage container and returns the amount added
      * @param face the {@link BlockFace} that is receiving energy
      * @param amount The amount of energy to add
-     * @param simulate If true, the energy added will be simulated, meaning this method returns 0
-     * @return the amount of energy that was added to the storage, returns 0 is {@param simulate} is true
+     * @param simulate If true, the energy added will only be simulated, meaning the storage is not modified
+     * @return the amount of energy that was (or would have been if {@param simulate} is true) added to the storage
      * <br>
      * @since 1.0.0
      * @author Burchard36
@@ -105,11 +107,64 @@ public interface IEnergyStorage {
      * Extracts energy from this storage container and returns the amount removed
      * @param face the {@link BlockFace} that is outputting energy
      * @param amount The amount of energy to extract
-     * @param simulate If true, the energy added will be simulated, meaning this method returns 0
-     * @return the amount of energy that was removed from the storage, returns 0 if {@param simulate} is true
+     * @param simulate If true, the energy removed will only be simulated, meaning the storage is not modified
+     * @return the amount of energy that was (or would have been if {@param simulate} is true) removed from the storage
      */
     int extractEnergy(final BlockFace face, int amount, boolean simulate);
 
+    /**
+     * Returns true if this storage changed since the last time this was called, and clears that state
+     * Factories only flush storages to PDC when this returns true, implementations that do not track changes are always saved
+     * @return true if this storage needs to be saved
+     */
+    default boolean consumeDirty() {
+        return true;
+    }
+
+    /**
+     * Adds an observer told about every change of this storage, {@link BukkitEnergy}, {@link BukkitLongEnergy} & {@link SlabEnergy} support this
+     * @param observer the {@link EnergyObserver}
+     * @return false if this implementation does not support observers, it will never tell anyone about changes
+     */
+    default boolean addEnergyObserver(final EnergyObserver observer) {
+        return false;
+    }
+
+    /**
+     * @param observer an {@link EnergyObserver} added with {@link #addEnergyObserver(EnergyObserver)}
+     * @return true if the observer was removed
+     */
+    default boolean removeEnergyObserver(final EnergyObserver observer) {
+        return false;
+    }
+
+    /**
+     * Priority of this storage when energy is split over several receivers, see {@link EnergyDistribution}.
+     * Higher priorities are filled first. {@link BukkitEnergy}, {@link BukkitLongEnergy} & {@link SlabEnergy} set it with
+     * their setPriority & save it with the rest of their data. Networks only read this when they compile, so call
+     * {@link com.burchard36.bukkit.network.EnergyNetworkManager#refresh} after changing it on a storage already in a network
+     * @return the priority, 0 by default
+     */
+    default int getPriority() {
+        return 0;
+    }
+
+    /**
+     * Net energy this storage produces (positive) or consumes (negative) per tick on its own, without anyone calling it.
+     * Networks never let a storage that is changing by itself sleep
+     * @return the energy per tick, 0 by default
+     */
+    default int getEnergyRate() {
+        return 0;
+    }
+
+    /**
+     * Called by the {@link com.burchard36.bukkit.capability.EnergyFactory} once this storage was flushed & left every index,
+     * storages sharing memory like {@link SlabEnergy} give it back here. Nothing may use this storage afterwards
+     */
+    default void release() {
+    }
+
     /**
      * Returns the {@link Block} associated with this implementation
      * @return a {@link Block}.... Do I really have to explain this one
@@ -0,0 +1,91 @@
+package com.burchard36.bukkit.energy;
+
+import com.burchard36.energy.core.EnergyMath;
+
+import org.bukkit.block.BlockFace;
+
+/**
+ * An {@link IEnergyStorage} holding more than {@link Integer#MAX_VALUE} energy
+ *
+ * Everything talking to the int API keeps working, amounts above the int range are clamped to {@link Integer#MAX_VALUE},
+ * so a full bank looks like an int storage holding {@link Integer#MAX_VALUE} until enough energy is taken out of it.
+ * See {@link BukkitLongEnergy} for the standard implementation
+ */
+public interface ILongEnergyStorage extends IEnergyStorage {
+
+    /**
+     * @return how much energy is stored
+     */
+    long getStoredEnergyLong();
+
+    /**
+     * @return how much energy this storage may hold
+     */
+    long getMaxEnergyStorageLong();
+
+    /**
+     * Sets the MAX amount of storage this EnergyStorage may have
+     * @param amount the new max storage amount
+     */
+    void setMaxEnergyStoredLong(final long amount);
+
+    /**
+     * Adds power to this block via "generations" means, anything above {@link #getMaxEnergyStorageLong()} is voided
+     * @param amount Amount to add
+     */
+    void generateEnergyLong(final long amount);
+
+    /**
+     * Removes power from this block, if there is not enough power whatever is left still gets burnt and false is returned
+     * @param amount amount to remove
+     * @return true if the storage container had enough power to burn
+     */
+    boolean burnEnergyLong(final long amount);
+
+    /**
+     * Same as {@link #receiveEnergy(BlockFace, int, boolean)} with a long amount
+     */
+    long receiveEnergyLong(final BlockFace face, long amount, boolean simulate);
+
+    /**
+     * Same as {@link #extractEnergy(BlockFace, int, boolean)} with a long amount
+     */
+    long extractEnergyLong(final BlockFace face, long amount, boolean simulate);
+
+    /* The int API, adapted to the long one */
+
+    @Override
+    default int getStoredEnergy() {
+        return EnergyMath.clampToInt(this.getStoredEnergyLong());
+    }
+
+    @Override
+    default int getMaxEnergyStorage() {
+        return EnergyMath.clampToInt(this.getMaxEnergyStorageLong());
+    }
+
+    @Override
+    default void setMaxEnergyStored(final int amount) {
+        this.setMaxEnergyStoredLong(amount);
+    }
+
+    @Override
+    default void generateEnergy(final int amount) {
+        this.generateEnergyLong(amount);
+    }
+
+    @Override
+    default boolean burnEnergy(final int amount) {
+        return this.burnEnergyLong(amount);
+    }
+
+    @Override
+    default int receiveEnergy(final BlockFace face, final int amount, final boolean simulate) {
+        return (int) this.receiveEnergyLong(face, amount, simulate); // never more than the int amount asked for
+    }
+
+    @Override
+    default int extractEnergy(final BlockFace face, final int amount, final boolean simulate) {
+        return (int) this.extractEnergyLong(face, amount, simulate);
+    }
+}
@@ -1,17 +1,25 @@
 package com.burchard36.bukkit.energy;
 
-import com.burchard36.bukkit.BukkitEnergyPlugin;
 import org.bukkit.NamespacedKey;
 
 /**
  * A static list of {@link org.bukkit.NamespacedKey} used when writing/reading from PDC
+ *
+ * Built from the namespace directly instead of the plugin instance, so loading this class never needs a running server
  */
 public class Keys {
+    /* The namespace Bukkit derives from the plugin name in plugin.yml, lower cased */
+    public static final String NAMESPACE = "bukkitenergy";
+
+    /* Will always be LONG_ARRAY, see EnergyStorageData for the layout */
+    public static final NamespacedKey energyDataKey = new NamespacedKey(NAMESPACE, "energy_data");
+
+    /* Legacy layout, only read to migrate blocks written before energy_data existed */
     /* Will always be INTEGER */
-    public static final NamespacedKey storedEnergyKey = new NamespacedKey(BukkitEnergyPlugin.getInstance(), "stored_energy");
+    public static final NamespacedKey storedEnergyKey = new NamespacedKey(NAMESPACE, "stored_energy");
     /* Will always be INTEGER */
-    public static final NamespacedKey maxEnergyKey = new NamespacedKey(BukkitEnergyPlugin.getInstance(), "max_energy");
+    public static final NamespacedKey maxEnergyKey = new NamespacedKey(NAMESPACE, "max_energy");
     /* Will always be a MAP */
-    public static final NamespacedKey allowedFaces = new NamespacedKey(BukkitEnergyPlugin.getInstance(), "allowed_faces");
+    public static final NamespacedKey allowedFaces = new NamespacedKey(NAMESPACE, "allowed_faces");
 
 }
@@ -0,0 +1,97 @@
+package com.burchard36.bukkit.energy;
+
+import com.burchard36.bukkit.enums.IOType;
+import com.burchard36.energy.core.FaceConfig;
+import org.bukkit.block.BlockFace;
+
+import java.util.Map;
+
+/**
+ * Static helpers for packing the {@link IOType} of every {@link BlockFace} into a single long, 3 bits per face
+ *
+ * 19 faces * 3 bits = 57 bits, the value of a face is the ordinal of its {@link IOType}.
+ * Adapts the Bukkit types to {@link FaceConfig}, which does the packing on plain face indexes & modes
+ */
+public final class PackedFaces {
+
+    public static final int BITS_PER_FACE = FaceConfig.BITS_PER_FACE;
+    private static final BlockFace[] FACES = BlockFace.values();
+    private static final IOType[] IO_TYPES = IOType.values();
+
+    /**
+     * Every face set to {@link IOType#BOTH}, the default of a new storage
+     */
+    public static final long ALL_BOTH = FaceConfig.ALL_BOTH;
+
+    private PackedFaces() {
+    }
+
+    /**
+     * @param ioType the {@link IOType} every face should have
+     * @return packed faces with every face set to the given type
+     */
+    public static long fill(final IOType ioType) {
+        long packed = 0;
+        for (final BlockFace face : FACES) packed = with(packed, face, ioType);
+        return packed;
+    }
+
+    /**
+     * @param packed the packed faces
+     * @param face the {@link BlockFace} to read
+     * @return the {@link IOType} of the face
+     */
+    public static IOType get(final long packed, final BlockFace face) {
+        return IO_TYPES[FaceConfig.get(packed, face.ordinal())];
+    }
+
+    /**
+     * @param packed the packed faces
+     * @param face the {@link BlockFace} to check
+     * @return true if the face is {@link IOType#INPUT} or {@link IOType#BOTH}
+     */
+    public static boolean canReceive(final long packed, final BlockFace face) {
+        return FaceConfig.canReceive(packed, face.ordinal());
+    }
+
+    /**
+     * @param packed the packed faces
+     * @param face the {@link BlockFace} to check
+     * @return true if the face is {@link IOType#OUTPUT} or {@link IOType#BOTH}
+     */
+    public static boolean canExtract(final long packed, final BlockFace face) {
+        return FaceConfig.canExtract(packed, face.ordinal());
+    }
+
+    /**
+     * @param packed the packed faces
+     * @param face the {@link BlockFace} to change
+     * @param ioType the new {@link IOType} of the face
+     * @return a copy of the packed faces with the given face changed
+     */
+    public static long with(final long packed, final BlockFace face, final IOType ioType) {
+        return FaceConfig.with(packed, face.ordinal(), ioType.ordinal());
+    }
+
+    /**
+     * Packs a map of faces, faces missing from the map are {@link IOType#BOTH}
+     * @param faces the faces to pack
+     * @return the packed faces
+     */
+    public static long pack(final Map<BlockFace, IOType> faces) {
+        long packed = ALL_BOTH;
+        for (final Map.Entry<BlockFace, IOType> entry : faces.entrySet()) {
+            packed = with(packed, entry.getKey(), entry.getValue());
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks every face into a map
+     * @param packed the packed faces
+     * @param into the map receiving every face
+     */
+    public static void unpack(final long packed, final Map<BlockFace, IOType> into) {
+        for (final BlockFace face : FACES) into.put(face, get(packed, face));
+    }
+}
@@ -0,0 +1,297 @@
+package com.burchard36.bukkit.energy;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.energy.core.BlockKey;
+import com.burchard36.bukkit.enums.IOType;
+import com.burchard36.energy.core.EnergyOps;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * The slab backed counterpart of {@link BukkitEnergy}, a flyweight handle onto one slot of an {@link EnergySlab}
+ *
+ * The handle is only a page & a slot, stored & max energy, faces, rate, priority & dirty flag live in primitive arrays shared by
+ * a thousand storages, so huge registries cost a fraction of the heap & give the GC almost nothing to trace.
+ * Behaves exactly like {@link BukkitEnergy}, including energy rates, the page runs the same {@link EnergyOps} on the slot. The {@link Block} is looked up from the world
+ * every time {@link #getBlock()} is called. Created by {@link EnergySlabs#allocate(Block)}, once {@link #release()}
+ * gave the slot back the handle must not be used anymore
+ */
+public final class SlabEnergy implements IEnergyStorage {
+
+    private final EnergySlab slab;
+    /* -1 once released, volatile so a handle used by another thread sees the release */
+    private volatile int slot;
+
+    SlabEnergy(final EnergySlab slab, final int slot) {
+        this.slab = slab;
+        this.slot = slot;
+    }
+
+    @Override
+    public void deserialize(final @NonNull EnergyStorageData storageObject) {
+        final int slot = this.slot();
+        /* data written by a long storage is clamped, an int storage cannot hold more */
+        this.slab.setStored(slot, storageObject.getStoredEnergy());
+        this.slab.setMax(slot, storageObject.getMaxEnergy());
+        this.slab.setFaces(slot, storageObject.packedFaces);
+        this.slab.setRateTick(slot, storageObject.getRateTick());
+        this.slab.setRate(slot, storageObject.getEnergyRate()); // the time since rateTick gets applied on the next read
+        this.slab.setPriority(slot, storageObject.getPriority());
+        this.slab.setDirty(slot, false); // freshly loaded, matches what is in PDC
+    }
+
+    @Override
+    public @NonNull EnergyStorageData serialize() {
+        final int slot = this.slot();
+        return new EnergyStorageData.Builder((long) this.getStoredEnergy())
+                .setMaxEnergyStorage((long) this.getMaxEnergyStorage())
+                .setPackedFaceIOTypes(this.slab.getFaces(slot))
+                .setEnergyRate(this.slab.getRate(slot), this.slab.getRateTick(slot))
+                .setPriority(this.slab.getPriority(slot))
+                .build();
+    }
+
+    @Override
+    public int getStoredEnergy() {
+        this.settle();
+        return this.slab.getStored(this.slot());
+    }
+
+    @Override
+    public int getMaxEnergyStorage() {
+        return this.slab.getMax(this.slot());
+    }
+
+    @Override
+    public void setMaxEnergyStored(final int amount) {
+        this.settle();
+        this.slab.setMax(this.slot(), amount);
+        this.markDirty();
+    }
+
+    /**
+     * Declares a steady production or consumption, see {@link BukkitEnergy#setEnergyRate(int)}
+     * @param energyRate the net energy per tick, positive for generators & negative for consumers, 0 to stop
+     */
+    public void setEnergyRate(final int energyRate) {
+        this.settle(); // everything before now still runs at the old rate
+        final int slot = this.slot();
+        this.slab.setRateTick(slot, this.gameTime());
+        if (this.slab.getRate(slot) == energyRate) return;
+        this.slab.setRate(slot, energyRate);
+        this.markDirty();
+    }
+
+    @Override
+    public int getEnergyRate() {
+        return this.slab.getRate(this.slot());
+    }
+
+    /**
+     * @param priority the priority of this storage when energy is split over several receivers, see {@link #getPriority()}
+     */
+    public void setPriority(final int priority) {
+        final int slot = this.slot();
+        if (this.slab.getPriority(slot) == priority) return;
+        this.slab.setPriority(slot, priority);
+        this.markDirty();
+    }
+
+    @Override
+    public int getPriority() {
+        return this.slab.getPriority(this.slot());
+    }
+
+    /**
+     * Applies the energy rate for every tick since it was last applied, same as BukkitEnergy
+     */
+    private void settle() {
+        final int slot = this.slot();
+        if (this.slab.getRate(slot) == 0) return;
+        final int change = EnergyOps.settle(this.slab, slot, this.gameTime());
+        if (change == 0) return;
+        this.notifyObservers(slot);
+        if (change > 0) BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordGenerated(change);
+        else BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordBurned(-change);
+    }
+
+    private long gameTime() {
+        return this.slab.pool.world.getGameTime();
+    }
+
+    @Override
+    public void generateEnergy(final int amount) {
+        final int generated = this.give(amount);
+        if (generated > 0) BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordGenerated(generated);
+    }
+
+    @Override
+    public boolean burnEnergy(final int amount) {
+        if (amount <= 0) return true;
+        this.settle();
+        final int slot = this.slot();
+        final int burnt = EnergyOps.burn(this.slab, slot, amount);
+        if (burnt > 0) {
+            this.notifyObservers(slot);
+            BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordBurned(burnt);
+        }
+        return burnt == amount;
+    }
+
+    @Override
+    public boolean canExtract(final BlockFace face) {
+        return PackedFaces.canExtract(this.slab.getFaces(this.slot()), face);
+    }
+
+    @Override
+    public void toggleFaceIOType(final BlockFace face, final IOType ioType) {
+        final int slot = this.slot();
+        long previous;
+        do {
+            previous = this.slab.getFaces(slot);
+            if (PackedFaces.get(previous, face) == ioType) return;
+        } while (!this.slab.casFaces(slot, previous, PackedFaces.with(previous, face, ioType)));
+        this.markDirty();
+    }
+
+    /**
+     * @param face the {@link BlockFace} to look up
+     * @return the current {@link IOType} of the face
+     */
+    public IOType getFaceIOType(final @NonNull BlockFace face) {
+        return PackedFaces.get(this.slab.getFaces(this.slot()), face);
+    }
+
+    @Override
+    public boolean canReceive(final BlockFace face) {
+        return PackedFaces.canReceive(this.slab.getFaces(this.slot()), face);
+    }
+
+    @Override
+    public int receiveEnergy(final @NonNull BlockFace face, final int amount, final boolean simulate) {
+        if (amount <= 0 || !this.canReceive(face)) return 0;
+        if (simulate) return Math.min(amount, this.getFreeSpace());
+        return this.give(amount);
+    }
+
+    @Override
+    public int extractEnergy(final @NonNull BlockFace face, final int amount, final boolean simulate) {
+        if (amount <= 0 || !this.canExtract(face)) return 0;
+        if (simulate) return Math.min(amount, this.getStoredEnergy());
+        return this.take(amount);
+    }
+
+    @Override
+    public boolean consumeDirty() {
+        return EnergyOps.consumeDirty(this.slab, this.slot());
+    }
+
+    /* Network segments that are about to be replaced may still stop observing a released storage, so these never throw */
+
+    @Override
+    public boolean addEnergyObserver(final @NonNull EnergyObserver observer) {
+        final int slot = this.slot;
+        if (slot < 0) return false;
+        this.slab.getObservers(slot, true).add(observer);
+        return true;
+    }
+
+    @Override
+    public boolean removeEnergyObserver(final @NonNull EnergyObserver observer) {
+        final int slot = this.slot;
+        if (slot < 0) return false; // its observers were dropped with the slot
+        final EnergyObservers observers = this.slab.getObservers(slot, false);
+        return observers != null && observers.remove(observer);
+    }
+
+    private void markDirty() {
+        final int slot = this.slot();
+        EnergyOps.markDirty(this.slab, slot);
+        this.notifyObservers(slot);
+    }
+
+    private void notifyObservers(final int slot) {
+        final EnergyObservers observers = this.slab.getObservers(slot, false);
+        if (observers != null) observers.notify(this);
+    }
+
+    /**
+     * @return how much more energy this storage may hold right now
+     */
+    int getFreeSpace() {
+        this.settle();
+        return EnergyOps.getFreeSpace(this.slab, this.slot());
+    }
+
+    /**
+     * Takes energy out of this storage without any face check, used by {@link EnergyTransfer}
+     * @param amount the max amount to take
+     * @return the amount taken
+     */
+    int take(final int amount) {
+        if (amount <= 0) return 0;
+        this.settle();
+        final int slot = this.slot();
+        final int taken = EnergyOps.take(this.slab, slot, amount);
+        if (taken > 0) this.notifyObservers(slot);
+        return taken;
+    }
+
+    /**
+     * Puts energy into this storage without any face check, used by {@link EnergyTransfer}
+     * @param amount the max amount to put
+     * @return the amount that fit
+     */
+    int give(final int amount) {
+        if (amount <= 0) return 0;
+        this.settle();
+        final int slot = this.slot();
+        final int given = EnergyOps.give(this.slab, slot, amount);
+        if (given > 0) this.notifyObservers(slot);
+        return given;
+    }
+
+    /**
+     * Returns energy previously taken by {@link #take(int)}, ignoring the max storage so nothing is ever voided
+     * @param amount the amount to hand back
+     */
+    void giveBack(final int amount) {
+        if (amount <= 0) return;
+        this.settle();
+        final int slot = this.slot();
+        EnergyOps.giveBack(this.slab, slot, amount);
+        this.notifyObservers(slot);
+    }
+
+    /**
+     * Gives the slot back to its pool, the {@link com.burchard36.bukkit.capability.EnergyFactory} calls this
+     * once the storage was flushed & dropped from every index
+     */
+    @Override
+    public void release() {
+        final int slot = this.slot;
+        if (slot < 0) return;
+        this.slot = -1;
+        this.slab.pool.free(this.slab, slot);
+    }
+
+    /**
+     * @return true until {@link #release()} gave the slot back
+     */
+    public boolean isLive() {
+        return this.slot >= 0;
+    }
+
+    @Override
+    public @NonNull Block getBlock() {
+        final long position = this.slab.getPosition(this.slot());
+        return this.slab.pool.world.getBlockAt(BlockKey.unpackX(position), BlockKey.unpackY(position), BlockKey.unpackZ(position));
+    }
+
+    private int slot() {
+        final int slot = this.slot;
+        if (slot < 0) throw new RuntimeException("Energy storage was released, its slot may already belong to another block");
+        return slot;
+    }
+}
@@ -0,0 +1,210 @@
+package com.burchard36.bukkit.metrics;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.bukkit.capability.EnergyFactory;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link EnergyMetrics} of BukkitEnergy, the record methods are called from the hot paths of the energy layer
+ *
+ * Every counter is a {@link LongAdder}, so threads ticking networks or machines never contend on a single cache line.
+ * Once per second the counters are sampled to compute the per tick values, nothing else runs on the main thread
+ */
+public final class BukkitEnergyMetrics implements EnergyMetrics {
+
+    private static final int SAMPLE_TICKS = 20;
+
+    private final LongAdder lookupHits = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+    private final LongAdder pdcReads = new LongAdder();
+    private final LongAdder pdcWrites = new LongAdder();
+    private final LongAdder energyGenerated = new LongAdder();
+    private final LongAdder energyBurned = new LongAdder();
+    private final LongAdder energyTransferred = new LongAdder();
+    private final LongAdder energyLost = new LongAdder();
+    private final LongAdder networkTickNanos = new LongAdder();
+    private final LongAdder networksTicked = new LongAdder();
+    private volatile long lastSaveNanos = 0;
+    private volatile int lastSaveBlocks = 0;
+
+    /* Totals at the previous sample, only touched by the sample task */
+    private long sampledGenerated = 0;
+    private long sampledBurned = 0;
+    private long sampledTransferred = 0;
+    private long sampledNetworkNanos = 0;
+    private long sampledNetworks = 0;
+    private volatile double generatedPerTick = 0;
+    private volatile double burnedPerTick = 0;
+    private volatile double transferredPerTick = 0;
+    private volatile double networkTickMillis = 0;
+    private volatile double networksPerTick = 0;
+    private BukkitTask sampleTask;
+
+    /**
+     * Starts sampling the per tick values once per second
+     * @param plugin the {@link Plugin} owning the task
+     */
+    public void start(final @NonNull Plugin plugin) {
+        if (this.sampleTask != null) return;
+        this.sampleTask = Bukkit.getScheduler().runTaskTimer(plugin, this::sample, SAMPLE_TICKS, SAMPLE_TICKS);
+    }
+
+    public void stop() {
+        if (this.sampleTask != null) this.sampleTask.cancel();
+        this.sampleTask = null;
+    }
+
+    public void recordLookup(final boolean hit) {
+        if (hit) this.lookupHits.increment();
+        else this.lookupMisses.increment();
+    }
+
+    public void recordPdcRead() {
+        this.pdcReads.increment();
+    }
+
+    public void recordPdcWrite() {
+        this.pdcWrites.increment();
+    }
+
+    public void recordWorldSave(final long nanos, final int blocks) {
+        this.lastSaveNanos = nanos;
+        this.lastSaveBlocks = blocks;
+    }
+
+    public void recordGenerated(final long amount) {
+        this.energyGenerated.add(amount);
+    }
+
+    public void recordBurned(final long amount) {
+        this.energyBurned.add(amount);
+    }
+
+    public void recordTransferred(final long amount) {
+        if (amount > 0) this.energyTransferred.add(amount);
+    }
+
+    /**
+     * @param amount energy in transit that could not be handed back, because its source was released meanwhile
+     */
+    public void recordLost(final long amount) {
+        if (amount > 0) this.energyLost.add(amount);
+    }
+
+    /**
+     * @param nanos time one network manager spent ticking
+     * @param networks amount of networks it ticked
+     */
+    public void recordNetworkTick(final long nanos, final int networks) {
+        this.networkTickNanos.add(nanos);
+        this.networksTicked.add(networks);
+    }
+
+    private void sample() {
+        final long generated = this.energyGenerated.sum();
+        final long burned = this.energyBurned.sum();
+        final long transferred = this.energyTransferred.sum();
+        final long networkNanos = this.networkTickNanos.sum();
+        final long networks = this.networksTicked.sum();
+        this.generatedPerTick = (double) (generated - this.sampledGenerated) / SAMPLE_TICKS;
+        this.burnedPerTick = (double) (burned - this.sampledBurned) / SAMPLE_TICKS;
+        this.transferredPerTick = (double) (transferred - this.sampledTransferred) / SAMPLE_TICKS;
+        this.networkTickMillis = (networkNanos - this.sampledNetworkNanos) / 1_000_000D / SAMPLE_TICKS;
+        this.networksPerTick = (double) (networks - this.sampledNetworks) / SAMPLE_TICKS;
+        this.sampledGenerated = generated;
+        this.sampledBurned = burned;
+        this.sampledTransferred = transferred;
+        this.sampledNetworkNanos = networkNanos;
+        this.sampledNetworks = networks;
+    }
+
+    @Override
+    public int getLoadedBlocks(final @NonNull World world) {
+        int loaded = 0;
+        for (final EnergyFactory<?> energyFactory : BukkitEnergyPlugin.getInstance().getEnergyFactories()) {
+            loaded += energyFactory.getLoadedCount(world);
+        }
+        return loaded;
+    }
+
+    @Override
+    public long getLookupHits() {
+        return this.lookupHits.sum();
+    }
+
+    @Override
+    public long getLookupMisses() {
+        return this.lookupMisses.sum();
+    }
+
+    @Override
+    public long getPdcReads() {
+        return this.pdcReads.sum();
+    }
+
+    @Override
+    public long getPdcWrites() {
+        return this.pdcWrites.sum();
+    }
+
+    @Override
+    public long getLastSaveNanos() {
+        return this.lastSaveNanos;
+    }
+
+    @Override
+    public int getLastSaveBlocks() {
+        return this.lastSaveBlocks;
+    }
+
+    @Override
+    public long getEnergyGenerated() {
+        return this.energyGenerated.sum();
+    }
+
+    @Override
+    public long getEnergyBurned() {
+        return this.energyBurned.sum();
+    }
+
+    @Override
+    public long getEnergyTransferred() {
+        return this.energyTransferred.sum();
+    }
+
+    @Override
+    public long getEnergyLost() {
+        return this.energyLost.sum();
+    }
+
+    @Override
+    public double getGeneratedPerTick() {
+        return this.generatedPerTick;
+    }
+
+    @Override
+    public double getBurnedPerTick() {
+        return this.burnedPerTick;
+    }
+
+    @Override
+    public double getTransferredPerTick() {
+        return this.transferredPerTick;
+    }
+
+    @Override
+    public double getNetworksPerTick() {
+        return this.networksPerTick;
+    }
+
+    @Override
+    public double getNetworkTickMillis() {
+        return this.networkTickMillis;
+    }
+}
@@ -0,0 +1,94 @@
+package com.burchard36.bukkit.metrics;
+
+import org.bukkit.World;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Read only view of what the energy layer is doing, get it from {@link com.burchard36.bukkit.BukkitEnergyPlugin#getMetrics()}
+ *
+ * Counters only go up from the moment the plugin enabled, the per tick values are averaged over the last second.
+ * Energy is only counted for {@link com.burchard36.bukkit.energy.BukkitEnergy} & {@link com.burchard36.bukkit.energy.BukkitLongEnergy},
+ * and for every transfer going through {@link com.burchard36.bukkit.energy.EnergyTransfer}
+ */
+public interface EnergyMetrics {
+
+    /**
+     * @param world the {@link World} to count
+     * @return the amount of energy blocks loaded in memory in the world, across every factory
+     */
+    int getLoadedBlocks(final @NonNull World world);
+
+    /**
+     * @return amount of energy block lookups answered from memory
+     */
+    long getLookupHits();
+
+    /**
+     * @return amount of energy block lookups that were not in memory, and had to check the index or PDC
+     */
+    long getLookupMisses();
+
+    /**
+     * @return the share of lookups answered from memory, between 0 and 1
+     */
+    default double getLookupHitRate() {
+        final long hits = this.getLookupHits();
+        final long total = hits + this.getLookupMisses();
+        return total == 0 ? 1D : (double) hits / total;
+    }
+
+    /**
+     * @return amount of energy blocks read from PDC
+     */
+    long getPdcReads();
+
+    /**
+     * @return amount of energy blocks written to PDC
+     */
+    long getPdcWrites();
+
+    /**
+     * @return time the last world save spent snapshotting energy blocks, in nanoseconds
+     */
+    long getLastSaveNanos();
+
+    /**
+     * @return amount of energy blocks the last world save queued to be written
+     */
+    int getLastSaveBlocks();
+
+    long getEnergyGenerated();
+
+    long getEnergyBurned();
+
+    long getEnergyTransferred();
+
+    /**
+     * @return energy that was in transit when its source got released, so it had nowhere to go back to
+     */
+    long getEnergyLost();
+
+    double getGeneratedPerTick();
+
+    double getBurnedPerTick();
+
+    double getTransferredPerTick();
+
+    /**
+     * @return amount of networks ticked every tick, across every factory
+     */
+    double getNetworksPerTick();
+
+    /**
+     * @return time spent ticking networks every tick, in milliseconds
+     */
+    double getNetworkTickMillis();
+
+    /**
+     * @return time spent ticking a single network, in milliseconds
+     */
+    default double getNetworkTickMillisPerNetwork() {
+        final double networks = this.getNetworksPerTick();
+        return networks == 0 ? 0D : this.getNetworkTickMillis() / networks;
+    }
+}
@@ -0,0 +1,239 @@
+package com.burchard36.bukkit.network;
+
+import com.burchard36.bukkit.capability.IEnergyConduit;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import com.burchard36.energy.core.NetworkGraph;
+import com.burchard36.energy.core.NetworkGraph.Hubs;
+import org.bukkit.block.BlockFace;
+
+import java.util.ArrayList;
+
+/**
+ * A group of physically connected {@link IEnergyStorage} & {@link IEnergyConduit} blocks
+ *
+ * The topology is compiled into flat arrays the first time the network ticks after a change,
+ * every tick after that is a single pass over those arrays without touching the world.
+ * A network crossing shards is compiled into one {@link NetworkSegment} per shard, ticked by the thread of that shard.
+ */
+public final class EnergyNetwork {
+
+    final ArrayList<NetworkNode> nodes = new ArrayList<>();
+    /* Told when this network changes, so the shards get rebuilt before the next tick */
+    private final EnergyNetworkManager<?> manager;
+    private boolean dirty = true;
+
+    private int edgeCount = 0;
+    NetworkSegment[] segments = new NetworkSegment[0];
+
+    EnergyNetwork(final EnergyNetworkManager<?> manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * @return the amount of blocks in this network
+     */
+    public int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * @return the amount of directed transfer edges in this network, every storage linked to a hub counting once
+     * per shard ticking the hub, compiling it if needed
+     */
+    public int getEdgeCount() {
+        synchronized (this.manager) {
+            if (this.dirty) this.compile();
+            return this.edgeCount;
+        }
+    }
+
+    /**
+     * @return the amount of shards this network is split over, compiling it if needed
+     */
+    public int getShardCount() {
+        synchronized (this.manager) {
+            if (this.dirty) this.compile();
+            return this.segments.length;
+        }
+    }
+
+    /**
+     * Forces the transfer edges to be recompiled before the next tick, needed after a face of a block is toggled
+     */
+    public void invalidate() {
+        synchronized (this.manager) {
+            this.dirty = true;
+            this.manager.markChanged();
+        }
+    }
+
+    boolean isDirty() {
+        return this.dirty;
+    }
+
+    void addNode(final NetworkNode node) {
+        node.network = this;
+        node.slot = this.nodes.size();
+        this.nodes.add(node);
+        this.invalidate();
+    }
+
+    void removeNode(final NetworkNode node) {
+        /* swap remove, keeps every other slot valid until the next compile */
+        final int slot = node.slot;
+        final NetworkNode last = this.nodes.remove(this.nodes.size() - 1);
+        if (last != node) {
+            this.nodes.set(slot, last);
+            last.slot = slot;
+        }
+        node.network = null;
+        this.invalidate();
+    }
+
+    /**
+     * Rebuilds the segments from the node links, edges are ordered breadth first starting at
+     * the nodes nothing can push into (generators), so energy travels down a line within one tick.
+     * Every storage goes into the segment of its shard, edges into the segment of the storage they start at.
+     * Conduits get no slot, every group of linked conduits becomes a hub the storages touching it feed & drain,
+     * see {@link NetworkGraph#findHubs()}. Must hold the manager lock
+     */
+    void compile() {
+        this.releaseSegments();
+        final int size = this.nodes.size();
+        final NetworkGraph graph = this.toGraph();
+        final int[] outputMasks = graph.findDirectOutputs();
+        final int[] inputCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            for (int face = 0; face < NetworkGraph.FACES; face++) {
+                if ((outputMasks[i] & (1 << face)) != 0) inputCounts[graph.getNeighbour(i, face)]++;
+            }
+        }
+        final Hubs hubs = graph.findHubs();
+        for (int port = 0; port < hubs.getPortCount(); port++) {
+            if (hubs.getOutputFace(port) >= 0) inputCounts[hubs.getPortNode(port)]++;
+        }
+
+        final int[] order = graph.breadthFirstOrder(inputCounts);
+        final NetworkSegment[] nodeSegments = new NetworkSegment[size];
+        final int[] localSlots = new int[size];
+        final ArrayList<NetworkSegment> segments = new ArrayList<>(1);
+        for (final int slot : order) {
+            final NetworkNode node = this.nodes.get(slot);
+            if (node.storage == null) continue;
+            final NetworkShard shard = this.manager.getShard(node);
+            NetworkSegment segment = null;
+            for (final NetworkSegment existing : segments) {
+                if (existing.shard == shard) segment = existing;
+            }
+            if (segment == null) {
+                segment = new NetworkSegment(shard);
+                segments.add(segment);
+            }
+            nodeSegments[slot] = segment;
+            localSlots[slot] = segment.addStorage(node.storage);
+        }
+
+        int edges = 0;
+        for (final int from : order) {
+            if (this.nodes.get(from).storage == null) continue;
+            for (int face = 0; face < NetworkGraph.FACES; face++) {
+                if ((outputMasks[from] & (1 << face)) == 0) continue;
+                final int to = graph.getNeighbour(from, face);
+                final int opposite = NetworkGraph.opposite(face);
+                final boolean balanced = (outputMasks[to] & (1 << opposite)) != 0;
+                final NetworkSegment segment = nodeSegments[from];
+                segment.addEdge(localSlots[from], this.slotIn(segment, nodeSegments, localSlots, to), NetworkNode.FACES[face],
+                        NetworkNode.FACES[opposite], balanced, this.nodes.get(to).storage.getPriority());
+                edges++;
+            }
+        }
+        for (int hub = 0; hub < hubs.getCount(); hub++) edges += this.addHub(hubs, hub, nodeSegments, localSlots);
+
+        for (final NetworkSegment segment : segments) segment.seal();
+        this.segments = segments.toArray(new NetworkSegment[0]);
+        this.edgeCount = edges;
+        this.dirty = false;
+    }
+
+    /**
+     * Copies the links, open storage faces & conduit throughputs of every node into a {@link NetworkGraph}, node i is slot i
+     */
+    private NetworkGraph toGraph() {
+        final int size = this.nodes.size();
+        final NetworkGraph graph = new NetworkGraph(size);
+        for (int i = 0; i < size; i++) {
+            final NetworkNode node = this.nodes.get(i);
+            for (int face = 0; face < NetworkNode.FACES.length; face++) {
+                final NetworkNode neighbour = node.neighbours[face];
+                if (neighbour != null) graph.setNeighbour(i, face, neighbour.slot);
+                final BlockFace blockFace = NetworkNode.FACES[face];
+                if (node.storage != null) graph.setStorageFace(i, face, node.storage.canExtract(blockFace), node.storage.canReceive(blockFace));
+                else graph.setConduitFace(i, face, node.conduit.getThroughput(blockFace));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * @return the local slot of a storage in a segment, or its foreign index when another segment holds it
+     */
+    private int slotIn(final NetworkSegment segment, final NetworkSegment[] nodeSegments, final int[] localSlots, final int node) {
+        if (nodeSegments[node] == segment) return localSlots[node];
+        return segment.foreign(this.nodes.get(node).storage, nodeSegments[node].shard);
+    }
+
+    /**
+     * Gives a part of the hub to every segment holding one of its inputs. The capacity is split by their share of the
+     * inputs, so all parts together never move more than the narrowest face of the hub allows
+     * @return the amount of inputs & outputs added
+     */
+    private int addHub(final Hubs hubs, final int hub, final NetworkSegment[] nodeSegments, final int[] localSlots) {
+        final int start = hubs.getPortStart(hub);
+        final int end = hubs.getPortEnd(hub);
+        int inputs = 0;
+        int outputs = 0;
+        final ArrayList<NetworkSegment> parts = new ArrayList<>(1);
+        for (int port = start; port < end; port++) {
+            if (hubs.getOutputFace(port) >= 0) outputs++;
+            if (hubs.getInputFace(port) < 0) continue;
+            inputs++;
+            final NetworkSegment segment = nodeSegments[hubs.getPortNode(port)];
+            if (!parts.contains(segment)) parts.add(segment);
+        }
+        if (inputs == 0 || outputs == 0) return 0;
+
+        final int capacity = hubs.getCapacity(hub);
+        int unassigned = capacity;
+        int links = 0;
+        for (int part = 0; part < parts.size(); part++) {
+            final NetworkSegment segment = parts.get(part);
+            int localInputs = 0;
+            for (int port = start; port < end; port++) {
+                if (hubs.getInputFace(port) >= 0 && nodeSegments[hubs.getPortNode(port)] == segment) localInputs++;
+            }
+            final int budget = part == parts.size() - 1 ? unassigned : (int) ((long) capacity * localInputs / inputs);
+            unassigned -= budget;
+            segment.addHub(budget);
+            for (int port = start; port < end; port++) {
+                final int node = hubs.getPortNode(port);
+                if (hubs.getInputFace(port) < 0 || nodeSegments[node] != segment) continue;
+                segment.addHubInput(localSlots[node], NetworkNode.FACES[hubs.getInputFace(port)], hubs.getOutputFace(port) >= 0);
+            }
+            for (int port = start; port < end; port++) {
+                final int node = hubs.getPortNode(port);
+                if (hubs.getOutputFace(port) < 0) continue;
+                segment.addHubOutput(this.slotIn(segment, nodeSegments, localSlots, node), NetworkNode.FACES[hubs.getOutputFace(port)],
+                        hubs.getInputFace(port) >= 0, this.nodes.get(node).storage.getPriority());
+            }
+            links += localInputs + outputs;
+        }
+        return links;
+    }
+
+    /**
+     * Lets go of the compiled segments, sleeping ones stop observing their storages
+     */
+    void releaseSegments() {
+        for (final NetworkSegment segment : this.segments) segment.release();
+    }
+}
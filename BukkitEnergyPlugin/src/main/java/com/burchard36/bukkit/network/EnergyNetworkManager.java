@@ -0,0 +1,412 @@
+package com.burchard36.bukkit.network;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.energy.core.BlockKey;
+import com.burchard36.bukkit.capability.EnergyFactory;
+import com.burchard36.bukkit.capability.IEnergyConduit;
+import com.burchard36.energy.core.LongObjectMap;
+import com.burchard36.bukkit.capability.WorldSlots;
+import com.burchard36.bukkit.energy.EnergyTransfer;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Groups the energy blocks of a {@link EnergyFactory} into {@link EnergyNetwork}s and moves energy through them every tick
+ *
+ * Adjacent energy blocks always share a network, which faces may actually move energy is decided by
+ * {@link IEnergyStorage#canExtract(BlockFace)} & {@link IEnergyStorage#canReceive(BlockFace)} when the network is compiled.
+ * {@link IEnergyConduit}s join networks too, they store nothing & only limit the energy moving through them.
+ * Conduits are not part of the factory, they are added & removed through this manager directly.
+ * The graph only changes when a block is added or removed, ticking never queries the world.
+ * Blocks can be added & removed from any thread. Networks are split into shards of {@code 2^regionShift} chunks squared,
+ * every shard is ticked through the {@link NetworkTickExecutor}, see {@link #setTickExecutor(NetworkTickExecutor, int)}.
+ * By default there is a single shard per world, ticked on the thread calling {@link #tick()}.
+ * @param <T> the {@link IEnergyStorage} implementation of the factory
+ */
+public final class EnergyNetworkManager<T extends IEnergyStorage> {
+
+    private final WorldSlots<LongObjectMap<NetworkNode>> worldNodes = new WorldSlots<>();
+    /* Conduits of every chunk, so unloading a chunk does not scan every node of its world */
+    private final WorldSlots<LongObjectMap<ArrayList<NetworkNode>>> worldConduits = new WorldSlots<>();
+    private final LinkedHashSet<EnergyNetwork> networks = new LinkedHashSet<>();
+    private volatile int transferRate = Integer.MAX_VALUE;
+    private int visitMark = 0;
+
+    private final WorldSlots<LongObjectMap<NetworkShard>> worldShards = new WorldSlots<>();
+    private ArrayList<NetworkShard> shards = new ArrayList<>();
+    private NetworkShard[] tickOrder = new NetworkShard[0];
+    /* Set when any network changed, the shards are rebuilt before the next tick */
+    private boolean changed = false;
+    private NetworkTickExecutor tickExecutor = NetworkTickExecutor.DIRECT;
+    /* Chunk shift of a shard, negative for a single shard per world */
+    private int regionShift = -1;
+
+    /**
+     * Sets the max amount of energy that may move between two adjacent blocks each tick
+     * @param transferRate the max energy per edge per tick
+     */
+    public void setTransferRate(final int transferRate) {
+        this.transferRate = transferRate;
+    }
+
+    public int getTransferRate() {
+        return this.transferRate;
+    }
+
+    /**
+     * Sets how networks are split & which threads tick them, every network gets recompiled before the next tick.
+     * Energy in transit between the old shards is delivered right away, so call this while no shard is ticking
+     * @param tickExecutor runs the tick of every shard, {@link NetworkTickExecutor#DIRECT} ticks them on the calling thread
+     * @param regionShift a shard spans {@code 2^regionShift} chunks on each axis, negative for a single shard per world
+     */
+    public synchronized void setTickExecutor(final @NonNull NetworkTickExecutor tickExecutor, final int regionShift) {
+        this.tickExecutor = tickExecutor;
+        this.regionShift = regionShift;
+        for (final NetworkShard shard : this.shards) {
+            final LongObjectMap<NetworkShard> worldShards = this.worldShards.get(shard.world);
+            if (worldShards != null) worldShards.remove(shard.regionKey);
+            shard.settle();
+        }
+        this.shards = new ArrayList<>();
+        this.tickOrder = new NetworkShard[0];
+        for (final EnergyNetwork network : this.networks) network.invalidate();
+    }
+
+    /**
+     * @return the amount of shards ticked every tick
+     */
+    public synchronized int getShardCount() {
+        return this.tickOrder.length;
+    }
+
+    /**
+     * @return a copy of every network currently tracked, later changes of the graph do not show up in it
+     */
+    public synchronized @NonNull Collection<EnergyNetwork> getNetworks() {
+        return List.copyOf(this.networks);
+    }
+
+    /**
+     * Gets the network a storage belongs to
+     * @param energyImpl the storage
+     * @return the {@link EnergyNetwork}, or null if the storage is not tracked
+     */
+    public synchronized EnergyNetwork getNetwork(final @NonNull T energyImpl) {
+        final NetworkNode node = this.getNode(energyImpl.getBlock());
+        return node == null ? null : node.network;
+    }
+
+    /**
+     * Adds a storage to the graph, linking it to its adjacent storages & merging their networks
+     * @param energyImpl the storage to add
+     */
+    public synchronized void add(final @NonNull T energyImpl) {
+        final Block block = energyImpl.getBlock();
+        this.link(block, new NetworkNode(energyImpl, BlockKey.pack(block.getX(), block.getY(), block.getZ())));
+    }
+
+    /**
+     * Adds a conduit to the graph, linking it to its adjacent storages & conduits.
+     * Conduits are not evicted with their chunk by the factory, see {@link #removeConduits(World, int, int)}
+     * @param conduit the conduit to add
+     */
+    public synchronized void addConduit(final @NonNull IEnergyConduit conduit) {
+        final Block block = conduit.getBlock();
+        this.link(block, new NetworkNode(conduit, BlockKey.pack(block.getX(), block.getY(), block.getZ())));
+    }
+
+    private void link(final Block block, final NetworkNode node) {
+        final LongObjectMap<NetworkNode> nodes = this.worldNodes.getOrCreate(block.getWorld(), LongObjectMap::new);
+        final int x = block.getX(), y = block.getY(), z = block.getZ();
+        if (nodes.containsKey(node.position)) return;
+
+        nodes.put(node.position, node);
+        if (node.conduit != null) {
+            this.worldConduits.getOrCreate(block.getWorld(), LongObjectMap::new)
+                    .computeIfAbsent(BlockKey.chunkKeyOfBlock(x, z), chunkKey -> new ArrayList<>()).add(node);
+        }
+        EnergyNetwork network = null;
+        for (int face = 0; face < NetworkNode.FACES.length; face++) {
+            final BlockFace blockFace = NetworkNode.FACES[face];
+            final NetworkNode neighbour = nodes.get(BlockKey.pack(x + blockFace.getModX(), y + blockFace.getModY(), z + blockFace.getModZ()));
+            if (neighbour == null) continue;
+            node.neighbours[face] = neighbour;
+            neighbour.neighbours[NetworkNode.opposite(face)] = node;
+            if (network == null) network = neighbour.network;
+            else if (network != neighbour.network) network = this.merge(network, neighbour.network);
+            neighbour.network.invalidate();
+            wakeNeighbour(neighbour);
+        }
+
+        if (network == null) {
+            network = new EnergyNetwork(this);
+            this.networks.add(network);
+        }
+        network.addNode(node);
+    }
+
+    /**
+     * Removes a storage from the graph, splitting its network if it was the only link between two parts.
+     * Energy in transit from or to the storage between shards is settled right away, so call this before flushing & releasing it
+     * @param energyImpl the storage to remove
+     */
+    public synchronized void remove(final @NonNull T energyImpl) {
+        this.unlink(energyImpl.getBlock(), false);
+        for (final NetworkShard shard : this.shards) shard.drain(energyImpl);
+    }
+
+    /**
+     * Removes the conduit at the block of the given one from the graph, splitting its network if it was the only link between two parts
+     * @param conduit the conduit to remove
+     */
+    public synchronized void removeConduit(final @NonNull IEnergyConduit conduit) {
+        this.unlink(conduit.getBlock(), true);
+    }
+
+    /**
+     * Removes every conduit of a chunk, typically when the chunk unloads
+     * @param world the {@link World} of the chunk
+     * @param chunkX chunk X
+     * @param chunkZ chunk Z
+     */
+    public synchronized void removeConduits(final @NonNull World world, final int chunkX, final int chunkZ) {
+        final LongObjectMap<ArrayList<NetworkNode>> conduits = this.worldConduits.get(world);
+        if (conduits == null) return;
+        final ArrayList<NetworkNode> removed = conduits.remove(BlockKey.chunkKey(chunkX, chunkZ));
+        if (removed == null) return;
+        for (final NetworkNode node : removed) this.unlink(node.getBlock(), true);
+    }
+
+    /**
+     * Removes every conduit of a world, typically when the world unloads
+     * @param world the {@link World}
+     */
+    public synchronized void removeConduits(final @NonNull World world) {
+        final LongObjectMap<ArrayList<NetworkNode>> conduits = this.worldConduits.remove(world);
+        if (conduits == null) return;
+        final List<NetworkNode> removed = new ArrayList<>();
+        conduits.forEach((chunkKey, chunkConduits) -> removed.addAll(chunkConduits));
+        for (final NetworkNode node : removed) this.unlink(node.getBlock(), true);
+    }
+
+    /**
+     * Recompiles the network of a conduit, call this after changing its throughput
+     * @param conduit the conduit that changed
+     */
+    public synchronized void refreshConduit(final @NonNull IEnergyConduit conduit) {
+        final NetworkNode node = this.getNode(conduit.getBlock());
+        if (node != null && node.conduit != null) node.network.invalidate();
+    }
+
+    private void unlink(final Block block, final boolean conduit) {
+        final LongObjectMap<NetworkNode> nodes = this.worldNodes.get(block.getWorld());
+        if (nodes == null) return;
+        final long position = BlockKey.pack(block.getX(), block.getY(), block.getZ());
+        final NetworkNode node = nodes.get(position);
+        if (node == null || (node.conduit != null) != conduit) return;
+        nodes.remove(position);
+        if (conduit) this.forgetConduit(block.getWorld(), node);
+
+        final EnergyNetwork network = node.network;
+        network.removeNode(node);
+        final List<NetworkNode> neighbours = new ArrayList<>(NetworkNode.FACES.length);
+        for (int face = 0; face < NetworkNode.FACES.length; face++) {
+            final NetworkNode neighbour = node.neighbours[face];
+            if (neighbour == null) continue;
+            neighbour.neighbours[NetworkNode.opposite(face)] = null;
+            neighbours.add(neighbour);
+            wakeNeighbour(neighbour);
+        }
+
+        if (network.size() == 0) {
+            this.networks.remove(network);
+            network.releaseSegments();
+        }
+        else if (neighbours.size() > 1) this.split(network, neighbours);
+        this.changed = true;
+    }
+
+    private void forgetConduit(final World world, final NetworkNode node) {
+        final LongObjectMap<ArrayList<NetworkNode>> conduits = this.worldConduits.get(world);
+        if (conduits == null) return;
+        final long chunkKey = BlockKey.chunkKeyOfBlock(BlockKey.unpackX(node.position), BlockKey.unpackZ(node.position));
+        final ArrayList<NetworkNode> chunkConduits = conduits.get(chunkKey);
+        if (chunkConduits == null) return;
+        chunkConduits.remove(node);
+        if (chunkConduits.isEmpty()) conduits.remove(chunkKey);
+    }
+
+    /**
+     * Recompiles the network of a storage, call this after toggling a face of a storage already in a network
+     * @param energyImpl the storage that changed
+     */
+    public synchronized void refresh(final @NonNull T energyImpl) {
+        final EnergyNetwork network = this.getNetwork(energyImpl);
+        if (network != null) network.invalidate();
+    }
+
+    /**
+     * Ticks every network once, shard by shard through the {@link NetworkTickExecutor}
+     */
+    public void tick() {
+        final long start = System.nanoTime();
+        final NetworkShard[] tickOrder;
+        final NetworkTickExecutor tickExecutor;
+        final int networkCount;
+        synchronized (this) {
+            if (this.changed) this.rebuildShards();
+            tickOrder = this.tickOrder;
+            tickExecutor = this.tickExecutor;
+            networkCount = this.networks.size();
+        }
+
+        final int transferRate = this.transferRate;
+        for (final NetworkShard shard : tickOrder) {
+            tickExecutor.execute(shard.world, shard.chunkX, shard.chunkZ, () -> shard.tick(transferRate));
+        }
+        tickExecutor.awaitTick();
+        BukkitEnergyPlugin.getInstance().getMetricsRecorder().recordNetworkTick(System.nanoTime() - start, networkCount);
+    }
+
+    synchronized void markChanged() {
+        this.changed = true;
+    }
+
+    /**
+     * Gets the shard a node belongs to, creating it if needed
+     */
+    synchronized NetworkShard getShard(final NetworkNode node) {
+        final Block block = node.getBlock();
+        final World world = block.getWorld();
+        final int chunkX = block.getX() >> 4;
+        final int chunkZ = block.getZ() >> 4;
+        final long regionKey = this.regionKey(chunkX, chunkZ);
+        final LongObjectMap<NetworkShard> worldShards = this.worldShards.getOrCreate(world, () -> new LongObjectMap<>(16));
+        NetworkShard shard = worldShards.get(regionKey);
+        if (shard == null) {
+            shard = new NetworkShard(this, world, regionKey, chunkX, chunkZ);
+            worldShards.put(regionKey, shard);
+            this.shards.add(shard);
+        }
+        return shard;
+    }
+
+    private long regionKey(final int chunkX, final int chunkZ) {
+        return this.regionShift < 0 ? 0L : BlockKey.chunkKey(chunkX >> this.regionShift, chunkZ >> this.regionShift);
+    }
+
+    /**
+     * Hands energy that did not fit its target back to its source, through the shard ticking the source now.
+     * The shard the energy left may have been dropped since, a source in no shard anymore gets it back on the calling thread
+     */
+    synchronized void handBack(final IEnergyStorage source, final int amount) {
+        final Block block = EnergyTransfer.isReleased(source) ? null : source.getBlock();
+        final NetworkNode node = block == null ? null : this.getNode(block);
+        final LongObjectMap<NetworkShard> worldShards = node == null || node.storage != source ? null : this.worldShards.get(block.getWorld());
+        /* every shard still mapped is either ticked or settled by the next rebuild, so nothing queued there is lost */
+        final NetworkShard shard = worldShards == null ? null : worldShards.get(this.regionKey(block.getX() >> 4, block.getZ() >> 4));
+        if (shard != null) shard.handBack(source, amount);
+        else EnergyTransfer.giveBack(source, amount);
+    }
+
+    /**
+     * Recompiles the networks that changed & hands every shard its segments, shards left without any are dropped
+     */
+    private void rebuildShards() {
+        for (final EnergyNetwork network : this.networks) {
+            if (network.isDirty()) network.compile();
+            for (final NetworkSegment segment : network.segments) segment.shard.collecting.add(segment);
+        }
+
+        final ArrayList<NetworkShard> shards = new ArrayList<>(this.shards.size());
+        for (final NetworkShard shard : this.shards) {
+            shard.publish();
+            if (!shard.isEmpty()) {
+                shards.add(shard);
+                continue;
+            }
+            final LongObjectMap<NetworkShard> worldShards = this.worldShards.get(shard.world);
+            if (worldShards != null) worldShards.remove(shard.regionKey);
+            shard.settle();
+        }
+        this.shards = shards;
+        this.tickOrder = shards.toArray(new NetworkShard[0]);
+        this.changed = false;
+    }
+
+    /* A sleeping machine next to a placed or removed block may have something to do again */
+    private static void wakeNeighbour(final NetworkNode neighbour) {
+        if (neighbour.storage != null) BukkitEnergyPlugin.getInstance().getEnergyScheduler().wake(neighbour.storage);
+    }
+
+    private NetworkNode getNode(final Block block) {
+        final LongObjectMap<NetworkNode> nodes = this.worldNodes.get(block.getWorld());
+        if (nodes == null) return null;
+        return nodes.get(BlockKey.pack(block.getX(), block.getY(), block.getZ()));
+    }
+
+    /* The larger network absorbs the smaller one */
+    private EnergyNetwork merge(final EnergyNetwork first, final EnergyNetwork second) {
+        final EnergyNetwork into = first.size() >= second.size() ? first : second;
+        final EnergyNetwork from = into == first ? second : first;
+        for (final NetworkNode node : new ArrayList<>(from.nodes)) {
+            from.removeNode(node);
+            into.addNode(node);
+        }
+        this.networks.remove(from);
+        from.releaseSegments();
+        return into;
+    }
+
+    /**
+     * Walks the network from every former neighbour of a removed node, every part not reachable
+     * from the first neighbour gets moved into its own network
+     */
+    private void split(final EnergyNetwork network, final List<NetworkNode> neighbours) {
+        final int mark = ++this.visitMark;
+        final ArrayDeque<NetworkNode> queue = new ArrayDeque<>();
+        for (int i = 0; i < neighbours.size(); i++) {
+            final NetworkNode start = neighbours.get(i);
+            if (start.visitMark == mark) continue;
+
+            final List<NetworkNode> part = new ArrayList<>();
+            start.visitMark = mark;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                final NetworkNode node = queue.poll();
+                part.add(node);
+                for (final NetworkNode neighbour : node.neighbours) {
+                    if (neighbour == null || neighbour.visitMark == mark) continue;
+                    neighbour.visitMark = mark;
+                    queue.add(neighbour);
+                }
+            }
+
+            if (i == 0) continue; // the first part keeps the existing network
+            final EnergyNetwork splitNetwork = new EnergyNetwork(this);
+            for (final NetworkNode node : part) {
+                network.removeNode(node);
+                splitNetwork.addNode(node);
+            }
+            this.networks.add(splitNetwork);
+        }
+    }
+
+    /**
+     * @param world the {@link World}
+     * @return the amount of storages & conduits tracked in the given world
+     */
+    public synchronized int size(final @NonNull World world) {
+        final LongObjectMap<NetworkNode> nodes = this.worldNodes.get(world);
+        return nodes == null ? 0 : nodes.size();
+    }
+}
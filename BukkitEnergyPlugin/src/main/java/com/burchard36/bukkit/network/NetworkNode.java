@@ -0,0 +1,59 @@
+package com.burchard36.bukkit.network;
+
+import com.burchard36.bukkit.capability.IEnergyConduit;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import com.burchard36.energy.core.NetworkGraph;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+/**
+ * A single {@link IEnergyStorage} or {@link IEnergyConduit} inside an {@link EnergyNetwork}, with cached links to its adjacent nodes
+ */
+final class NetworkNode {
+
+    /* Only the 6 faces a block can physically touch another block on */
+    static final BlockFace[] FACES = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN};
+
+    /* Exactly one of storage & conduit is set */
+    final IEnergyStorage storage;
+    final IEnergyConduit conduit;
+    final long position;
+    final NetworkNode[] neighbours = new NetworkNode[FACES.length];
+    EnergyNetwork network;
+    /* Index of this node inside its network's flat arrays */
+    int slot;
+    /* Scratch marker used while walking the graph */
+    int visitMark;
+
+    NetworkNode(final IEnergyStorage storage, final long position) {
+        this.storage = storage;
+        this.conduit = null;
+        this.position = position;
+    }
+
+    NetworkNode(final IEnergyConduit conduit, final long position) {
+        this.storage = null;
+        this.conduit = conduit;
+        this.position = position;
+    }
+
+    Block getBlock() {
+        return this.storage != null ? this.storage.getBlock() : this.conduit.getBlock();
+    }
+
+    /**
+     * @param face index into {@link #FACES}
+     * @return the throughput of a conduit face, 0 for storages
+     */
+    int throughput(final int face) {
+        return this.conduit == null ? 0 : this.conduit.getThroughput(FACES[face]);
+    }
+
+    /**
+     * @param face index into {@link #FACES}
+     * @return the index of the opposite face into {@link #FACES}
+     */
+    static int opposite(final int face) {
+        return NetworkGraph.opposite(face); // FACES is in the face order of NetworkGraph
+    }
+}
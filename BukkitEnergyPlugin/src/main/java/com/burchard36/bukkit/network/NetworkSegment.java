@@ -0,0 +1,527 @@
+package com.burchard36.bukkit.network;
+
+import com.burchard36.energy.core.EnergyDistribution;
+import com.burchard36.energy.core.NetworkGraph;
+import com.burchard36.bukkit.energy.EnergyObserver;
+import com.burchard36.bukkit.energy.EnergyTransfer;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import org.bukkit.block.BlockFace;
+
+import java.util.Arrays;
+
+/**
+ * The part of an {@link EnergyNetwork} inside one {@link NetworkShard}, compiled into flat arrays
+ *
+ * Edges leaving the shard point at a foreign storage, encoded as {@code -1 - foreignIndex} in {@link #edgeTo},
+ * energy sent over them goes through the target shard instead of being moved directly.
+ * A segment that had nothing to move sleeps, observing its storages, until one of them changes.
+ * The edges leaving a storage are adjacent, ordered by the priority of their target, & the energy of the storage
+ * is split over them in one pass by an {@link EnergyDistribution} instead of the first edge getting everything.
+ * Storages joined by conduits are linked through a hub instead, see {@link NetworkGraph#findHubs()}: each tick the hub
+ * takes energy from its inputs in this segment & splits it over all of its outputs, never more than its budget.
+ */
+final class NetworkSegment implements EnergyObserver {
+
+    final NetworkShard shard;
+
+    private IEnergyStorage[] storages = new IEnergyStorage[4];
+    private int storageCount = 0;
+    private int[] stored;
+    private int[] capacity;
+
+    private int edgeCount = 0;
+    private int[] edgeFrom = new int[8];
+    private int[] edgeTo = new int[8];
+    private BlockFace[] edgeFromFace = new BlockFace[8];
+    private BlockFace[] edgeToFace = new BlockFace[8];
+    /* true when energy may flow both ways over the edge, those edges balance instead of push */
+    private boolean[] edgeBalanced = new boolean[8];
+    /* priority of the target, see IEnergyStorage#getPriority */
+    private int[] edgePriority = new int[8];
+    /* sized to the most edges leaving one storage when sealed, reused for the outputs of every hub */
+    private EnergyDistribution distribution;
+    /* splits what a hub moves over its inputs */
+    private EnergyDistribution supply;
+
+    /* The part of every hub ticked by this segment, inputs of hub h end at hubInputEnd[h], outputs at hubOutputEnd[h] */
+    private int hubCount = 0;
+    private int[] hubBudget = new int[0];
+    private int[] hubInputEnd = new int[0];
+    private int[] hubOutputEnd = new int[0];
+    private int inputCount = 0;
+    private int[] inputSlot = new int[8];
+    private BlockFace[] inputFace = new BlockFace[8];
+    /* true when the storage is an output of the hub as well, those only feed pure outputs & balance with each other */
+    private boolean[] inputTwoWay = new boolean[8];
+    private int outputCount = 0;
+    /* local slot, or -1 - foreignIndex like edgeTo */
+    private int[] outputTo = new int[8];
+    private BlockFace[] outputFace = new BlockFace[8];
+    private boolean[] outputTwoWay = new boolean[8];
+    private int[] outputPriority = new int[8];
+
+    private int foreignCount = 0;
+    private IEnergyStorage[] foreignStorages = new IEnergyStorage[4];
+    private NetworkShard[] foreignShards = new NetworkShard[4];
+
+    /* Only written by the ticking thread, except released which the manager sets when the segment gets replaced */
+    private volatile boolean asleep = false;
+    private volatile boolean changed = false;
+    private volatile boolean released = false;
+
+    NetworkSegment(final NetworkShard shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * @return the local index of the storage
+     */
+    int addStorage(final IEnergyStorage storage) {
+        if (this.storageCount == this.storages.length) this.storages = Arrays.copyOf(this.storages, this.storageCount * 2);
+        this.storages[this.storageCount] = storage;
+        return this.storageCount++;
+    }
+
+    /**
+     * @param to the local slot of the target, or an index from {@link #foreign}
+     */
+    void addEdge(final int from, final int to, final BlockFace fromFace, final BlockFace toFace, final boolean balanced, final int priority) {
+        if (this.edgeCount == this.edgeFrom.length) {
+            final int length = this.edgeCount * 2;
+            this.edgeFrom = Arrays.copyOf(this.edgeFrom, length);
+            this.edgeTo = Arrays.copyOf(this.edgeTo, length);
+            this.edgeFromFace = Arrays.copyOf(this.edgeFromFace, length);
+            this.edgeToFace = Arrays.copyOf(this.edgeToFace, length);
+            this.edgeBalanced = Arrays.copyOf(this.edgeBalanced, length);
+            this.edgePriority = Arrays.copyOf(this.edgePriority, length);
+        }
+        this.edgeFrom[this.edgeCount] = from;
+        this.edgeTo[this.edgeCount] = to;
+        this.edgeFromFace[this.edgeCount] = fromFace;
+        this.edgeToFace[this.edgeCount] = toFace;
+        this.edgeBalanced[this.edgeCount] = balanced;
+        this.edgePriority[this.edgeCount] = priority;
+        this.edgeCount++;
+    }
+
+    /**
+     * @return the index a storage of another shard is referenced by in {@link #edgeTo} & {@link #outputTo}
+     */
+    int foreign(final IEnergyStorage target, final NetworkShard targetShard) {
+        if (this.foreignCount == this.foreignStorages.length) {
+            this.foreignStorages = Arrays.copyOf(this.foreignStorages, this.foreignCount * 2);
+            this.foreignShards = Arrays.copyOf(this.foreignShards, this.foreignCount * 2);
+        }
+        this.foreignStorages[this.foreignCount] = target;
+        this.foreignShards[this.foreignCount] = targetShard;
+        return -1 - this.foreignCount++;
+    }
+
+    /**
+     * Starts the part of a hub ticked by this segment, its inputs & outputs are added right after
+     * @param budget the max energy this part may move each tick
+     */
+    void addHub(final int budget) {
+        if (this.hubCount == this.hubBudget.length) {
+            final int length = Math.max(4, this.hubCount * 2);
+            this.hubBudget = Arrays.copyOf(this.hubBudget, length);
+            this.hubInputEnd = Arrays.copyOf(this.hubInputEnd, length);
+            this.hubOutputEnd = Arrays.copyOf(this.hubOutputEnd, length);
+        }
+        this.hubBudget[this.hubCount] = budget;
+        this.hubInputEnd[this.hubCount] = this.inputCount;
+        this.hubOutputEnd[this.hubCount] = this.outputCount;
+        this.hubCount++;
+    }
+
+    /**
+     * Adds an input to the last hub added
+     * @param slot the local slot of the storage
+     */
+    void addHubInput(final int slot, final BlockFace face, final boolean twoWay) {
+        if (this.inputCount == this.inputSlot.length) {
+            final int length = this.inputCount * 2;
+            this.inputSlot = Arrays.copyOf(this.inputSlot, length);
+            this.inputFace = Arrays.copyOf(this.inputFace, length);
+            this.inputTwoWay = Arrays.copyOf(this.inputTwoWay, length);
+        }
+        this.inputSlot[this.inputCount] = slot;
+        this.inputFace[this.inputCount] = face;
+        this.inputTwoWay[this.inputCount] = twoWay;
+        this.hubInputEnd[this.hubCount - 1] = ++this.inputCount;
+    }
+
+    /**
+     * Adds an output to the last hub added
+     * @param to the local slot of the storage, or an index from {@link #foreign}
+     */
+    void addHubOutput(final int to, final BlockFace face, final boolean twoWay, final int priority) {
+        if (this.outputCount == this.outputTo.length) {
+            final int length = this.outputCount * 2;
+            this.outputTo = Arrays.copyOf(this.outputTo, length);
+            this.outputFace = Arrays.copyOf(this.outputFace, length);
+            this.outputTwoWay = Arrays.copyOf(this.outputTwoWay, length);
+            this.outputPriority = Arrays.copyOf(this.outputPriority, length);
+        }
+        this.outputTo[this.outputCount] = to;
+        this.outputFace[this.outputCount] = face;
+        this.outputTwoWay[this.outputCount] = twoWay;
+        this.outputPriority[this.outputCount] = priority;
+        this.hubOutputEnd[this.hubCount - 1] = ++this.outputCount;
+    }
+
+    void seal() {
+        this.storages = Arrays.copyOf(this.storages, this.storageCount);
+        this.stored = new int[this.storageCount];
+        this.capacity = new int[this.storageCount];
+        this.foreignStorages = Arrays.copyOf(this.foreignStorages, this.foreignCount);
+        this.foreignShards = Arrays.copyOf(this.foreignShards, this.foreignCount);
+        int widestOutputs = 0;
+        int widestInputs = 0;
+        for (int hub = 0; hub < this.hubCount; hub++) {
+            widestOutputs = Math.max(widestOutputs, this.hubOutputEnd[hub] - this.outputStart(hub));
+            widestInputs = Math.max(widestInputs, this.hubInputEnd[hub] - this.inputStart(hub));
+            this.sortOutputsByPriority(hub);
+        }
+        this.distribution = new EnergyDistribution(Math.max(this.sortByPriority(), widestOutputs));
+        this.supply = new EnergyDistribution(widestInputs);
+    }
+
+    private int inputStart(final int hub) {
+        return hub == 0 ? 0 : this.hubInputEnd[hub - 1];
+    }
+
+    private int outputStart(final int hub) {
+        return hub == 0 ? 0 : this.hubOutputEnd[hub - 1];
+    }
+
+    /**
+     * Orders the outputs of a hub highest priority first, keeping the order of equal ones, so they are solved in O(N)
+     */
+    private void sortOutputsByPriority(final int hub) {
+        final int start = this.outputStart(hub);
+        final int end = this.hubOutputEnd[hub];
+        /* ~priority sorts highest first, the index keeps equal priorities in insertion order */
+        final long[] order = new long[end - start];
+        for (int i = start; i < end; i++) order[i - start] = ((long) ~this.outputPriority[i] << 32) | i;
+        Arrays.sort(order);
+        final int[] to = new int[order.length];
+        final BlockFace[] face = new BlockFace[order.length];
+        final boolean[] twoWay = new boolean[order.length];
+        final int[] priority = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            final int output = (int) order[i];
+            to[i] = this.outputTo[output];
+            face[i] = this.outputFace[output];
+            twoWay[i] = this.outputTwoWay[output];
+            priority[i] = this.outputPriority[output];
+        }
+        System.arraycopy(to, 0, this.outputTo, start, to.length);
+        System.arraycopy(face, 0, this.outputFace, start, face.length);
+        System.arraycopy(twoWay, 0, this.outputTwoWay, start, twoWay.length);
+        System.arraycopy(priority, 0, this.outputPriority, start, priority.length);
+    }
+
+    /**
+     * Orders the edges leaving every storage highest priority first, keeping the order of equal ones
+     * @return the most edges leaving a single storage
+     */
+    private int sortByPriority() {
+        final int[] order = new int[this.edgeCount];
+        int widest = 0;
+        for (int start = 0, end; start < this.edgeCount; start = end) {
+            end = start + 1;
+            while (end < this.edgeCount && this.edgeFrom[end] == this.edgeFrom[start]) end++;
+            widest = Math.max(widest, end - start);
+            /* insertion sort, a storage has a handful of edges */
+            for (int i = start; i < end; i++) {
+                int j = i;
+                while (j > start && this.edgePriority[order[j - 1]] < this.edgePriority[i]) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = i;
+            }
+        }
+        this.edgeFrom = reorder(this.edgeFrom, order);
+        this.edgeTo = reorder(this.edgeTo, order);
+        this.edgePriority = reorder(this.edgePriority, order);
+        final BlockFace[] fromFaces = new BlockFace[order.length];
+        final BlockFace[] toFaces = new BlockFace[order.length];
+        final boolean[] balanced = new boolean[order.length];
+        for (int i = 0; i < order.length; i++) {
+            fromFaces[i] = this.edgeFromFace[order[i]];
+            toFaces[i] = this.edgeToFace[order[i]];
+            balanced[i] = this.edgeBalanced[order[i]];
+        }
+        this.edgeFromFace = fromFaces;
+        this.edgeToFace = toFaces;
+        this.edgeBalanced = balanced;
+        return widest;
+    }
+
+    private static int[] reorder(final int[] values, final int[] order) {
+        final int[] reordered = new int[order.length];
+        for (int i = 0; i < order.length; i++) reordered[i] = values[order[i]];
+        return reordered;
+    }
+
+    /**
+     * @return the amount of edges, every input & output of a hub counting as one
+     */
+    int getEdgeCount() {
+        return this.edgeCount + this.inputCount + this.outputCount;
+    }
+
+    /**
+     * Moves energy along every edge of this segment once, only ever called by the thread ticking the shard
+     * @param transferRate the max amount of energy that may move over a single edge this tick
+     */
+    void tick(final int transferRate) {
+        if (this.edgeCount == 0 && this.hubCount == 0) return;
+        if (this.asleep) {
+            if (!this.changed) return;
+            this.wake();
+        }
+        if (!this.moveEnergy(transferRate, false)) this.sleep(transferRate);
+    }
+
+    /**
+     * @param dryRun true to only check if anything could move, without moving it
+     * @return true if any edge had energy to move
+     */
+    private boolean moveEnergy(final int transferRate, final boolean dryRun) {
+        final IEnergyStorage[] storages = this.storages;
+        final int[] stored = this.stored;
+        final int[] capacity = this.capacity;
+        for (int i = 0; i < storages.length; i++) {
+            stored[i] = storages[i].getStoredEnergy();
+            capacity[i] = storages[i].getMaxEnergyStorage();
+        }
+        boolean active = false;
+        final EnergyDistribution distribution = this.distribution;
+        for (int edge = 0, end; edge < this.edgeCount; edge = end) {
+            final int from = this.edgeFrom[edge];
+            end = edge + 1;
+            while (end < this.edgeCount && this.edgeFrom[end] == from) end++;
+
+            distribution.clear();
+            for (int i = edge; i < end; i++) distribution.add(this.edgePriority[i], this.demand(i, transferRate));
+            if (distribution.getTotalDemand() == 0) continue;
+            if (dryRun) return true;
+            active = true;
+
+            distribution.solve(stored[from]);
+            for (int i = edge; i < end; i++) {
+                final int amount = distribution.getAllocation(i - edge);
+                if (amount > 0) this.move(i, amount);
+            }
+        }
+
+        for (int hub = 0; hub < this.hubCount; hub++) {
+            if (!this.tickHub(hub, transferRate, dryRun)) continue;
+            if (dryRun) return true;
+            active = true;
+        }
+        return active;
+    }
+
+    /**
+     * @return the most energy an edge could move this tick, on its own
+     */
+    private int demand(final int edge, final int transferRate) {
+        final int from = this.edgeFrom[edge];
+        final int to = this.edgeTo[edge];
+        int amount = Math.min(transferRate, this.stored[from]);
+        final int targetStored = this.storedOf(to);
+        if (this.edgeBalanced[edge]) amount = Math.min(amount, (this.stored[from] - targetStored) / 2);
+        return Math.min(amount, this.capacityOf(to) - targetStored);
+    }
+
+    /* a target of another thread is only read to size the transfer */
+    private int storedOf(final int to) {
+        return to < 0 ? this.foreignStorages[-1 - to].getStoredEnergy() : this.stored[to];
+    }
+
+    private int capacityOf(final int to) {
+        return to < 0 ? this.foreignStorages[-1 - to].getMaxEnergyStorage() : this.capacity[to];
+    }
+
+    /**
+     * Moves the energy allocated to an edge, energy leaving the shard is handed to the shard of its target
+     */
+    private void move(final int edge, final int amount) {
+        final int from = this.edgeFrom[edge];
+        final int to = this.edgeTo[edge];
+        final IEnergyStorage source = this.storages[from];
+        final int moved;
+        if (to < 0) {
+            final int foreign = -1 - to;
+            moved = EnergyTransfer.take(source, this.edgeFromFace[edge], amount);
+            if (moved > 0) this.foreignShards[foreign].handOff(this.foreignStorages[foreign], this.edgeToFace[edge], source, moved);
+        } else {
+            moved = EnergyTransfer.transfer(source, this.edgeFromFace[edge], this.storages[to], this.edgeToFace[edge], amount);
+            this.stored[to] += moved;
+        }
+        this.stored[from] -= moved;
+    }
+
+    /**
+     * Moves energy through the part of a hub in this segment, first from the pure inputs to every output,
+     * then from the two-way storages to the pure outputs, & last between the two-way storages until they hold the same
+     * @return true if the hub had energy to move
+     */
+    private boolean tickHub(final int hub, final int transferRate, final boolean dryRun) {
+        final int outputStart = this.outputStart(hub);
+        final int outputEnd = this.hubOutputEnd[hub];
+        long twoWayStored = 0;
+        int twoWayCount = 0;
+        for (int i = outputStart; i < outputEnd; i++) {
+            if (!this.outputTwoWay[i]) continue;
+            twoWayStored += this.storedOf(this.outputTo[i]);
+            twoWayCount++;
+        }
+        final int mean = twoWayCount == 0 ? 0 : (int) (twoWayStored / twoWayCount);
+
+        int budget = this.hubBudget[hub];
+        boolean active = false;
+        for (int pass = 0; pass < 3 && budget > 0; pass++) {
+            final int moved = this.pour(hub, pass, mean, budget, transferRate, dryRun);
+            if (moved == 0) continue;
+            if (dryRun) return true;
+            active = true;
+            budget -= moved;
+        }
+        return active;
+    }
+
+    /**
+     * Takes energy from some inputs of a hub & splits it over some of its outputs
+     * @param pass 0 from pure inputs to every output, 1 from two-way inputs to pure outputs,
+     *             2 from two-way inputs above the mean to two-way outputs below it
+     * @param mean the mean energy of the two-way storages of the hub
+     * @return the energy moved, or that would be moved on a dry run
+     */
+    private int pour(final int hub, final int pass, final int mean, final int budget, final int transferRate, final boolean dryRun) {
+        final EnergyDistribution supply = this.supply;
+        final EnergyDistribution distribution = this.distribution;
+        final int inputStart = this.inputStart(hub);
+        final int inputEnd = this.hubInputEnd[hub];
+        final int outputStart = this.outputStart(hub);
+        final int outputEnd = this.hubOutputEnd[hub];
+
+        supply.clear();
+        for (int i = inputStart; i < inputEnd; i++) {
+            final boolean open = pass == 0 ? !this.inputTwoWay[i] : this.inputTwoWay[i];
+            final int available = pass == 2 ? this.stored[this.inputSlot[i]] - mean : this.stored[this.inputSlot[i]];
+            supply.add(0, open ? Math.min(transferRate, available) : 0);
+        }
+        if (supply.getTotalDemand() == 0) return 0;
+        distribution.clear();
+        for (int i = outputStart; i < outputEnd; i++) {
+            final boolean open = pass == 0 || (pass == 1 ? !this.outputTwoWay[i] : this.outputTwoWay[i]);
+            final int to = this.outputTo[i];
+            int demand = this.capacityOf(to) - this.storedOf(to);
+            if (pass == 2) demand = Math.min(demand, mean - this.storedOf(to));
+            distribution.add(this.outputPriority[i], open ? Math.min(transferRate, demand) : 0);
+        }
+        final int amount = (int) Math.min(budget, Math.min(supply.getTotalDemand(), distribution.getTotalDemand()));
+        if (amount <= 0 || dryRun) return Math.max(0, amount);
+
+        supply.solve(amount);
+        int taken = 0;
+        IEnergyStorage giver = null;
+        for (int i = inputStart; i < inputEnd; i++) {
+            final int share = supply.getAllocation(i - inputStart);
+            if (share <= 0) continue;
+            final int slot = this.inputSlot[i];
+            final int took = EnergyTransfer.take(this.storages[slot], this.inputFace[i], share);
+            this.stored[slot] -= took;
+            taken += took;
+            if (took > 0 && giver == null) giver = this.storages[slot];
+        }
+        if (taken == 0) return 0;
+
+        distribution.solve(taken);
+        int left = taken;
+        for (int i = outputStart; i < outputEnd; i++) {
+            final int share = distribution.getAllocation(i - outputStart);
+            if (share <= 0) continue;
+            final int to = this.outputTo[i];
+            if (to < 0) {
+                final int foreign = -1 - to;
+                this.foreignShards[foreign].handOff(this.foreignStorages[foreign], this.outputFace[i], giver, share);
+                left -= share;
+            } else {
+                final int delivered = EnergyTransfer.deliver(this.storages[to], this.outputFace[i], share);
+                this.stored[to] += delivered;
+                left -= delivered;
+            }
+        }
+        /* whatever a target refused since it was read goes back, the inputs never mind holding more than their max */
+        if (left > 0) {
+            EnergyTransfer.giveBack(giver, left);
+            for (int i = inputStart; i < inputEnd; i++) {
+                if (this.storages[this.inputSlot[i]] == giver) {
+                    this.stored[this.inputSlot[i]] += left;
+                    break;
+                }
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Starts observing every storage this segment reads, ticks are skipped until one of them changes
+     */
+    private void sleep(final int transferRate) {
+        if (this.released) return;
+        /* a storage with an energy rate changes without anyone observing it, see BukkitEnergy#setEnergyRate */
+        for (final IEnergyStorage storage : this.storages) if (changesByItself(storage)) return;
+        for (final IEnergyStorage storage : this.foreignStorages) if (changesByItself(storage)) return;
+        this.changed = false;
+        for (final IEnergyStorage storage : this.storages) {
+            if (storage.addEnergyObserver(this)) continue;
+            this.stopObserving(); // a change of this storage could never wake the segment, so it stays awake
+            return;
+        }
+        for (final IEnergyStorage storage : this.foreignStorages) {
+            if (storage.addEnergyObserver(this)) continue;
+            this.stopObserving();
+            return;
+        }
+        this.asleep = true;
+        /* a change between the last transfer & the observers being added would be missed, so check once more */
+        if (this.released || this.moveEnergy(transferRate, true)) this.wake();
+    }
+
+    private static boolean changesByItself(final IEnergyStorage storage) {
+        final int energyRate = storage.getEnergyRate();
+        if (energyRate > 0) return storage.getStoredEnergy() < storage.getMaxEnergyStorage();
+        return energyRate < 0 && storage.getStoredEnergy() > 0;
+    }
+
+    private void wake() {
+        this.asleep = false;
+        this.changed = false;
+        this.stopObserving();
+    }
+
+    private void stopObserving() {
+        for (final IEnergyStorage storage : this.storages) storage.removeEnergyObserver(this);
+        for (final IEnergyStorage storage : this.foreignStorages) storage.removeEnergyObserver(this);
+    }
+
+    /**
+     * Stops observing the storages for good, called when this segment is replaced or its network is gone
+     */
+    void release() {
+        this.released = true;
+        if (this.asleep) this.wake();
+    }
+
+    @Override
+    public void onEnergyChanged(final IEnergyStorage energyStorage) {
+        if (!this.changed) this.changed = true;
+    }
+}
@@ -0,0 +1,114 @@
+package com.burchard36.bukkit.network;
+
+import com.burchard36.bukkit.energy.EnergyTransfer;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A square region of chunks whose part of every network is ticked by one thread
+ *
+ * Energy moving into another shard is taken from its source right away & handed to the target shard through
+ * {@link #inbound}, the target shard delivers it at the start of its next tick. Whatever does not fit is handed back
+ * the same way to the shard owning the source by then, looked up again through the manager since the shard it left
+ * may have been dropped meanwhile. So energy in transit is never created nor lost.
+ */
+final class NetworkShard {
+
+    private static final NetworkSegment[] NO_SEGMENTS = new NetworkSegment[0];
+
+    private final EnergyNetworkManager<?> manager;
+    final World world;
+    final long regionKey;
+    /* A chunk with a network node in it, handed to the NetworkTickExecutor */
+    final int chunkX;
+    final int chunkZ;
+    private final ConcurrentLinkedQueue<Handoff> inbound = new ConcurrentLinkedQueue<>();
+    /* Replaced by the manager when networks are recompiled, only read by the ticking thread */
+    private volatile NetworkSegment[] segments = NO_SEGMENTS;
+    /* Segments collected while the manager rebuilds the shards */
+    final ArrayList<NetworkSegment> collecting = new ArrayList<>();
+
+    NetworkShard(final EnergyNetworkManager<?> manager, final World world, final long regionKey, final int chunkX, final int chunkZ) {
+        this.manager = manager;
+        this.world = world;
+        this.regionKey = regionKey;
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+    }
+
+    void publish() {
+        this.segments = this.collecting.toArray(NO_SEGMENTS);
+        this.collecting.clear();
+    }
+
+    boolean isEmpty() {
+        return this.segments.length == 0;
+    }
+
+    /**
+     * Delivers incoming energy, then moves energy along every edge of the segments in this shard
+     */
+    void tick(final int transferRate) {
+        Handoff handoff;
+        while ((handoff = this.inbound.poll()) != null) handoff.complete(this.manager);
+        for (final NetworkSegment segment : this.segments) segment.tick(transferRate);
+    }
+
+    void handOff(final IEnergyStorage target, final BlockFace targetFace, final IEnergyStorage source, final int amount) {
+        this.inbound.offer(new Handoff(target, targetFace, source, amount, false));
+    }
+
+    /**
+     * Queues energy that did not fit its target for a source ticked by this shard
+     */
+    void handBack(final IEnergyStorage source, final int amount) {
+        this.inbound.offer(new Handoff(null, null, source, amount, true));
+    }
+
+    /**
+     * Completes everything in transit to this shard on the calling thread, used when the shard is dropped
+     */
+    void settle() {
+        Handoff handoff;
+        while ((handoff = this.inbound.poll()) != null) handoff.settle();
+    }
+
+    /**
+     * Completes everything in transit from or to a storage on the calling thread, used before the storage is released.
+     * Energy on its way to the storage goes back to its source, energy it sent is delivered or given back to it
+     */
+    void drain(final IEnergyStorage storage) {
+        for (final Handoff handoff : this.inbound) {
+            if (handoff.source != storage && handoff.target != storage) continue;
+            if (!this.inbound.remove(handoff)) continue; // the ticking thread got to it first
+            if (handoff.target == storage) EnergyTransfer.giveBack(handoff.source, handoff.amount);
+            else handoff.settle();
+        }
+    }
+
+    /* target & targetFace are null when returning */
+    private record Handoff(IEnergyStorage target, BlockFace targetFace, IEnergyStorage source, int amount, boolean returning) {
+        void complete(final EnergyNetworkManager<?> manager) {
+            if (this.returning) {
+                EnergyTransfer.giveBack(this.source, this.amount);
+                return;
+            }
+            final int leftover = this.amount - EnergyTransfer.deliver(this.target, this.targetFace, this.amount);
+            if (leftover > 0) manager.handBack(this.source, leftover);
+        }
+
+        /* Delivers & gives back on the calling thread, without going through another shard */
+        void settle() {
+            if (this.returning) {
+                EnergyTransfer.giveBack(this.source, this.amount);
+                return;
+            }
+            final int delivered = EnergyTransfer.deliver(this.target, this.targetFace, this.amount);
+            EnergyTransfer.giveBack(this.source, this.amount - delivered);
+        }
+    }
+}
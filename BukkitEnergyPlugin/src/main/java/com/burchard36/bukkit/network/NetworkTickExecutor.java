@@ -0,0 +1,37 @@
+package com.burchard36.bukkit.network;
+
+import org.bukkit.World;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Decides which thread ticks each shard of the networks, see {@link EnergyNetworkManager#setTickExecutor(NetworkTickExecutor, int)}
+ *
+ * A shard is a square region of chunks, the same shard is never ticked by two threads at once
+ * as long as the executor runs the tasks of one region one after another.
+ * Only the shards go through the executor: {@link EnergyNetworkManager#tick()} itself is started by
+ * {@code Bukkit.getScheduler().runTaskTimer}, as are the EnergyScheduler, the EnergySavePipeline, the EnergyChangeNotifier
+ * & the metrics, and the EnergyBlockRegistry guards every world with a single monitor. So handing the shards to the
+ * region schedulers of a regionized server (Folia) spreads the network work over them, it does not make the plugin run there.
+ */
+public interface NetworkTickExecutor {
+
+    /**
+     * Runs every shard on the calling thread, the default
+     */
+    NetworkTickExecutor DIRECT = (world, chunkX, chunkZ, shardTick) -> shardTick.run();
+
+    /**
+     * Runs the tick of one shard
+     * @param world the {@link World} of the shard
+     * @param chunkX X of a loaded chunk inside the shard
+     * @param chunkZ Z of a loaded chunk inside the shard
+     * @param shardTick the work of the shard for this tick
+     */
+    void execute(final @NonNull World world, final int chunkX, final int chunkZ, final @NonNull Runnable shardTick);
+
+    /**
+     * Called after every shard of a tick was handed to {@link #execute}, returns once they are done if the executor waits at all
+     */
+    default void awaitTick() {
+    }
+}
@@ -0,0 +1,62 @@
+package com.burchard36.bukkit.network;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Ticks shards on a pool of worker threads, the calling thread waits in {@link #awaitTick()} until every shard is done
+ *
+ * For servers with a single main thread, the tick still starts & ends on the main thread, only the shards run in parallel.
+ * Must be driven from one thread.
+ */
+public final class ParallelTickExecutor implements NetworkTickExecutor, AutoCloseable {
+
+    private final ExecutorService workers;
+    private final ArrayList<Future<?>> running = new ArrayList<>();
+
+    /**
+     * @param threads amount of worker threads
+     */
+    public ParallelTickExecutor(final int threads) {
+        final AtomicInteger threadCount = new AtomicInteger(0);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), (runnable) -> {
+            final Thread thread = new Thread(runnable, "BukkitEnergy Network Worker #" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void execute(final @NonNull World world, final int chunkX, final int chunkZ, final @NonNull Runnable shardTick) {
+        this.running.add(this.workers.submit(shardTick));
+    }
+
+    @Override
+    public void awaitTick() {
+        for (final Future<?> future : this.running) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                Bukkit.getLogger().log(Level.SEVERE, "A network shard failed to tick", e.getCause());
+            }
+        }
+        this.running.clear();
+    }
+
+    @Override
+    public void close() {
+        this.workers.shutdown();
+    }
+}
@@ -0,0 +1,448 @@
+package com.burchard36.bukkit.scheduler;
+
+import com.burchard36.energy.core.BlockKey;
+import com.burchard36.energy.core.LongObjectMap;
+import com.burchard36.bukkit.capability.WorldSlots;
+import com.burchard36.bukkit.energy.EnergyObserver;
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * One tick loop for every machine of every plugin, instead of each plugin walking its own blocks in its own task
+ *
+ * Handlers are grouped by chunk & ran chunk after chunk. Every tick may spend at most {@link #setTickBudgetMillis(double)},
+ * whatever did not run yet continues on the next tick before a new pass starts, so an overloaded tick only delays machines.
+ * A handler with a divisor of n runs every n passes, handlers sharing a divisor are spread over those passes.
+ * Handlers registered with a {@link SleepPolicy} are taken out of their chunk once the policy says they are idle,
+ * and put back when their storage changes, so a pass only walks machines that have something to do.
+ *
+ * Handlers are dropped when their chunk unloads, or their block is removed from a {@link com.burchard36.bukkit.capability.EnergyFactory},
+ * plugins register them again when the chunk loads. Everything here must be called on the main thread.
+ */
+public final class EnergyScheduler implements Listener {
+
+    private final IdentityHashMap<IEnergyStorage, Entry> entries = new IdentityHashMap<>();
+    private final WorldSlots<LongObjectMap<ChunkGroup>> worldGroups = new WorldSlots<>();
+    /* Every chunk with handlers, in the order they are ran */
+    private final ArrayList<ChunkGroup> groups = new ArrayList<>();
+    /* Sleeping entries whose storage changed, & storages passed to wake, filled by any thread */
+    private final ConcurrentLinkedQueue<Entry> changedSleepers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<IEnergyStorage> wakeRequests = new ConcurrentLinkedQueue<>();
+    private int sleepingCount = 0;
+    private long tickBudgetNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    private Plugin plugin;
+    private BukkitTask tickTask;
+
+    /* Position of the current pass, kept across ticks when a pass runs out of budget */
+    private long pass = 0;
+    private boolean passInProgress = false;
+    private int groupCursor = 0;
+    private int entryCursor = 0;
+    private int spreadCounter = 0;
+    private long lastTickNanos = 0;
+
+    /**
+     * Starts ticking every registered handler once per server tick
+     * @param plugin the {@link Plugin} owning the task
+     */
+    public void start(final @NonNull Plugin plugin) {
+        if (this.tickTask != null) return;
+        this.plugin = plugin;
+        this.tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    public void stop() {
+        if (this.tickTask != null) this.tickTask.cancel();
+        this.tickTask = null;
+    }
+
+    /**
+     * @param tickBudgetMillis max time spent running handlers every tick
+     */
+    public void setTickBudgetMillis(final double tickBudgetMillis) {
+        this.tickBudgetNanos = (long) (Math.max(0.05D, tickBudgetMillis) * 1_000_000D);
+    }
+
+    public double getTickBudgetMillis() {
+        return this.tickBudgetNanos / 1_000_000D;
+    }
+
+    /**
+     * @return time the last tick spent running handlers, in nanoseconds
+     */
+    public long getLastTickNanos() {
+        return this.lastTickNanos;
+    }
+
+    /**
+     * @return true if the last tick ran out of budget, and the current pass continues next tick
+     */
+    public boolean isBehind() {
+        return this.passInProgress;
+    }
+
+    /**
+     * @return amount of registered handlers
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return amount of registered handlers that are sleeping
+     */
+    public int getSleepingCount() {
+        return this.sleepingCount;
+    }
+
+    /**
+     * Registers the logic of a machine to run every tick, replacing any handler the storage already had
+     * @param energyStorage the IEnergyStorage of the machine
+     * @param handler the logic of the machine
+     * @param <T> the IEnergyStorage implementation
+     */
+    public <T extends IEnergyStorage> void register(final @NonNull T energyStorage, final @NonNull EnergyTickHandler<? super T> handler) {
+        this.register(energyStorage, handler, 1);
+    }
+
+    /**
+     * Registers the logic of a machine, replacing any handler the storage already had
+     * @param energyStorage the IEnergyStorage of the machine
+     * @param handler the logic of the machine
+     * @param divisor the handler runs once every this many ticks, use more than 1 for low priority machines
+     * @param <T> the IEnergyStorage implementation
+     */
+    public <T extends IEnergyStorage> void register(final @NonNull T energyStorage, final @NonNull EnergyTickHandler<? super T> handler, final int divisor) {
+        this.register(energyStorage, handler, divisor, null);
+    }
+
+    /**
+     * Registers the logic of a machine that sleeps while it has nothing to do, replacing any handler the storage already had
+     * @param energyStorage the IEnergyStorage of the machine, has to support {@link IEnergyStorage#addEnergyObserver} to ever sleep
+     * @param handler the logic of the machine
+     * @param divisor the handler runs once every this many ticks, use more than 1 for low priority machines
+     * @param sleepPolicy checked after every run, the handler stops running while it holds & the storage did not change. May be null
+     * @param <T> the IEnergyStorage implementation
+     */
+    public <T extends IEnergyStorage> void register(final @NonNull T energyStorage, final @NonNull EnergyTickHandler<? super T> handler,
+                                                    final int divisor, final SleepPolicy<? super T> sleepPolicy) {
+        if (divisor < 1) throw new RuntimeException("Tick divisor has to be at least 1, got %s".formatted(divisor));
+        this.unregister(energyStorage);
+
+        final Block block = energyStorage.getBlock();
+        final World world = block.getWorld();
+        final long chunkKey = BlockKey.chunkKeyOfBlock(block.getX(), block.getZ());
+        final LongObjectMap<ChunkGroup> chunkGroups = this.worldGroups.getOrCreate(world, () -> new LongObjectMap<>(16));
+        ChunkGroup group = chunkGroups.get(chunkKey);
+        if (group == null) {
+            group = new ChunkGroup(chunkGroups, chunkKey);
+            chunkGroups.put(chunkKey, group);
+            this.groups.add(group);
+        }
+
+        @SuppressWarnings("unchecked")
+        final EnergyTickHandler<IEnergyStorage> erasedHandler = (EnergyTickHandler<IEnergyStorage>) handler;
+        @SuppressWarnings("unchecked")
+        final SleepPolicy<IEnergyStorage> erasedPolicy = (SleepPolicy<IEnergyStorage>) sleepPolicy;
+        final Entry entry = new Entry(energyStorage, erasedHandler, erasedPolicy, group, divisor, this.spreadCounter++ % divisor);
+        group.add(entry);
+        this.entries.put(energyStorage, entry);
+    }
+
+    /**
+     * Stops running the handler of a storage
+     * @param energyStorage the IEnergyStorage of the machine
+     * @return true if the storage had a handler
+     */
+    public boolean unregister(final @NonNull IEnergyStorage energyStorage) {
+        final Entry entry = this.entries.remove(energyStorage);
+        if (entry == null) return false;
+        entry.cancelled = true; // removed from its chunk group the next time a pass reaches it
+        if (entry.asleep) {
+            entry.group.removeSleeper(entry); // passes never reach sleepers
+            this.stopSleeping(entry);
+        }
+        return true;
+    }
+
+    /**
+     * Wakes a sleeping machine before the next tick, for changes its storage does not see like a neighbour being placed.
+     * May be called from any thread
+     * @param energyStorage the IEnergyStorage of the machine
+     */
+    public void wake(final @NonNull IEnergyStorage energyStorage) {
+        this.wakeRequests.offer(energyStorage);
+    }
+
+    /**
+     * @param energyStorage the IEnergyStorage of the machine
+     * @return true if the machine is registered & sleeping
+     */
+    public boolean isAsleep(final @NonNull IEnergyStorage energyStorage) {
+        final Entry entry = this.entries.get(energyStorage);
+        return entry != null && entry.asleep;
+    }
+
+    /**
+     * @param energyStorage the IEnergyStorage of the machine
+     * @return true if the storage has a handler
+     */
+    public boolean isRegistered(final @NonNull IEnergyStorage energyStorage) {
+        return this.entries.containsKey(energyStorage);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(final ChunkUnloadEvent unloadEvent) {
+        final Chunk chunk = unloadEvent.getChunk();
+        final LongObjectMap<ChunkGroup> chunkGroups = this.worldGroups.get(chunk.getWorld());
+        if (chunkGroups == null) return;
+        final ChunkGroup group = chunkGroups.remove(BlockKey.chunkKey(chunk.getX(), chunk.getZ()));
+        if (group != null) this.cancel(group);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(final WorldUnloadEvent unloadEvent) {
+        final LongObjectMap<ChunkGroup> chunkGroups = this.worldGroups.remove(unloadEvent.getWorld());
+        if (chunkGroups != null) chunkGroups.forEach((chunkKey, group) -> this.cancel(group));
+    }
+
+    private void cancel(final ChunkGroup group) {
+        for (int i = 0; i < group.size; i++) {
+            final Entry entry = group.entries[i];
+            if (!entry.cancelled) this.entries.remove(entry.energyStorage);
+            entry.cancelled = true;
+        }
+        for (int i = 0; i < group.sleeperCount; i++) {
+            final Entry entry = group.sleepers[i];
+            this.entries.remove(entry.energyStorage);
+            entry.cancelled = true;
+            this.stopSleeping(entry);
+        }
+        group.sleeperCount = 0;
+        group.unloaded = true;
+    }
+
+    /**
+     * Puts every sleeping machine whose storage changed back into its chunk group
+     */
+    private void wakeChanged() {
+        IEnergyStorage requested;
+        while ((requested = this.wakeRequests.poll()) != null) {
+            final Entry entry = this.entries.get(requested);
+            if (entry != null) this.wake(entry);
+        }
+        Entry entry;
+        while ((entry = this.changedSleepers.poll()) != null) {
+            entry.wakeQueued = false; // cleared first, a change racing with this queues the entry again
+            this.wake(entry);
+        }
+    }
+
+    private void wake(final Entry entry) {
+        if (!entry.asleep || entry.cancelled) return;
+        entry.group.removeSleeper(entry);
+        this.stopSleeping(entry);
+        entry.group.add(entry);
+    }
+
+    private void stopSleeping(final Entry entry) {
+        entry.energyStorage.removeEnergyObserver(entry);
+        entry.asleep = false;
+        this.sleepingCount--;
+    }
+
+    /**
+     * Puts a machine to sleep if its policy allows it, the caller takes it out of its chunk group
+     * @return true if the machine is now sleeping
+     */
+    private boolean trySleep(final Entry entry) {
+        final IEnergyStorage energyStorage = entry.energyStorage;
+        try {
+            if (!entry.sleepPolicy.canSleep(energyStorage)) return false;
+            if (!energyStorage.addEnergyObserver(entry)) {
+                entry.sleepPolicy = null; // nothing could ever wake it, so it never sleeps
+                return false;
+            }
+            /* checked again now that changes are observed, one may have happened in between */
+            if (!entry.sleepPolicy.canSleep(energyStorage)) {
+                energyStorage.removeEnergyObserver(entry);
+                return false;
+            }
+        } catch (Throwable e) {
+            this.log("Sleep policy of the block at %s threw, it keeps running".formatted(energyStorage.getBlock().getLocation()), e);
+            energyStorage.removeEnergyObserver(entry);
+            return false;
+        }
+        entry.asleep = true;
+        this.sleepingCount++;
+        return true;
+    }
+
+    /**
+     * Runs handlers until every handler ran for this pass or the budget runs out
+     */
+    private void tick() {
+        final long start = System.nanoTime();
+        final long deadline = start + this.tickBudgetNanos;
+        this.wakeChanged();
+        if (!this.passInProgress) {
+            this.pass++;
+            this.groupCursor = 0;
+            this.entryCursor = 0;
+            this.passInProgress = true;
+        }
+
+        while (this.groupCursor < this.groups.size()) {
+            final ChunkGroup group = this.groups.get(this.groupCursor);
+            while (this.entryCursor < group.size) {
+                final Entry entry = group.entries[this.entryCursor];
+                if (entry.cancelled) {
+                    group.removeAt(this.entryCursor); // the last entry moves here, it did not run yet
+                    continue;
+                }
+                this.entryCursor++;
+                /* an entry that slept & got woken during this pass was put back behind the cursor, it already ran */
+                if (entry.ranPass == this.pass || (this.pass + entry.phase) % entry.divisor != 0) continue;
+                entry.ranPass = this.pass;
+                this.run(entry);
+                if (entry.sleepPolicy != null && !entry.cancelled && this.trySleep(entry)) {
+                    this.entryCursor--;
+                    group.removeAt(this.entryCursor); // the last entry moves here, it did not run yet
+                    group.addSleeper(entry);
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    this.lastTickNanos = System.nanoTime() - start;
+                    return;
+                }
+            }
+
+            this.entryCursor = 0;
+            if (group.size == 0 && group.sleeperCount == 0) this.removeGroup(this.groupCursor); // the last group moves here, it did not run yet
+            else this.groupCursor++;
+        }
+
+        this.passInProgress = false;
+        this.lastTickNanos = System.nanoTime() - start;
+    }
+
+    private void run(final Entry entry) {
+        try {
+            entry.handler.tick(entry.energyStorage);
+        } catch (Throwable e) {
+            this.log("Energy tick handler of the block at %s threw, it keeps running".formatted(entry.energyStorage.getBlock().getLocation()), e);
+        }
+    }
+
+    private void log(final String message, final Throwable e) {
+        if (this.plugin != null) this.plugin.getLogger().log(Level.SEVERE, message, e);
+        else Bukkit.getLogger().log(Level.SEVERE, message, e);
+    }
+
+    private void removeGroup(final int index) {
+        final ChunkGroup group = this.groups.get(index);
+        final int last = this.groups.size() - 1;
+        this.groups.set(index, this.groups.get(last));
+        this.groups.remove(last);
+        /* an unloaded chunk may already have a new group for it */
+        if (!group.unloaded && group.chunkGroups.get(group.chunkKey) == group) group.chunkGroups.remove(group.chunkKey);
+    }
+
+    /**
+     * A registered handler, observes its storage while sleeping
+     */
+    private final class Entry implements EnergyObserver {
+        private final IEnergyStorage energyStorage;
+        private final EnergyTickHandler<IEnergyStorage> handler;
+        private SleepPolicy<IEnergyStorage> sleepPolicy;
+        private final ChunkGroup group;
+        private final int divisor;
+        private final int phase;
+        private boolean cancelled = false;
+        private boolean asleep = false;
+        /* the last pass the handler ran in, so it runs at most once per pass */
+        private long ranPass = -1;
+        /* Index in the sleepers of its group while asleep */
+        private int sleepIndex = -1;
+        private volatile boolean wakeQueued = false;
+
+        Entry(final IEnergyStorage energyStorage, final EnergyTickHandler<IEnergyStorage> handler, final SleepPolicy<IEnergyStorage> sleepPolicy,
+              final ChunkGroup group, final int divisor, final int phase) {
+            this.energyStorage = energyStorage;
+            this.handler = handler;
+            this.sleepPolicy = sleepPolicy;
+            this.group = group;
+            this.divisor = divisor;
+            this.phase = phase;
+        }
+
+        @Override
+        public void onEnergyChanged(final IEnergyStorage energyStorage) {
+            if (this.wakeQueued) return;
+            this.wakeQueued = true;
+            EnergyScheduler.this.changedSleepers.offer(this);
+        }
+    }
+
+    /**
+     * Handlers of one chunk, kept in a plain array so a pass walks them in order
+     */
+    private static final class ChunkGroup {
+        private final LongObjectMap<ChunkGroup> chunkGroups;
+        private final long chunkKey;
+        private Entry[] entries = new Entry[4];
+        private int size = 0;
+        /* Sleeping entries, kept here so they get cancelled when the chunk unloads */
+        private Entry[] sleepers = new Entry[0];
+        private int sleeperCount = 0;
+        private boolean unloaded = false;
+
+        ChunkGroup(final LongObjectMap<ChunkGroup> chunkGroups, final long chunkKey) {
+            this.chunkGroups = chunkGroups;
+            this.chunkKey = chunkKey;
+        }
+
+        void add(final Entry entry) {
+            if (this.size == this.entries.length) this.entries = Arrays.copyOf(this.entries, this.size * 2);
+            this.entries[this.size++] = entry;
+        }
+
+        void removeAt(final int index) {
+            final int last = --this.size;
+            this.entries[index] = this.entries[last];
+            this.entries[last] = null;
+        }
+
+        void addSleeper(final Entry entry) {
+            if (this.sleeperCount == this.sleepers.length) this.sleepers = Arrays.copyOf(this.sleepers, Math.max(4, this.sleeperCount * 2));
+            entry.sleepIndex = this.sleeperCount;
+            this.sleepers[this.sleeperCount++] = entry;
+        }
+
+        void removeSleeper(final Entry entry) {
+            final int last = --this.sleeperCount;
+            final Entry moved = this.sleepers[last];
+            this.sleepers[entry.sleepIndex] = moved;
+            moved.sleepIndex = entry.sleepIndex;
+            this.sleepers[last] = null;
+            entry.sleepIndex = -1;
+        }
+    }
+}
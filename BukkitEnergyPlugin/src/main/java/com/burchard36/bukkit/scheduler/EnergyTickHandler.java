@@ -0,0 +1,16 @@
+package com.burchard36.bukkit.scheduler;
+
+import com.burchard36.bukkit.energy.IEnergyStorage;
+
+/**
+ * Logic of a machine, ran by the {@link EnergyScheduler} on the main thread
+ * @param <T> the IEnergyStorage of the machine
+ */
+@FunctionalInterface
+public interface EnergyTickHandler<T extends IEnergyStorage> {
+
+    /**
+     * @param energyStorage the IEnergyStorage this handler was registered for
+     */
+    void tick(final T energyStorage);
+}
@@ -0,0 +1,69 @@
+package com.burchard36.bukkit.scheduler;
+
+import com.burchard36.bukkit.energy.IEnergyStorage;
+import com.burchard36.bukkit.energy.ILongEnergyStorage;
+import org.bukkit.block.BlockFace;
+
+/**
+ * Decides when a machine has nothing to do, checked by the {@link EnergyScheduler} right after its handler ran
+ *
+ * A sleeping machine is not visited at all until its storage changes, for example because a network delivered or
+ * took energy or a face got toggled, or until {@link EnergyScheduler#wake(IEnergyStorage)} is called.
+ * Only use a policy when the handler really does nothing in that state, it will not run again until woken.
+ * An energy rate is applied lazily & never wakes anything, so the shipped policies do not sleep while
+ * the rate of the storage moves it out of the state they sleep in
+ * @param <T> the IEnergyStorage of the machine
+ */
+@FunctionalInterface
+public interface SleepPolicy<T extends IEnergyStorage> {
+
+    /**
+     * @param energyStorage the IEnergyStorage of the machine
+     * @return true if the machine may sleep until its storage changes
+     */
+    boolean canSleep(final T energyStorage);
+
+    default SleepPolicy<T> or(final SleepPolicy<? super T> other) {
+        return (energyStorage) -> this.canSleep(energyStorage) || other.canSleep(energyStorage);
+    }
+
+    /**
+     * Sleeps when the storage is full & no negative energy rate drains it, typically for generators
+     */
+    static <T extends IEnergyStorage> SleepPolicy<T> whenFull() {
+        return (energyStorage) -> {
+            if (energyStorage.getEnergyRate() < 0) return false;
+            if (energyStorage instanceof ILongEnergyStorage longStorage) {
+                return longStorage.getStoredEnergyLong() >= longStorage.getMaxEnergyStorageLong();
+            }
+            return energyStorage.getStoredEnergy() >= energyStorage.getMaxEnergyStorage();
+        };
+    }
+
+    /**
+     * Sleeps when the storage is empty & no positive energy rate fills it, typically for consumers
+     */
+    static <T extends IEnergyStorage> SleepPolicy<T> whenEmpty() {
+        return (energyStorage) -> energyStorage.getEnergyRate() <= 0 && energyStorage.getStoredEnergy() <= 0;
+    }
+
+    /**
+     * Sleeps when the storage is either full or empty
+     */
+    static <T extends IEnergyStorage> SleepPolicy<T> whenSaturated() {
+        return SleepPolicy.<T>whenFull().or(whenEmpty());
+    }
+
+    /**
+     * Sleeps when every face of the storage is {@link com.burchard36.bukkit.enums.IOType#DISABLED}
+     */
+    static <T extends IEnergyStorage> SleepPolicy<T> whenDisabled() {
+        final BlockFace[] faces = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN};
+        return (energyStorage) -> {
+            for (final BlockFace face : faces) {
+                if (energyStorage.canReceive(face) || energyStorage.canExtract(face)) return false;
+            }
+            return true;
+        };
+    }
+}
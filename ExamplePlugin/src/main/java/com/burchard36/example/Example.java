@@ -1,10 +1,16 @@
 package com.burchard36.example;
 
 import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.bukkit.capability.BukkitConduit;
+import com.burchard36.bukkit.capability.EnergyChangeNotifier;
 import com.burchard36.bukkit.capability.EnergyFactory;
 import com.burchard36.bukkit.energy.BukkitEnergy;
 import com.burchard36.bukkit.enums.IOType;
+import com.burchard36.bukkit.network.EnergyNetworkManager;
+import com.burchard36.bukkit.scheduler.EnergyScheduler;
+import com.burchard36.bukkit.scheduler.SleepPolicy;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
@@ -17,10 +23,10 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -29,53 +35,27 @@ import java.util.Optional;
 public final class Example extends JavaPlugin implements Listener {
 
     private EnergyFactory<BukkitEnergy> energyFactory;
+    private EnergyScheduler energyScheduler;
     private final List<Location> placedLamps = new ArrayList<>();
     private final List<Location> placedFurnaces = new ArrayList<>();
+    private final List<Location> placedCables = new ArrayList<>();
+    private EnergyNetworkManager<BukkitEnergy> networkManager;
 
     @Override
     public void onEnable() {
         // Plugin startup logic
         this.energyFactory = BukkitEnergyPlugin.getInstance().getDefaultEnergyFactory();
+        // Adjacent energy blocks now form networks, lamps can only pass on 50 power a tick
+        this.networkManager = this.energyFactory.getNetworkManager();
+        this.networkManager.setTransferRate(50);
         Bukkit.getPluginManager().registerEvents(this, this);
 
-        /* Tasks that ticks every tick that will handle transfering energy from furnaces -> redstone lamps
-         * As well as spending any energy said lamps have
+        /* Furnaces & lamps register their logic with the energy scheduler when placed, it ticks them
+         * together with the machines of every other plugin. The network moves energy from furnaces -> redstone lamps
          */
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                placedFurnaces.forEach((furnaceLocation) -> {
-                    final Block furnaceBlock = furnaceLocation.getBlock();
-                    final Optional<BukkitEnergy> energyBlockOptional = energyFactory.getEnergyBlock(furnaceBlock);
-                    energyBlockOptional.ifPresent((energyBlock) -> {
-                        final Furnace furnace = (Furnace) furnaceLocation.getBlock().getState();
-                        if (furnace.getBurnTime() > 0) { // for this example, an always furnace furnace generates 100 energy a tick
-                            energyBlock.generateEnergy(100);
-                        }
-
-                        // Only send power if there is lamps above
-                        if (furnaceBlock.getRelative(BlockFace.UP).getType() == Material.REDSTONE_LAMP) {
-                            int amountExtracted = energyBlock.extractEnergy(BlockFace.UP, 100, false);
-                            powerVerticleLamps(furnaceBlock, amountExtracted);
-                        }
-                    });
-                });
-
-                placedLamps.forEach((lampLocation) -> {
-                    final Block lampBlock = lampLocation.getBlock();
-                    final Optional<BukkitEnergy> energyBlockOptional = energyFactory.getEnergyBlock(lampBlock);
-                    energyBlockOptional.ifPresent((energyBlock) -> {
-                        final Lightable powerable = (Lightable) lampBlock.getBlockData();
-                        if (energyBlock.burnEnergy(25)) { // lamps cost 5 energy a tick
-                            powerable.setLit(true);
-
-                        } else powerable.setLit(false);
-
-                        lampBlock.setBlockData(powerable);
-                    });
-                });
-            }
-        }.runTaskTimer(this, 0, 1);
+        this.energyScheduler = BukkitEnergyPlugin.getInstance().getEnergyScheduler();
+        /* Lamps only get re-rendered when they run empty or get power again, not every tick */
+        this.energyFactory.addChangeListener(this::onLevelChanged);
     }
 
     @Override
@@ -90,14 +70,31 @@ public final class Example extends JavaPlugin implements Listener {
         switch (brokenType) {
             case REDSTONE_LAMP -> placedLamps.remove(breakLocation);
             case FURNACE -> placedFurnaces.remove(breakLocation);
+            case IRON_BARS -> {
+                if (placedCables.remove(breakLocation)) this.networkManager.removeConduit(new BukkitConduit(breakEvent.getBlock(), 0));
+            }
         }
     }
 
+    @EventHandler
+    public void onChunkLoad(final ChunkLoadEvent loadEvent) {
+        /* The scheduler forgets the machines of unloaded chunks, so register them again */
+        final Chunk chunk = loadEvent.getChunk();
+        this.placedFurnaces.stream().filter((location) -> this.isInChunk(location, chunk))
+                .forEach((location) -> this.energyFactory.getEnergyBlock(location.getBlock()).ifPresent(this::registerFurnace));
+        this.placedLamps.stream().filter((location) -> this.isInChunk(location, chunk))
+                .forEach((location) -> this.energyFactory.getEnergyBlock(location.getBlock()).ifPresent(this::registerLamp));
+        /* Conduits store nothing, so they are simply added again */
+        this.placedCables.stream().filter((location) -> this.isInChunk(location, chunk))
+                .forEach((location) -> this.networkManager.addConduit(new BukkitConduit(location.getBlock(), 50)));
+    }
+
     @EventHandler
     public void onPlace(final BlockPlaceEvent placeEvent) {
         final Block placedBlock = placeEvent.getBlock();
         this.handleFurnacePlace(placedBlock);
         this.handleBatteryPlace(placedBlock);
+        this.handleCablePlace(placedBlock);
     }
 
     @EventHandler
@@ -116,23 +113,6 @@ public final class Example extends JavaPlugin implements Listener {
         event.setCancelled(true);
     }
 
-    public void powerVerticleLamps(final Block start, int passthroughEnergy) {
-        Block upAdjacent = start.getRelative(BlockFace.UP);
-        if (upAdjacent.getType() != Material.REDSTONE_LAMP) {
-            return;
-        }
-        final Optional<BukkitEnergy> blockEnergyOptional = this.energyFactory.getEnergyBlock(upAdjacent);
-        blockEnergyOptional.ifPresent((blockEnergy) -> {
-            blockEnergy.receiveEnergy(BlockFace.DOWN, passthroughEnergy, false);
-            if (upAdjacent.getRelative(BlockFace.UP).getType() == Material.REDSTONE_LAMP) {
-                // Lamps can only output 50 power
-                int amountExtracted = blockEnergy.extractEnergy(BlockFace.UP, 50, false);
-                this.powerVerticleLamps(upAdjacent, amountExtracted);
-            }
-        });
-
-    }
-
     /**
      * Example for placing a "Generator" block
      * @param placedBlock {@link Block} from a {@link BlockPlaceEvent}
@@ -146,6 +126,7 @@ public final class Example extends JavaPlugin implements Listener {
             List.of(BlockFace.values()).forEach((face) -> bukkitEnergy.toggleFaceIOType(face, IOType.DISABLED));
             bukkitEnergy.toggleFaceIOType(BlockFace.UP, IOType.OUTPUT); // set the top of the furnace as an output
             bukkitEnergy.setMaxEnergyStored(25000);
+            this.registerFurnace(bukkitEnergy);
         });
 
         this.placedFurnaces.add(placedBlock.getLocation());
@@ -153,15 +134,74 @@ public final class Example extends JavaPlugin implements Listener {
 
     /**
      * Example for a basic battery that lights up when power is received on any side,
-     * this battery will also work as a pass-through, meaning adjacent batteries placed to it will receive & be powered
+     * this battery will also work as a pass-through, adjacent batteries share a network and will receive & be powered
      * @param placedBlock {@link Block} from a {@link BlockPlaceEvent}
      */
     private void handleBatteryPlace(final Block placedBlock) {
         if (placedBlock.getType() != Material.REDSTONE_LAMP) return;
 
         final Optional<BukkitEnergy> energyBlockOptional = this.energyFactory.createEnergyBlock(placedBlock);
+        energyBlockOptional.ifPresent(this::registerLamp);
 
         this.placedLamps.add(placedBlock.getLocation());
         // by default all energy blocks i/o from all sides
     }
+
+    /**
+     * Example for a cable, it connects furnaces & lamps without storing anything,
+     * a whole line of cables only costs the network one transfer per tick
+     * @param placedBlock {@link Block} from a {@link BlockPlaceEvent}
+     */
+    private void handleCablePlace(final Block placedBlock) {
+        if (placedBlock.getType() != Material.IRON_BARS) return;
+
+        this.networkManager.addConduit(new BukkitConduit(placedBlock, 50)); // 50 energy a tick through every face
+        this.placedCables.add(placedBlock.getLocation());
+    }
+
+    /**
+     * Furnaces generate through their energy rate, so they only check once a second if they are still burning.
+     * A full furnace has nowhere to put its energy, it sleeps until the network pulls some out
+     */
+    private void registerFurnace(final BukkitEnergy energyBlock) {
+        this.energyScheduler.register(energyBlock, this::tickFurnace, 20, SleepPolicy.whenFull());
+    }
+
+    /**
+     * Lamps cost 25 energy a tick through their energy rate, nothing has to run every tick for that.
+     * Once a second the lamp reads its energy, so it goes dark when empty even without a network reading it,
+     * an empty lamp sleeps until it receives power again
+     */
+    private void registerLamp(final BukkitEnergy energyBlock) {
+        energyBlock.setEnergyRate(-25);
+        this.energyScheduler.register(energyBlock, this::tickLamp, 20, SleepPolicy.whenEmpty());
+    }
+
+    private void tickFurnace(final BukkitEnergy energyBlock) {
+        final Furnace furnace = (Furnace) energyBlock.getBlock().getState();
+        final int energyRate = furnace.getBurnTime() > 0 ? 100 : 0; // for this example, a burning furnace generates 100 energy a tick
+        if (energyBlock.getEnergyRate() != energyRate) energyBlock.setEnergyRate(energyRate);
+    }
+
+    private void tickLamp(final BukkitEnergy energyBlock) {
+        energyBlock.getStoredEnergy(); // applies the energy rate, the level notifier turns the lamp off when empty
+    }
+
+    private void onLevelChanged(final BukkitEnergy energyBlock, final int previousLevel, final int level) {
+        final boolean wasEmpty = previousLevel == EnergyChangeNotifier.EMPTY;
+        final boolean isEmpty = level == EnergyChangeNotifier.EMPTY;
+        if (wasEmpty == isEmpty) return; // only emptiness matters for a lamp
+
+        final Block lampBlock = energyBlock.getBlock();
+        if (lampBlock.getType() != Material.REDSTONE_LAMP) return;
+        final Lightable powerable = (Lightable) lampBlock.getBlockData();
+        powerable.setLit(!isEmpty);
+        lampBlock.setBlockData(powerable);
+    }
+
+    private boolean isInChunk(final Location location, final Chunk chunk) {
+        return location.getWorld() == chunk.getWorld()
+                && location.getBlockX() >> 4 == chunk.getX()
+                && location.getBlockZ() >> 4 == chunk.getZ();
+    }
 }
@@ -0,0 +1,257 @@
+package com.burchard36.benchmark;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.bukkit.capability.EnergyBlockIndex;
+import com.burchard36.bukkit.capability.EnergySavePipeline;
+import com.burchard36.bukkit.metrics.BukkitEnergyMetrics;
+import com.burchard36.bukkit.scheduler.EnergyScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.persistence.PersistentDataAdapterContext;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a server to run BukkitEnergy outside of Minecraft
+ *
+ * Worlds, chunks, blocks & data containers are {@link Proxy}s answering only what BukkitEnergy & CustomBlockData ask for,
+ * every other method returns null/0/false. A proxy call costs a few nanoseconds more than a real server call would,
+ * see {@link EnergyFactoryLookupBenchmark#stubOverhead()} for how much.
+ */
+public final class BenchmarkServer {
+
+    private static final Logger LOGGER = Logger.getLogger("BenchmarkServer");
+    private static BukkitEnergyPlugin plugin;
+
+    private BenchmarkServer() {
+    }
+
+    /**
+     * Installs the stub server & a {@link BukkitEnergyPlugin} instance, safe to call more than once
+     * @return the plugin instance
+     */
+    public static synchronized BukkitEnergyPlugin install() {
+        if (plugin != null) return plugin;
+
+        final BukkitScheduler scheduler = proxy(BukkitScheduler.class, (proxy, method, args) -> defaultValue(proxy, method, args));
+        Bukkit.setServer(proxy(Server.class, (proxy, method, args) -> switch (method.getName()) {
+            case "getLogger" -> LOGGER;
+            case "getName" -> "BenchmarkServer";
+            case "getVersion", "getBukkitVersion" -> "benchmark";
+            case "getScheduler" -> scheduler;
+            case "isPrimaryThread" -> true;
+            default -> defaultValue(proxy, method, args);
+        }));
+
+        try {
+            /* JavaPlugin refuses to be constructed outside of a plugin class loader, so skip its constructor */
+            final BukkitEnergyPlugin energyPlugin = (BukkitEnergyPlugin) unsafe().allocateInstance(BukkitEnergyPlugin.class);
+            setField(JavaPlugin.class, energyPlugin, "description", new PluginDescriptionFile("BukkitEnergy", "1.0.0", BukkitEnergyPlugin.class.getName()));
+            setField(BukkitEnergyPlugin.class, energyPlugin, "registeredEnergyFactorys", new HashMap<>());
+            setField(BukkitEnergyPlugin.class, energyPlugin, "energyBlockIndex", new EnergyBlockIndex());
+            /* never started, so snapshots are encoded right away & only written by EnergySavePipeline#flush */
+            setField(BukkitEnergyPlugin.class, energyPlugin, "savePipeline", new EnergySavePipeline());
+            setField(BukkitEnergyPlugin.class, energyPlugin, "energyScheduler", new EnergyScheduler());
+            setField(BukkitEnergyPlugin.class, energyPlugin, "metrics", new BukkitEnergyMetrics());
+            energyPlugin.onLoad(); // sets the instance
+            plugin = energyPlugin;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not create the BukkitEnergyPlugin instance " + e);
+        }
+        return plugin;
+    }
+
+    /**
+     * Creates a new empty world, chunks & blocks are created the first time they are asked for
+     * @param name the name of the world
+     * @return the {@link World}
+     */
+    public static World createWorld(final String name) {
+        return new StubWorld(name).world;
+    }
+
+    private static final class StubWorld {
+        private final UUID worldId = UUID.randomUUID();
+        private final String name;
+        private final ConcurrentHashMap<Long, Chunk> chunks = new ConcurrentHashMap<>();
+        private final World world;
+
+        StubWorld(final String name) {
+            this.name = name;
+            this.world = proxy(World.class, (proxy, method, args) -> switch (method.getName()) {
+                case "getUID" -> this.worldId;
+                case "getName" -> this.name;
+                case "getMinHeight" -> -64;
+                case "getMaxHeight" -> 320;
+                case "getGameTime", "getFullTime" -> 0L;
+                case "getChunkAt" -> args.length == 2 && args[0] instanceof Integer
+                        ? this.getChunk((int) args[0], (int) args[1])
+                        : this.getChunkAt(args[0]);
+                case "getBlockAt" -> args.length == 3
+                        ? this.getBlock((int) args[0], (int) args[1], (int) args[2])
+                        : this.getBlockAt((Location) args[0]);
+                case "isChunkLoaded" -> true;
+                default -> defaultValue(proxy, method, args);
+            });
+        }
+
+        private Chunk getChunkAt(final Object at) {
+            if (at instanceof Block block) return this.getChunk(block.getX() >> 4, block.getZ() >> 4);
+            final Location location = (Location) at;
+            return this.getChunk(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        }
+
+        private Block getBlockAt(final Location location) {
+            return this.getBlock(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        }
+
+        Chunk getChunk(final int chunkX, final int chunkZ) {
+            return this.chunks.computeIfAbsent(((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL), (key) -> {
+                final PersistentDataContainer dataContainer = newDataContainer();
+                return proxy(Chunk.class, (proxy, method, args) -> switch (method.getName()) {
+                    case "getX" -> chunkX;
+                    case "getZ" -> chunkZ;
+                    case "getWorld" -> this.world;
+                    case "getPersistentDataContainer" -> dataContainer;
+                    case "getBlock" -> this.getBlock((chunkX << 4) | (int) args[0], (int) args[1], (chunkZ << 4) | (int) args[2]);
+                    case "isLoaded" -> true;
+                    default -> defaultValue(proxy, method, args);
+                });
+            });
+        }
+
+        Block getBlock(final int x, final int y, final int z) {
+            return proxy(Block.class, new BlockHandler(this, x, y, z));
+        }
+    }
+
+    /**
+     * Blocks are created on every lookup like on a real server, two blocks of the same position are equal
+     */
+    private record BlockHandler(StubWorld stubWorld, int x, int y, int z) implements InvocationHandler {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            return switch (method.getName()) {
+                case "getX" -> this.x;
+                case "getY" -> this.y;
+                case "getZ" -> this.z;
+                case "getWorld" -> this.stubWorld.world;
+                case "getChunk" -> this.stubWorld.getChunk(this.x >> 4, this.z >> 4);
+                case "getLocation" -> new Location(this.stubWorld.world, this.x, this.y, this.z);
+                case "getType" -> Material.STONE;
+                case "equals" -> args[0] != null && Proxy.isProxyClass(args[0].getClass())
+                        && this.equals(Proxy.getInvocationHandler(args[0]));
+                case "hashCode" -> this.hashCode();
+                default -> defaultValue(proxy, method, args);
+            };
+        }
+    }
+
+    /**
+     * A {@link PersistentDataContainer} backed by a map, values are stored as their primitive type like the server does
+     */
+    private static PersistentDataContainer newDataContainer() {
+        final HashMap<NamespacedKey, Object> values = new HashMap<>();
+        final PersistentDataAdapterContext[] context = new PersistentDataAdapterContext[1];
+        context[0] = proxy(PersistentDataAdapterContext.class, (proxy, method, args) ->
+                method.getName().equals("newPersistentDataContainer") ? newDataContainer() : defaultValue(proxy, method, args));
+
+        return proxy(PersistentDataContainer.class, (proxy, method, args) -> {
+            synchronized (values) {
+                return switch (method.getName()) {
+                    case "set" -> {
+                        final PersistentDataType<?, ?> type = (PersistentDataType<?, ?>) args[1];
+                        values.put((NamespacedKey) args[0], toPrimitive(type, args[2], context[0]));
+                        yield null;
+                    }
+                    case "has" -> {
+                        final Object value = values.get((NamespacedKey) args[0]);
+                        if (args.length == 1 || value == null) yield value != null;
+                        yield ((PersistentDataType<?, ?>) args[1]).getPrimitiveType().isInstance(value);
+                    }
+                    case "get", "getOrDefault" -> {
+                        final Object value = values.get((NamespacedKey) args[0]);
+                        if (value == null) yield args.length == 3 ? args[2] : null;
+                        yield fromPrimitive((PersistentDataType<?, ?>) args[1], value, context[0]);
+                    }
+                    case "remove" -> {
+                        values.remove((NamespacedKey) args[0]);
+                        yield null;
+                    }
+                    case "getKeys" -> new HashSet<>(values.keySet());
+                    case "isEmpty" -> values.isEmpty();
+                    case "getAdapterContext" -> context[0];
+                    default -> defaultValue(proxy, method, args);
+                };
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <P, C> P toPrimitive(final PersistentDataType<P, C> type, final Object value, final PersistentDataAdapterContext context) {
+        return type.toPrimitive((C) value, context);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <P, C> C fromPrimitive(final PersistentDataType<P, C> type, final Object value, final PersistentDataAdapterContext context) {
+        return type.fromPrimitive((P) value, context);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(BenchmarkServer.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object defaultValue(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return method.getDeclaringClass().getSimpleName() + "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+        }
+        final Class<?> returnType = method.getReturnType();
+        if (!returnType.isPrimitive() || returnType == void.class) return null;
+        if (returnType == boolean.class) return false;
+        if (returnType == long.class) return 0L;
+        if (returnType == double.class) return 0D;
+        if (returnType == float.class) return 0F;
+        if (returnType == char.class) return (char) 0;
+        if (returnType == byte.class) return (byte) 0;
+        if (returnType == short.class) return (short) 0;
+        return 0;
+    }
+
+    private static Unsafe unsafe() throws ReflectiveOperationException {
+        final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        return (Unsafe) field.get(null);
+    }
+
+    private static void setField(final Class<?> owner, final Object instance, final String name, final Object value) throws ReflectiveOperationException {
+        final Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(instance, value);
+    }
+}
@@ -0,0 +1,108 @@
+package com.burchard36.benchmark;
+
+import com.burchard36.energy.core.EnergyCell;
+import com.burchard36.energy.core.NetworkGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The energy-core algorithms on their own, no {@link BenchmarkServer} & no Bukkit class loaded
+ *
+ * {@code transfer} is the {@link EnergyStorageBenchmark} transfer group on bare {@link EnergyCell}s, so the difference
+ * between both is what the Bukkit adapter costs. {@code findHubs} compiles a line of storages joined by conduits.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnergyCoreBenchmark {
+
+    private static final int AMOUNT = 10;
+
+    private final AtomicLong tick = new AtomicLong();
+    private EnergyCell first;
+    private EnergyCell second;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        this.first = this.newCell();
+        this.second = this.newCell();
+    }
+
+    private EnergyCell newCell() {
+        final EnergyCell cell = new EnergyCell() {
+            @Override
+            protected long currentTick() {
+                return EnergyCoreBenchmark.this.tick.get();
+            }
+        };
+        cell.setMaxEnergyStored(1_000_000);
+        cell.generateEnergy(500_000);
+        return cell;
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(2)
+    public int transferForward() {
+        return EnergyCell.transfer(this.first, this.second, AMOUNT);
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(2)
+    public int transferBackward() {
+        return EnergyCell.transfer(this.second, this.first, AMOUNT);
+    }
+
+    /**
+     * A line alternating storage, conduit, storage... along the east face
+     */
+    @State(Scope.Thread)
+    public static class Line {
+        private static final int EAST = 1;
+        private static final int WEST = 3;
+
+        @Param({"1000", "100000"})
+        public int nodes;
+
+        NetworkGraph graph;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            this.graph = new NetworkGraph(this.nodes);
+            for (int node = 0; node < this.nodes; node++) {
+                if (node + 1 < this.nodes) this.graph.setNeighbour(node, EAST, node + 1);
+                if (node > 0) this.graph.setNeighbour(node, WEST, node - 1);
+                for (int face = 0; face < NetworkGraph.FACES; face++) {
+                    if (node % 2 == 0) this.graph.setStorageFace(node, face, true, true);
+                    else this.graph.setConduitFace(node, face, 1000);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public NetworkGraph.Hubs findHubs(final Line line) {
+        return line.graph.findHubs();
+    }
+}
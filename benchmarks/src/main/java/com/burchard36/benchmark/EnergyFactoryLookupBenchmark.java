@@ -0,0 +1,102 @@
+package com.burchard36.benchmark;
+
+import com.burchard36.bukkit.capability.EnergyFactory;
+import com.burchard36.bukkit.energy.BukkitEnergy;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link EnergyFactory#getEnergyBlock(Block)} for registered blocks & for plain blocks next to them
+ *
+ * Blocks are laid out on a grid with one empty block between them, the misses are those empty blocks,
+ * so they land in chunks that are already indexed just like a lookup next to a machine would.
+ * Lookups walk the blocks in a shuffled order so the caches see a realistic access pattern.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnergyFactoryLookupBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int blocks;
+
+    private World world;
+    private EnergyFactory<BukkitEnergy> energyFactory;
+    private Block[] hits;
+    private Block[] misses;
+    private int[] coordinates;
+    private int cursor = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkServer.install();
+        this.world = BenchmarkServer.createWorld("lookup");
+        this.energyFactory = new EnergyFactory<>(BukkitEnergy.class, BukkitEnergy::new);
+        this.hits = new Block[this.blocks];
+        this.misses = new Block[this.blocks];
+        this.coordinates = new int[this.blocks * 3];
+
+        final int side = (int) Math.ceil(Math.sqrt(this.blocks));
+        final int[] order = Grid.shuffledOrder(this.blocks);
+        for (int i = 0; i < this.blocks; i++) {
+            final int position = order[i];
+            final int x = (position % side) * 2;
+            final int z = (position / side) * 2;
+            this.hits[i] = this.world.getBlockAt(x, 64, z);
+            this.misses[i] = this.world.getBlockAt(x + 1, 64, z);
+            this.coordinates[i * 3] = x;
+            this.coordinates[i * 3 + 1] = 64;
+            this.coordinates[i * 3 + 2] = z;
+            this.energyFactory.createEnergyBlock(this.hits[i]);
+        }
+    }
+
+    private int next() {
+        final int index = this.cursor;
+        this.cursor = index + 1 == this.blocks ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Optional<BukkitEnergy> hit() {
+        return this.energyFactory.getEnergyBlock(this.hits[this.next()]);
+    }
+
+    @Benchmark
+    public Optional<BukkitEnergy> miss() {
+        return this.energyFactory.getEnergyBlock(this.misses[this.next()]);
+    }
+
+    @Benchmark
+    public Optional<BukkitEnergy> hitByCoordinates() {
+        final int index = this.next() * 3;
+        return this.energyFactory.getEnergyBlock(this.world, this.coordinates[index], this.coordinates[index + 1], this.coordinates[index + 2]);
+    }
+
+    /**
+     * The stub calls a lookup makes without any of the lookup, subtract this from the others to compare with a real server
+     */
+    @Benchmark
+    public int stubOverhead() {
+        final Block block = this.hits[this.next()];
+        return block.getX() + block.getY() + block.getZ() + block.getWorld().getUID().hashCode();
+    }
+}
@@ -0,0 +1,83 @@
+package com.burchard36.benchmark;
+
+import com.burchard36.bukkit.energy.BukkitEnergy;
+import com.burchard36.bukkit.energy.EnergySlabs;
+import com.burchard36.bukkit.energy.SlabEnergy;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading every storage of a huge registry, {@link BukkitEnergy} objects against {@link SlabEnergy} handles & their raw pages
+ *
+ * The storages are read in a shuffled order like a network spread over the world would,
+ * {@code sumPages} is the scan {@link EnergySlabs#sumStored(World)} does without any handle.
+ * Run with {@code -prof gc} to compare the allocation rate, & a heap dump to compare the footprint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnergySlabBenchmark {
+
+    @Param({"10000", "200000"})
+    public int blocks;
+
+    private World world;
+    private EnergySlabs energySlabs;
+    private BukkitEnergy[] objects;
+    private SlabEnergy[] handles;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkServer.install();
+        this.world = BenchmarkServer.createWorld("slabs");
+        this.energySlabs = new EnergySlabs();
+        this.objects = new BukkitEnergy[this.blocks];
+        this.handles = new SlabEnergy[this.blocks];
+
+        final int side = (int) Math.ceil(Math.sqrt(this.blocks));
+        final int[] order = Grid.shuffledOrder(this.blocks);
+        for (int i = 0; i < this.blocks; i++) {
+            final Block block = this.world.getBlockAt(order[i] % side, 64, order[i] / side);
+            this.objects[i] = new BukkitEnergy(block);
+            this.objects[i].generateEnergy(i);
+            this.handles[i] = this.energySlabs.allocate(block);
+            this.handles[i].generateEnergy(i);
+        }
+    }
+
+    @Benchmark
+    public long sumObjects() {
+        long sum = 0;
+        for (final BukkitEnergy energyImpl : this.objects) sum += energyImpl.getStoredEnergy();
+        return sum;
+    }
+
+    @Benchmark
+    public long sumHandles() {
+        long sum = 0;
+        for (final SlabEnergy energyImpl : this.handles) sum += energyImpl.getStoredEnergy();
+        return sum;
+    }
+
+    @Benchmark
+    public long sumPages() {
+        return this.energySlabs.sumStored(this.world);
+    }
+}
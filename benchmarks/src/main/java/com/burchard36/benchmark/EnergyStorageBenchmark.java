@@ -0,0 +1,91 @@
+package com.burchard36.benchmark;
+
+import com.burchard36.bukkit.energy.BukkitEnergy;
+import com.burchard36.bukkit.energy.EnergyTransfer;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link BukkitEnergy} mutations with several threads hitting the same storages
+ *
+ * Every group adds & removes the same amount of energy, so the storages hover around half full
+ * and the compare-and-set loops are measured instead of the full/empty early returns.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnergyStorageBenchmark {
+
+    private static final int AMOUNT = 10;
+
+    private BukkitEnergy first;
+    private BukkitEnergy second;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        BenchmarkServer.install();
+        final World world = BenchmarkServer.createWorld("storage");
+        this.first = this.newStorage(world, 0);
+        this.second = this.newStorage(world, 1);
+    }
+
+    private BukkitEnergy newStorage(final World world, final int x) {
+        final BukkitEnergy storage = new BukkitEnergy(world.getBlockAt(x, 64, 0));
+        storage.setMaxEnergyStored(1_000_000);
+        storage.generateEnergy(500_000);
+        return storage;
+    }
+
+    @Benchmark
+    @Group("receiveExtract")
+    @GroupThreads(2)
+    public int receive() {
+        return this.first.receiveEnergy(BlockFace.NORTH, AMOUNT, false);
+    }
+
+    @Benchmark
+    @Group("receiveExtract")
+    @GroupThreads(2)
+    public int extract() {
+        return this.first.extractEnergy(BlockFace.SOUTH, AMOUNT, false);
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(2)
+    public int transferForward() {
+        return EnergyTransfer.transfer(this.first, BlockFace.EAST, this.second, BlockFace.WEST, AMOUNT);
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(2)
+    public int transferBackward() {
+        return EnergyTransfer.transfer(this.second, BlockFace.WEST, this.first, BlockFace.EAST, AMOUNT);
+    }
+
+    @Benchmark
+    @Group("simulate")
+    @GroupThreads(4)
+    public int simulateReceive() {
+        return this.first.receiveEnergy(BlockFace.UP, AMOUNT, true);
+    }
+}
@@ -0,0 +1,90 @@
+package com.burchard36.benchmark;
+
+import com.burchard36.bukkit.BukkitEnergyPlugin;
+import com.burchard36.bukkit.energy.BukkitEnergy;
+import com.burchard36.bukkit.energy.EnergyStorageData;
+import com.burchard36.bukkit.enums.IOType;
+import com.jeff_media.customblockdata.CustomBlockData;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of every step between a {@link BukkitEnergy} & the PDC of its block
+ *
+ * serialize/deserialize only touch memory, readFromBlock/writeToBlock include the {@link CustomBlockData} round trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnergyStorageDataBenchmark {
+
+    private BukkitEnergyPlugin plugin;
+    private Block block;
+    private BukkitEnergy storage;
+    private EnergyStorageData storageData;
+    private long[] encoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.plugin = BenchmarkServer.install();
+        final World world = BenchmarkServer.createWorld("data");
+        this.block = world.getBlockAt(0, 64, 0);
+        this.storage = new BukkitEnergy(this.block);
+        this.storage.setMaxEnergyStored(100_000);
+        this.storage.generateEnergy(12_345);
+        this.storage.toggleFaceIOType(BlockFace.UP, IOType.OUTPUT);
+        this.storage.toggleFaceIOType(BlockFace.DOWN, IOType.INPUT);
+        this.storageData = this.storage.serialize();
+        this.encoded = this.storageData.encode();
+        EnergyStorageData.deserializeTo(this.storage);
+    }
+
+    @Benchmark
+    public EnergyStorageData serialize() {
+        return this.storage.serialize();
+    }
+
+    @Benchmark
+    public BukkitEnergy deserialize() {
+        this.storage.deserialize(this.storageData);
+        return this.storage;
+    }
+
+    @Benchmark
+    public long[] encode() {
+        return this.storageData.encode();
+    }
+
+    @Benchmark
+    public EnergyStorageData decode() {
+        return EnergyStorageData.decode(this.encoded);
+    }
+
+    @Benchmark
+    public EnergyStorageData readFromBlock() {
+        return EnergyStorageData.serializeFrom(new CustomBlockData(this.block, this.plugin));
+    }
+
+    @Benchmark
+    public PersistentDataContainer writeToBlock() {
+        return EnergyStorageData.deserializeTo(this.storage);
+    }
+}
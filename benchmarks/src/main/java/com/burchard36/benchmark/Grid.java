@@ -0,0 +1,29 @@
+package com.burchard36.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Block layout helpers shared by the benchmarks
+ */
+final class Grid {
+
+    private Grid() {
+    }
+
+    /**
+     * @param size the amount of positions
+     * @return every position from 0 to size in a shuffled, but always the same, order
+     */
+    static int[] shuffledOrder(final int size) {
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        final SplittableRandom random = new SplittableRandom(42);
+        for (int i = size - 1; i > 0; i--) {
+            final int swap = random.nextInt(i + 1);
+            final int value = order[i];
+            order[i] = order[swap];
+            order[swap] = value;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,87 @@
+package com.burchard36.benchmark;
+
+import com.burchard36.bukkit.capability.EnergyFactory;
+import com.burchard36.bukkit.capability.EnergySavePipeline;
+import com.burchard36.bukkit.energy.BukkitEnergy;
+import org.bukkit.World;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time {@link EnergyFactory#onWorldSave(WorldSaveEvent)} takes to save a world, with part of its storages changed since the last save
+ *
+ * snapshot is what the save event itself costs the main thread, snapshotAndWrite adds writing every snapshot to PDC,
+ * which a server spreads over the following ticks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldSaveBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int blocks;
+
+    @Param({"0", "10", "100"})
+    public int dirtyPercent;
+
+    private EnergyFactory<BukkitEnergy> energyFactory;
+    private BukkitEnergy[] storages;
+    private WorldSaveEvent saveEvent;
+    private EnergySavePipeline savePipeline;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.savePipeline = BenchmarkServer.install().getSavePipeline();
+        final World world = BenchmarkServer.createWorld("save");
+        this.energyFactory = new EnergyFactory<>(BukkitEnergy.class, BukkitEnergy::new);
+        this.storages = new BukkitEnergy[this.blocks];
+        this.saveEvent = new WorldSaveEvent(world);
+
+        final int side = (int) Math.ceil(Math.sqrt(this.blocks));
+        final int[] order = Grid.shuffledOrder(this.blocks);
+        for (int i = 0; i < this.blocks; i++) {
+            this.storages[i] = this.energyFactory.createEnergyBlock(world.getBlockAt(order[i] % side, 64, order[i] / side))
+                    .orElseThrow();
+        }
+    }
+
+    /* Storages were created at shuffled positions, so the first ones changed here are spread all over the world */
+    @Setup(Level.Invocation)
+    public void changeStorages() {
+        final int dirty = (int) ((long) this.blocks * this.dirtyPercent / 100);
+        for (int i = 0; i < dirty; i++) this.storages[i].generateEnergy(1);
+    }
+
+    @Benchmark
+    public void snapshot() {
+        this.energyFactory.onWorldSave(this.saveEvent);
+    }
+
+    @TearDown(Level.Invocation)
+    public void writePending() {
+        this.savePipeline.flush();
+    }
+
+    @Benchmark
+    public void snapshotAndWrite() {
+        this.energyFactory.onWorldSave(this.saveEvent);
+        this.savePipeline.flush();
+    }
+}
@@ -0,0 +1,95 @@
+package com.burchard36.energy.core;
+
+/**
+ * Static helpers for packing block & chunk coordinates into primitives, so lookups never need a location object
+ *
+ * Block positions use the same layout as vanilla: 26 bits of X, 26 bits of Z and 12 bits of Y.
+ * The world is not part of the key, callers keep one table per world
+ */
+public final class BlockKey {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int Z_SHIFT = Y_BITS;
+    private static final int X_SHIFT = Y_BITS + XZ_BITS;
+
+    private BlockKey() {
+    }
+
+    /**
+     * Packs a block position into a single long
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @return the packed position
+     */
+    public static long pack(final int x, final int y, final int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static int unpackX(final long packed) {
+        return (int) (packed >> X_SHIFT);
+    }
+
+    public static int unpackY(final long packed) {
+        return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(final long packed) {
+        return (int) (packed << (64 - X_SHIFT) >> (64 - XZ_BITS));
+    }
+
+    /**
+     * Packs chunk coordinates into a single long, same layout Bukkit uses for its chunk keys
+     * @param chunkX chunk X (block X >> 4)
+     * @param chunkZ chunk Z (block Z >> 4)
+     * @return the packed chunk key
+     */
+    public static long chunkKey(final int chunkX, final int chunkZ) {
+        return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Chunk key of the chunk containing a block
+     * @param x block X
+     * @param z block Z
+     * @return the packed chunk key
+     */
+    public static long chunkKeyOfBlock(final int x, final int z) {
+        return chunkKey(x >> 4, z >> 4);
+    }
+
+    public static int chunkX(final long chunkKey) {
+        return (int) chunkKey;
+    }
+
+    public static int chunkZ(final long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+
+    /**
+     * Index of a block inside its chunk, 4 bits of X, 4 bits of Z and 12 bits of Y
+     * @param x block X
+     * @param y block Y
+     * @param z block Z
+     * @return the index of the block inside its chunk
+     */
+    public static int localIndex(final int x, final int y, final int z) {
+        return (int) ((y & Y_MASK) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    /**
+     * Rebuilds the full packed position from a chunk key & a local index
+     * @param chunkKey the chunk key, see {@link #chunkKey(int, int)}
+     * @param localIndex the local index, see {@link #localIndex(int, int, int)}
+     * @return the packed position, see {@link #pack(int, int, int)}
+     */
+    public static long packFromLocal(final long chunkKey, final int localIndex) {
+        final int x = (chunkX(chunkKey) << 4) | (localIndex & 15);
+        final int z = (chunkZ(chunkKey) << 4) | ((localIndex >> 4) & 15);
+        final int y = localIndex << (32 - 20) >> (32 - Y_BITS);
+        return pack(x, y, z);
+    }
+}
@@ -0,0 +1,308 @@
+package com.burchard36.energy.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The storage algorithm of an int energy storage, without anything tied to a server
+ *
+ * Holds the stored & max energy, the packed faces of {@link FaceConfig}, the dirty flag & a steady energy rate.
+ * Every mutation is one of the compare-and-set loops of {@link EnergyOps}, so concurrent transfers can never create or lose energy.
+ * Subclasses supply the clock energy rates run on with {@link #currentTick()}, & may listen to changes through
+ * {@link #onChanged()}, {@link #onGenerated(int)} & {@link #onBurned(int)}. The plugin's BukkitEnergy is one,
+ * a plain JVM harness only needs an anonymous subclass with a tick counter.
+ */
+public abstract class EnergyCell {
+    protected final AtomicInteger storedEnergy = new AtomicInteger(0);
+    protected final AtomicInteger maxStoredEnergy = new AtomicInteger(Integer.MAX_VALUE);
+    /* The IO mode of every face packed into one long, see FaceConfig */
+    protected final AtomicLong allowedFaces = new AtomicLong(FaceConfig.ALL_BOTH);
+    /* Set after every change, cleared when the owner flushes this storage */
+    private volatile boolean dirty = true;
+    /* Net energy per tick, applied up to the tick in rateTick by settle */
+    private volatile int energyRate = 0;
+    private final AtomicLong rateTick = new AtomicLong(0);
+    /* Higher is filled first when energy is split over several receivers, see EnergyDistribution */
+    private volatile int priority = 0;
+    /* The fields above as EnergyOps sees them, a cell is a single slot */
+    private final EnergySlots state = new EnergySlots() {
+        @Override
+        public int getStored(final int slot) {
+            return EnergyCell.this.storedEnergy.get();
+        }
+
+        @Override
+        public boolean casStored(final int slot, final int expected, final int value) {
+            return EnergyCell.this.storedEnergy.compareAndSet(expected, value);
+        }
+
+        @Override
+        public int getMax(final int slot) {
+            return EnergyCell.this.maxStoredEnergy.get();
+        }
+
+        @Override
+        public int getRate(final int slot) {
+            return EnergyCell.this.energyRate;
+        }
+
+        @Override
+        public long getRateTick(final int slot) {
+            return EnergyCell.this.rateTick.get();
+        }
+
+        @Override
+        public boolean casRateTick(final int slot, final long expected, final long value) {
+            return EnergyCell.this.rateTick.compareAndSet(expected, value);
+        }
+
+        @Override
+        public boolean isDirty(final int slot) {
+            return EnergyCell.this.dirty;
+        }
+
+        @Override
+        public void setDirty(final int slot, final boolean dirty) {
+            EnergyCell.this.dirty = dirty;
+        }
+    };
+
+    /**
+     * @return the current tick energy rates are applied up to, the game time of the world on a server
+     */
+    protected abstract long currentTick();
+
+    /**
+     * Called after every change of the stored energy, max energy, faces or rate
+     */
+    protected void onChanged() {
+    }
+
+    /**
+     * Called after energy was generated, including energy produced by a positive rate
+     * @param amount the amount generated
+     */
+    protected void onGenerated(final int amount) {
+    }
+
+    /**
+     * Called after energy was burnt, including energy consumed by a negative rate
+     * @param amount the amount burnt
+     */
+    protected void onBurned(final int amount) {
+    }
+
+    /**
+     * Replaces the whole state of this storage, without marking it dirty
+     * @param stored the stored energy
+     * @param max the max energy
+     * @param packedFaces the faces packed by {@link FaceConfig}
+     * @param energyRate the net energy per tick
+     * @param rateTick the tick the rate was last applied at, the time since gets applied on the next read
+     * @param priority the priority of this storage as a receiver
+     */
+    protected final void restore(final int stored, final int max, final long packedFaces, final int energyRate, final long rateTick,
+                                 final int priority) {
+        this.storedEnergy.set(stored);
+        this.maxStoredEnergy.set(max);
+        this.allowedFaces.set(packedFaces);
+        this.rateTick.set(rateTick);
+        this.energyRate = energyRate;
+        this.priority = priority;
+        this.dirty = false; // freshly loaded, matches what was saved
+    }
+
+    public final int getStoredEnergy() {
+        this.settle();
+        return this.storedEnergy.get();
+    }
+
+    public final int getMaxEnergyStorage() {
+        return this.maxStoredEnergy.get();
+    }
+
+    public void setMaxEnergyStored(final int amount) {
+        this.settle();
+        this.maxStoredEnergy.set(amount);
+        this.markDirty();
+    }
+
+    /**
+     * @return the faces of this storage packed by {@link FaceConfig}
+     */
+    public final long getPackedFaces() {
+        return this.allowedFaces.get();
+    }
+
+    /**
+     * @param face the index of the face
+     * @param mode the new {@link FaceConfig} mode of the face
+     */
+    public final void setFaceMode(final int face, final int mode) {
+        final long previous = this.allowedFaces.getAndUpdate((packed) -> FaceConfig.with(packed, face, mode));
+        if (FaceConfig.get(previous, face) != mode) this.markDirty();
+    }
+
+    /**
+     * Declares a steady production or consumption, instead of generating or burning energy every tick.
+     * The rate is applied from {@link #currentTick()} whenever this storage is read or changed,
+     * so any amount of ticks is caught up in one step
+     * @param energyRate the net energy per tick, positive for generators & negative for consumers, 0 to stop
+     */
+    public final void setEnergyRate(final int energyRate) {
+        this.settle(); // everything before now still runs at the old rate
+        this.rateTick.set(this.currentTick());
+        if (this.energyRate == energyRate) return;
+        this.energyRate = energyRate;
+        this.markDirty();
+    }
+
+    public final int getEnergyRate() {
+        return this.energyRate;
+    }
+
+    /**
+     * @param priority the priority of this storage when energy is split over several receivers, higher is filled first
+     */
+    public final void setPriority(final int priority) {
+        if (this.priority == priority) return;
+        this.priority = priority;
+        this.markDirty();
+    }
+
+    /**
+     * @return the priority set with {@link #setPriority(int)}, subclasses may compute it instead
+     */
+    public int getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * @return the tick the energy rate was last applied at
+     */
+    public final long getRateTick() {
+        return this.rateTick.get();
+    }
+
+    /**
+     * Applies the energy rate for every tick since it was last applied
+     */
+    private void settle() {
+        if (this.energyRate == 0) return;
+        final int change = EnergyOps.settle(this.state, 0, this.currentTick());
+        if (change == 0) return;
+        this.onChanged();
+        if (change > 0) this.onGenerated(change);
+        else this.onBurned(-change);
+    }
+
+    public final void generateEnergy(final int amount) {
+        final int generated = this.give(amount);
+        if (generated > 0) this.onGenerated(generated);
+    }
+
+    public final boolean burnEnergy(final int amount) {
+        if (amount <= 0) return true;
+        this.settle();
+        final int burnt = EnergyOps.burn(this.state, 0, amount);
+        if (burnt > 0) {
+            this.onChanged();
+            this.onBurned(burnt);
+        }
+        return burnt == amount;
+    }
+
+    /**
+     * Puts energy into this storage without any face check
+     * @param amount the max amount to put
+     * @param simulate true to only compute the amount that would fit
+     * @return the amount that fit
+     */
+    public final int receive(final int amount, final boolean simulate) {
+        if (amount <= 0) return 0;
+        if (simulate) return Math.min(amount, this.getFreeSpace());
+        return this.give(amount);
+    }
+
+    /**
+     * Takes energy out of this storage without any face check
+     * @param amount the max amount to take
+     * @param simulate true to only compute the amount that would be taken
+     * @return the amount taken
+     */
+    public final int extract(final int amount, final boolean simulate) {
+        if (amount <= 0) return 0;
+        if (simulate) return Math.min(amount, this.getStoredEnergy());
+        return this.take(amount);
+    }
+
+    public final boolean consumeDirty() {
+        return EnergyOps.consumeDirty(this.state, 0);
+    }
+
+    private void markDirty() {
+        EnergyOps.markDirty(this.state, 0);
+        this.onChanged();
+    }
+
+    /**
+     * @return how much more energy this storage may hold right now
+     */
+    public final int getFreeSpace() {
+        this.settle();
+        return EnergyOps.getFreeSpace(this.state, 0);
+    }
+
+    /**
+     * Takes energy out of this storage, {@link #extract(int, boolean)} without the simulation
+     * @param amount the max amount to take
+     * @return the amount taken
+     */
+    public final int take(final int amount) {
+        if (amount <= 0) return 0;
+        this.settle();
+        final int taken = EnergyOps.take(this.state, 0, amount);
+        if (taken > 0) this.onChanged();
+        return taken;
+    }
+
+    /**
+     * Puts energy into this storage, {@link #receive(int, boolean)} without the simulation
+     * @param amount the max amount to put
+     * @return the amount that fit
+     */
+    public final int give(final int amount) {
+        if (amount <= 0) return 0;
+        this.settle();
+        final int given = EnergyOps.give(this.state, 0, amount);
+        if (given > 0) this.onChanged();
+        return given;
+    }
+
+    /**
+     * Returns energy previously taken by {@link #take(int)}, ignoring the max storage so nothing is ever voided
+     * @param amount the amount to hand back
+     */
+    public final void giveBack(final int amount) {
+        if (amount <= 0) return;
+        this.settle();
+        EnergyOps.giveBack(this.state, 0, amount);
+        this.onChanged();
+    }
+
+    /**
+     * Moves energy between two cells, energy taken from the source that the target could not accept is handed back
+     * @param source the {@link EnergyCell} energy is taken from
+     * @param target the {@link EnergyCell} energy is given to
+     * @param amount the max amount of energy to move
+     * @return the amount of energy that was moved
+     */
+    public static int transfer(final EnergyCell source, final EnergyCell target, final int amount) {
+        if (amount <= 0 || source == target) return 0;
+        final int taken = source.take(Math.min(amount, target.getFreeSpace()));
+        if (taken == 0) return 0;
+        final int given = target.give(taken);
+        if (given < taken) source.giveBack(taken - given);
+        return given;
+    }
+}
@@ -0,0 +1,62 @@
+package com.burchard36.energy.core;
+
+/**
+ * The long array layout energy storages are saved in, shared by every storage type & free of any server API
+ *
+ * [0] format version, [1] stored energy, [2] max energy, [3] face IO modes, see {@link FaceConfig}
+ * since version 2: [4] energy rate per tick, [5] tick the rate was applied up to
+ * since version 3: [6] priority when energy is split over several receivers
+ * Energy is kept as a full long, so int & long storages share the same layout
+ */
+public final class EnergyDataFormat {
+
+    public static final int VERSION = 3;
+    public static final int LENGTH_V1 = 4;
+    public static final int LENGTH_V2 = 6;
+    public static final int LENGTH = 7;
+
+    public static final int STORED = 1;
+    public static final int MAX = 2;
+    public static final int FACES = 3;
+    public static final int RATE = 4;
+    public static final int RATE_TICK = 5;
+    public static final int PRIORITY = 6;
+
+    private EnergyDataFormat() {
+    }
+
+    /**
+     * @return the storage encoded in the current layout
+     */
+    public static long[] encode(final long stored, final long max, final long packedFaces, final int energyRate, final long rateTick,
+                                final int priority) {
+        return new long[]{VERSION, stored, max, packedFaces, energyRate, rateTick, priority};
+    }
+
+    /**
+     * Checks the version & length of encoded data before it gets read
+     * @param encoded the encoded data
+     * @return the version the data was written in, fields added after it are missing
+     */
+    public static int checkVersion(final long[] encoded) {
+        if (encoded.length > 0 && encoded[0] < 1) throw new RuntimeException("Invalid energy data format %s".formatted(encoded[0]));
+        if (encoded.length < LENGTH_V1 || encoded[0] > VERSION) {
+            throw new RuntimeException("Unsupported energy data format %s, was it written by a newer BukkitEnergy?".formatted(encoded.length == 0 ? "<empty>" : encoded[0]));
+        }
+        final int version = (int) encoded[0];
+        if (encoded.length < lengthOf(version)) throw new RuntimeException("Energy data format %s is truncated".formatted(version));
+        return version;
+    }
+
+    /**
+     * @param version a supported version
+     * @return the amount of longs data written in that version holds
+     */
+    public static int lengthOf(final int version) {
+        return switch (version) {
+            case 1 -> LENGTH_V1;
+            case 2 -> LENGTH_V2;
+            default -> LENGTH;
+        };
+    }
+}
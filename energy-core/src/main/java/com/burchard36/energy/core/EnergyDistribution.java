@@ -0,0 +1,143 @@
+package com.burchard36.energy.core;
+
+import java.util.Arrays;
+
+/**
+ * Splits an amount of energy over many receivers in one pass, instead of the first receiver polled getting everything
+ *
+ * Receivers are filled highest priority first, receivers sharing a priority get a share of what is left
+ * proportional to their demand. The arrays are sized up front & reused, solving never allocates.
+ * Receivers added highest priority first are solved in O(N), any other order is sorted once per solve.
+ */
+public final class EnergyDistribution {
+
+    private int size = 0;
+    private int[] priorities;
+    private int[] demands;
+    private int[] allocations;
+    /* Only used when receivers were not added highest priority first, priority in the upper half & index in the lower half */
+    private long[] order;
+    private boolean sorted = true;
+    private long totalDemand = 0;
+
+    /**
+     * @param capacity the amount of receivers expected, the arrays grow if more get added
+     */
+    public EnergyDistribution(final int capacity) {
+        final int length = Math.max(1, capacity);
+        this.priorities = new int[length];
+        this.demands = new int[length];
+        this.allocations = new int[length];
+        this.order = new long[length];
+    }
+
+    /**
+     * Drops every receiver, keeping the arrays
+     */
+    public void clear() {
+        this.size = 0;
+        this.sorted = true;
+        this.totalDemand = 0;
+    }
+
+    /**
+     * Adds a receiver
+     * @param priority the priority of the receiver, higher is filled first
+     * @param demand the max energy the receiver may take, negative is treated as 0
+     * @return the index of the receiver, for {@link #getAllocation(int)}
+     */
+    public int add(final int priority, final int demand) {
+        if (this.size == this.priorities.length) {
+            final int length = this.size * 2;
+            this.priorities = Arrays.copyOf(this.priorities, length);
+            this.demands = Arrays.copyOf(this.demands, length);
+            this.allocations = Arrays.copyOf(this.allocations, length);
+            this.order = new long[length];
+        }
+        if (this.size > 0 && priority > this.priorities[this.size - 1]) this.sorted = false;
+        this.priorities[this.size] = priority;
+        this.demands[this.size] = Math.max(0, demand);
+        this.totalDemand += this.demands[this.size];
+        return this.size++;
+    }
+
+    /**
+     * @return amount of receivers added since the last {@link #clear()}
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the sum of the demand of every receiver
+     */
+    public long getTotalDemand() {
+        return this.totalDemand;
+    }
+
+    /**
+     * Splits the supply over the receivers, read the result with {@link #getAllocation(int)}
+     * @param supply the energy available
+     * @return the energy allocated, never more than the supply or the total demand
+     */
+    public long solve(final long supply) {
+        final int size = this.size;
+        Arrays.fill(this.allocations, 0, size, 0);
+        if (!this.sorted) {
+            /* ~priority sorts highest first, the index keeps equal priorities in insertion order */
+            for (int i = 0; i < size; i++) this.order[i] = ((long) ~this.priorities[i] << 32) | i;
+            Arrays.sort(this.order, 0, size);
+        }
+
+        long remaining = Math.max(0, supply);
+        int start = 0;
+        while (start < size && remaining > 0) {
+            final int priority = this.priorities[this.index(start)];
+            long tierDemand = 0;
+            int end = start;
+            while (end < size && this.priorities[this.index(end)] == priority) tierDemand += this.demands[this.index(end++)];
+
+            if (tierDemand <= remaining) {
+                for (int k = start; k < end; k++) this.allocations[this.index(k)] = this.demands[this.index(k)];
+                remaining -= tierDemand;
+            } else {
+                remaining = this.share(start, end, remaining, tierDemand);
+            }
+            start = end;
+        }
+        return Math.max(0, supply) - remaining;
+    }
+
+    /**
+     * Splits less energy than a tier asks for proportionally to the demands, the rounding leftover goes in order
+     * @return the energy left, always 0
+     */
+    private long share(final int start, final int end, long remaining, final long tierDemand) {
+        final double ratio = (double) remaining / tierDemand;
+        for (int k = start; k < end && remaining > 0; k++) {
+            final int index = this.index(k);
+            final int share = (int) Math.min(Math.min((long) (this.demands[index] * ratio), this.demands[index]), remaining);
+            this.allocations[index] = share;
+            remaining -= share;
+        }
+        for (int k = start; k < end && remaining > 0; k++) {
+            final int index = this.index(k);
+            final int extra = (int) Math.min(this.demands[index] - this.allocations[index], remaining);
+            this.allocations[index] += extra;
+            remaining -= extra;
+        }
+        return remaining;
+    }
+
+    private int index(final int position) {
+        return this.sorted ? position : (int) this.order[position];
+    }
+
+    /**
+     * @param index the index returned by {@link #add(int, int)}
+     * @return the energy allocated to the receiver by the last {@link #solve(long)}
+     */
+    public int getAllocation(final int index) {
+        return this.allocations[index];
+    }
+}
@@ -0,0 +1,47 @@
+package com.burchard36.energy.core;
+
+/**
+ * Saturating arithmetic for energy amounts, large generators clamp at the max value instead of wrapping to negative
+ */
+public final class EnergyMath {
+
+    private EnergyMath() {
+    }
+
+    /**
+     * @return {@code a + b}, clamped to the int range
+     */
+    public static int saturatedAdd(final int a, final int b) {
+        final int sum = a + b;
+        /* overflow only when both have the same sign and the sum does not */
+        if (((a ^ sum) & (b ^ sum)) < 0) return a < 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        return sum;
+    }
+
+    /**
+     * @return {@code a + b}, clamped to the long range
+     */
+    public static long saturatedAdd(final long a, final long b) {
+        final long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return sum;
+    }
+
+    /**
+     * @return {@code a - b}, clamped to the long range
+     */
+    public static long saturatedSubtract(final long a, final long b) {
+        final long difference = a - b;
+        if (((a ^ b) & (a ^ difference)) < 0) return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        return difference;
+    }
+
+    /**
+     * @return the value clamped to the int range, used where a long amount is handed to the int API
+     */
+    public static int clampToInt(final long value) {
+        if (value > Integer.MAX_VALUE) return Integer.MAX_VALUE;
+        if (value < Integer.MIN_VALUE) return Integer.MIN_VALUE;
+        return (int) value;
+    }
+}
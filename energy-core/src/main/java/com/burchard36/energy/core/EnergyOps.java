@@ -0,0 +1,186 @@
+package com.burchard36.energy.core;
+
+/**
+ * The compare-and-set arithmetic of every energy storage, whatever holds its state
+ *
+ * Works on one slot of an {@link EnergySlots} or {@link LongEnergySlots}, so {@link EnergyCell}, slab pages & long storages
+ * all move energy the exact same way & concurrent transfers can never create or lose energy.
+ * Every method marks the slot dirty when it changed something, telling observers & metrics is up to the caller.
+ * Energy rates only move through {@link #settle(EnergySlots, int, long)}, call it before reading or changing the stored energy
+ */
+public final class EnergyOps {
+
+    private EnergyOps() {
+    }
+
+    /**
+     * Applies the energy rate of a slot for every tick since it was last applied
+     * @param now the current tick, the game time of the world on a server
+     * @return the change of the stored energy, positive when the rate generated energy & negative when it burnt some
+     */
+    public static int settle(final EnergySlots state, final int slot, final long now) {
+        final int energyRate = state.getRate(slot);
+        if (energyRate == 0) return 0;
+        final long since = state.getRateTick(slot);
+        /* whoever moves rateTick forward applies the ticks in between, so no tick is applied twice */
+        if (now <= since || !state.casRateTick(slot, since, now)) return 0;
+        final long delta = energyRate * Math.min(now - since, Integer.MAX_VALUE);
+
+        int current;
+        int newEnergy;
+        do {
+            current = state.getStored(slot);
+            newEnergy = (int) Math.max(0, Math.min(state.getMax(slot), current + delta));
+        } while (!state.casStored(slot, current, newEnergy));
+        if (newEnergy != current) markDirty(state, slot);
+        return newEnergy - current;
+    }
+
+    /**
+     * @param amount the max amount to take
+     * @return the amount taken
+     */
+    public static int take(final EnergySlots state, final int slot, final int amount) {
+        if (amount <= 0) return 0;
+        int current;
+        int taken;
+        do {
+            current = state.getStored(slot);
+            taken = Math.min(amount, current);
+            if (taken <= 0) return 0; // Container is empty
+        } while (!state.casStored(slot, current, current - taken));
+        markDirty(state, slot);
+        return taken;
+    }
+
+    /**
+     * @param amount the max amount to put
+     * @return the amount that fit
+     */
+    public static int give(final EnergySlots state, final int slot, final int amount) {
+        if (amount <= 0) return 0;
+        int current;
+        int given;
+        do {
+            current = state.getStored(slot);
+            given = Math.min(amount, state.getMax(slot) - current);
+            if (given <= 0) return 0; // Container is full
+        } while (!state.casStored(slot, current, current + given));
+        markDirty(state, slot);
+        return given;
+    }
+
+    /**
+     * Returns energy previously taken by {@link #take(EnergySlots, int, int)}, ignoring the max storage so nothing is ever voided
+     * @param amount the amount to hand back
+     */
+    public static void giveBack(final EnergySlots state, final int slot, final int amount) {
+        if (amount <= 0) return;
+        int current;
+        do {
+            current = state.getStored(slot);
+        } while (!state.casStored(slot, current, EnergyMath.saturatedAdd(current, amount)));
+        markDirty(state, slot);
+    }
+
+    /**
+     * Burns energy, when there is not enough power whatever was left still gets burnt
+     * @param amount the amount to burn
+     * @return the amount actually burnt, less than asked when there was not enough
+     */
+    public static int burn(final EnergySlots state, final int slot, final int amount) {
+        if (amount <= 0) return 0;
+        int current;
+        int newEnergy;
+        do {
+            current = state.getStored(slot);
+            newEnergy = Math.max(0, current - amount);
+        } while (!state.casStored(slot, current, newEnergy));
+        if (newEnergy != current) markDirty(state, slot);
+        return current - newEnergy;
+    }
+
+    /**
+     * @return how much more energy the slot may hold right now
+     */
+    public static int getFreeSpace(final EnergySlots state, final int slot) {
+        return Math.max(0, state.getMax(slot) - state.getStored(slot));
+    }
+
+    public static void markDirty(final EnergySlots state, final int slot) {
+        if (!state.isDirty(slot)) state.setDirty(slot, true); // skip the volatile write when already dirty
+    }
+
+    /**
+     * Cleared before the caller serializes, so a change racing with the save marks the slot dirty again
+     * @return true if the slot changed since the last call
+     */
+    public static boolean consumeDirty(final EnergySlots state, final int slot) {
+        if (!state.isDirty(slot)) return false;
+        state.setDirty(slot, false);
+        return true;
+    }
+
+    /* The same loops on long storages, every addition saturates at Long.MAX_VALUE instead of wrapping */
+
+    public static long take(final LongEnergySlots state, final int slot, final long amount) {
+        if (amount <= 0) return 0;
+        long current;
+        long taken;
+        do {
+            current = state.getStored(slot);
+            taken = Math.min(amount, current);
+            if (taken <= 0) return 0;
+        } while (!state.casStored(slot, current, current - taken));
+        markDirty(state, slot);
+        return taken;
+    }
+
+    public static long give(final LongEnergySlots state, final int slot, final long amount) {
+        if (amount <= 0) return 0;
+        long current;
+        long given;
+        do {
+            current = state.getStored(slot);
+            given = Math.min(amount, EnergyMath.saturatedSubtract(state.getMax(slot), current));
+            if (given <= 0) return 0;
+        } while (!state.casStored(slot, current, current + given)); // given never passes the max, cannot overflow
+        markDirty(state, slot);
+        return given;
+    }
+
+    public static void giveBack(final LongEnergySlots state, final int slot, final long amount) {
+        if (amount <= 0) return;
+        long current;
+        do {
+            current = state.getStored(slot);
+        } while (!state.casStored(slot, current, EnergyMath.saturatedAdd(current, amount)));
+        markDirty(state, slot);
+    }
+
+    public static long burn(final LongEnergySlots state, final int slot, final long amount) {
+        if (amount <= 0) return 0;
+        long current;
+        long newEnergy;
+        do {
+            current = state.getStored(slot);
+            newEnergy = Math.max(0, current - amount);
+        } while (!state.casStored(slot, current, newEnergy));
+        if (newEnergy != current) markDirty(state, slot);
+        return current - newEnergy;
+    }
+
+    public static long getFreeSpace(final LongEnergySlots state, final int slot) {
+        return Math.max(0, EnergyMath.saturatedSubtract(state.getMax(slot), state.getStored(slot)));
+    }
+
+    public static void markDirty(final LongEnergySlots state, final int slot) {
+        if (!state.isDirty(slot)) state.setDirty(slot, true);
+    }
+
+    public static boolean consumeDirty(final LongEnergySlots state, final int slot) {
+        if (!state.isDirty(slot)) return false;
+        state.setDirty(slot, false);
+        return true;
+    }
+}
@@ -0,0 +1,29 @@
+package com.burchard36.energy.core;
+
+/**
+ * The state of int energy storages as {@link EnergyOps} sees it, indexed by slot so one accessor may serve a whole page of storages
+ *
+ * Every read & write has volatile semantics, atomics or array elements behind a VarHandle both fit.
+ * A storage holding its own state ignores the slot
+ */
+public interface EnergySlots {
+
+    int getStored(final int slot);
+
+    boolean casStored(final int slot, final int expected, final int value);
+
+    int getMax(final int slot);
+
+    /**
+     * @return the net energy per tick of the slot, applied up to {@link #getRateTick(int)}
+     */
+    int getRate(final int slot);
+
+    long getRateTick(final int slot);
+
+    boolean casRateTick(final int slot, final long expected, final long value);
+
+    boolean isDirty(final int slot);
+
+    void setDirty(final int slot, final boolean dirty);
+}
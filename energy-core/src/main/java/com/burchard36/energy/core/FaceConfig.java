@@ -0,0 +1,76 @@
+package com.burchard36.energy.core;
+
+/**
+ * Static helpers for packing the IO mode of every face of a block into a single long, 3 bits per face
+ *
+ * Faces are plain indexes, the plugin uses the ordinal of the Bukkit BlockFace so 19 faces * 3 bits = 57 bits.
+ * The modes have the same order as the IOType enum of the plugin, so packed values are the same on both sides
+ */
+public final class FaceConfig {
+
+    public static final int BITS_PER_FACE = 3;
+    public static final int FACE_COUNT = 19;
+
+    public static final int INPUT = 0;
+    public static final int OUTPUT = 1;
+    public static final int DISABLED = 2;
+    public static final int BOTH = 3;
+    public static final int SELF = 4;
+
+    private static final long FACE_MASK = (1L << BITS_PER_FACE) - 1;
+    /* One bit per mode, set when that mode lets energy in / out */
+    private static final int RECEIVE_MODES = (1 << INPUT) | (1 << BOTH);
+    private static final int EXTRACT_MODES = (1 << OUTPUT) | (1 << BOTH);
+
+    /**
+     * Every face set to {@link #BOTH}, the default of a new storage
+     */
+    public static final long ALL_BOTH = fill(BOTH);
+
+    private FaceConfig() {
+    }
+
+    /**
+     * @param mode the mode every face should have
+     * @return packed faces with every face set to the given mode
+     */
+    public static long fill(final int mode) {
+        long packed = 0;
+        for (int face = 0; face < FACE_COUNT; face++) packed = with(packed, face, mode);
+        return packed;
+    }
+
+    /**
+     * @param packed the packed faces
+     * @param face the index of the face to read
+     * @return the mode of the face
+     */
+    public static int get(final long packed, final int face) {
+        return (int) ((packed >>> (face * BITS_PER_FACE)) & FACE_MASK);
+    }
+
+    /**
+     * @return true if the face is {@link #INPUT} or {@link #BOTH}
+     */
+    public static boolean canReceive(final long packed, final int face) {
+        return ((RECEIVE_MODES >>> get(packed, face)) & 1) != 0;
+    }
+
+    /**
+     * @return true if the face is {@link #OUTPUT} or {@link #BOTH}
+     */
+    public static boolean canExtract(final long packed, final int face) {
+        return ((EXTRACT_MODES >>> get(packed, face)) & 1) != 0;
+    }
+
+    /**
+     * @param packed the packed faces
+     * @param face the index of the face to change
+     * @param mode the new mode of the face
+     * @return a copy of the packed faces with the given face changed
+     */
+    public static long with(final long packed, final int face, final int mode) {
+        final int shift = face * BITS_PER_FACE;
+        return (packed & ~(FACE_MASK << shift)) | ((long) mode << shift);
+    }
+}
@@ -0,0 +1,17 @@
+package com.burchard36.energy.core;
+
+/**
+ * The long counterpart of {@link EnergySlots}, for storages holding up to {@link Long#MAX_VALUE} energy without energy rates
+ */
+public interface LongEnergySlots {
+
+    long getStored(final int slot);
+
+    boolean casStored(final int slot, final long expected, final long value);
+
+    long getMax(final int slot);
+
+    boolean isDirty(final int slot);
+
+    void setDirty(final int slot, final boolean dirty);
+}
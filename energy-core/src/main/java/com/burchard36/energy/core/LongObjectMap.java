@@ -0,0 +1,216 @@
+package com.burchard36.energy.core;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * A small open-addressing (linear probing) hash map from primitive {@code long} keys to objects.
+ *
+ * Used for block & chunk tables keyed by {@link BlockKey}, so lookups never box a key or allocate an entry object.
+ * Null values are not allowed, an empty slot is simply a slot with a null value.
+ * This class is not thread safe, callers are expected to guard it themselves.
+ * @param <V> the value type
+ */
+public final class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+    private int mask;
+    private int resizeAt;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongObjectMap(final int expectedSize) {
+        this.allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Gets the value mapped to a key
+     * @param key the key to look up
+     * @return the value, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        int slot = mix(key) & this.mask;
+        Object value;
+        while ((value = values[slot]) != null) {
+            if (keys[slot] == key) return (V) value;
+            slot = (slot + 1) & this.mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(final long key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Maps a key to a value, replacing any existing mapping
+     * @param key the key
+     * @param value the non-null value
+     * @return the previous value, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        if (value == null) throw new NullPointerException("LongObjectMap does not support null values");
+        int slot = mix(key) & this.mask;
+        Object existing;
+        while ((existing = this.values[slot]) != null) {
+            if (this.keys[slot] == key) {
+                this.values[slot] = value;
+                return (V) existing;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.insertAt(slot, key, value);
+        return null;
+    }
+
+    /**
+     * Maps a key to a value only if no value is present yet
+     * @param key the key
+     * @param value the non-null value
+     * @return the value already present, or null if {@code value} was inserted
+     */
+    public V putIfAbsent(final long key, final V value) {
+        final V existing = this.get(key);
+        if (existing != null) return existing;
+        this.put(key, value);
+        return null;
+    }
+
+    /**
+     * Gets the value mapped to a key, computing and inserting it if absent
+     * @param key the key
+     * @param mappingFunction creates the value, must not return null
+     * @return the present or newly computed value
+     */
+    public V computeIfAbsent(final long key, final LongFunction<V> mappingFunction) {
+        V value = this.get(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            this.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Removes the mapping of a key
+     * @param key the key to remove
+     * @return the removed value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        int slot = mix(key) & this.mask;
+        Object existing;
+        while ((existing = this.values[slot]) != null) {
+            if (this.keys[slot] == key) {
+                this.shiftBack(slot);
+                this.size--;
+                return (V) existing;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     * Visits every entry of this map, the map must not be modified while iterating
+     * @param consumer the visitor
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(final EntryConsumer<? super V> consumer) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        for (int i = 0; i < values.length; i++) {
+            final Object value = values[i];
+            if (value != null) consumer.accept(keys[i], (V) value);
+        }
+    }
+
+    private void insertAt(final int slot, final long key, final V value) {
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.size >= this.resizeAt) this.rehash(this.values.length << 1);
+    }
+
+    /* Backward shift deletion, keeps probe chains intact without tombstones */
+    private void shiftBack(int slot) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        int next = (slot + 1) & this.mask;
+        while (values[next] != null) {
+            final int ideal = mix(keys[next]) & this.mask;
+            /* move the entry back if its ideal slot is not within (slot, next] cyclically */
+            if (((next - ideal) & this.mask) >= ((next - slot) & this.mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        values[slot] = null;
+    }
+
+    private void rehash(final int newCapacity) {
+        final long[] oldKeys = this.keys;
+        final Object[] oldValues = this.values;
+        this.allocate(newCapacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            final Object value = oldValues[i];
+            if (value == null) continue;
+            int slot = mix(oldKeys[i]) & this.mask;
+            while (this.values[slot] != null) slot = (slot + 1) & this.mask;
+            this.keys[slot] = oldKeys[i];
+            this.values[slot] = value;
+        }
+    }
+
+    private void allocate(final int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int tableSizeFor(final int expectedSize) {
+        final int needed = (int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    /* package-private so the tests can pick keys colliding on purpose */
+    static int mix(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Primitive entry visitor, avoids boxing the key
+     * @param <V> the value type
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(final long key, final V value);
+    }
+}
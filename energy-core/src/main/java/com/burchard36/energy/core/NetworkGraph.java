@@ -0,0 +1,374 @@
+package com.burchard36.energy.core;
+
+import java.util.Arrays;
+
+/**
+ * The topology of one energy network as primitive arrays, storages & conduits linked through 6 faces
+ *
+ * Nodes are plain indexes, faces are 0-5 in the order north, east, south, west, up, down.
+ * A storage declares which faces energy may leave & enter it through, a conduit the throughput of every face.
+ * Conduits are never nodes of a transfer themselves, they are grouped into hubs by {@link #findHubs()}.
+ * The plugin's EnergyNetwork fills one of these from its blocks when it compiles, a plain JVM harness can fill one by hand.
+ */
+public final class NetworkGraph {
+
+    public static final int FACES = 6;
+
+    private final int size;
+    /* node * FACES + face, -1 when nothing is linked on that face */
+    private final int[] neighbours;
+    private final boolean[] conduits;
+    /* node * FACES + face, only set for conduits */
+    private final int[] throughputs;
+    /* one bit per face, only set for storages */
+    private final int[] extractMasks;
+    private final int[] receiveMasks;
+
+    /**
+     * @param size the amount of nodes, every node starts as a storage without any link or open face
+     */
+    public NetworkGraph(final int size) {
+        this.size = size;
+        this.neighbours = new int[size * FACES];
+        Arrays.fill(this.neighbours, -1);
+        this.conduits = new boolean[size];
+        this.throughputs = new int[size * FACES];
+        this.extractMasks = new int[size];
+        this.receiveMasks = new int[size];
+    }
+
+    /**
+     * @return the amount of nodes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param face a face index
+     * @return the index of the opposite face
+     */
+    public static int opposite(final int face) {
+        return face < 4 ? (face + 2) & 3 : face ^ 1;
+    }
+
+    /**
+     * Links one face of a node to another node, the way back has to be linked separately
+     * @param neighbour the linked node, -1 to unlink
+     */
+    public void setNeighbour(final int node, final int face, final int neighbour) {
+        this.neighbours[node * FACES + face] = neighbour;
+    }
+
+    /**
+     * @return the node linked on a face, -1 if none
+     */
+    public int getNeighbour(final int node, final int face) {
+        return this.neighbours[node * FACES + face];
+    }
+
+    /**
+     * Opens a face of a storage
+     * @param extract true if energy may leave through the face
+     * @param receive true if energy may enter through the face
+     */
+    public void setStorageFace(final int node, final int face, final boolean extract, final boolean receive) {
+        if (extract) this.extractMasks[node] |= 1 << face;
+        if (receive) this.receiveMasks[node] |= 1 << face;
+    }
+
+    /**
+     * Turns a node into a conduit & sets the throughput of one of its faces
+     * @param throughput the max energy per tick through the face, 0 or less closes it
+     */
+    public void setConduitFace(final int node, final int face, final int throughput) {
+        this.conduits[node] = true;
+        this.throughputs[node * FACES + face] = throughput;
+    }
+
+    public boolean isConduit(final int node) {
+        return this.conduits[node];
+    }
+
+    private boolean canExtract(final int node, final int face) {
+        return (this.extractMasks[node] & (1 << face)) != 0;
+    }
+
+    private boolean canReceive(final int node, final int face) {
+        return (this.receiveMasks[node] & (1 << face)) != 0;
+    }
+
+    private int throughput(final int node, final int face) {
+        return this.throughputs[node * FACES + face];
+    }
+
+    /**
+     * Finds the faces every storage can push energy through straight into an adjacent storage
+     * @return one bit per face for every node, always 0 for conduits
+     */
+    public int[] findDirectOutputs() {
+        final int[] outputMasks = new int[this.size];
+        for (int node = 0; node < this.size; node++) {
+            if (this.conduits[node]) continue;
+            for (int face = 0; face < FACES; face++) {
+                final int neighbour = this.getNeighbour(node, face);
+                if (neighbour < 0 || this.conduits[neighbour]) continue;
+                if (!this.canExtract(node, face) || !this.canReceive(neighbour, opposite(face))) continue;
+                outputMasks[node] |= 1 << face;
+            }
+        }
+        return outputMasks;
+    }
+
+    /**
+     * Groups every conduit linked to another through two open faces into a hub, energy entering a hub may leave it
+     * through any storage face touching it. A hub moves at most its capacity each tick, the throughput of its narrowest
+     * face carrying energy, so no face of it is ever crossed by more than its throughput whatever way the energy takes.
+     * Branches of a hub leading to no storage are dead ends nothing flows into, their faces never limit it
+     * @return the hubs & the storages touching them
+     */
+    public Hubs findHubs() {
+        final int size = this.size;
+        final Hubs hubs = new Hubs(size);
+        /* conduits of the current hub, each is queued once */
+        final int[] queue = new int[size];
+        /* the last port of every storage, reused when the storage touches the same hub through another face */
+        final int[] nodePorts = new int[size];
+        Arrays.fill(nodePorts, -1);
+        /* live conduit links of every conduit, -1 once it is pruned as a dead end */
+        final int[] links = new int[size];
+        final boolean[] touchesPort = new boolean[size];
+        final int[] leaves = new int[size];
+
+        for (int first = 0; first < size; first++) {
+            if (!this.conduits[first] || hubs.hubOf[first] >= 0) continue;
+            final int hub = hubs.addHub();
+            int head = 0, tail = 0;
+            hubs.hubOf[first] = hub;
+            queue[tail++] = first;
+            while (head < tail) {
+                final int conduit = queue[head++];
+                for (int face = 0; face < FACES; face++) {
+                    final int next = this.getNeighbour(conduit, face);
+                    if (next < 0 || this.throughput(conduit, face) <= 0) continue;
+                    final int opposite = opposite(face);
+
+                    if (this.conduits[next]) {
+                        if (this.throughput(next, opposite) <= 0) continue;
+                        links[conduit]++;
+                        if (hubs.hubOf[next] >= 0) continue;
+                        hubs.hubOf[next] = hub;
+                        queue[tail++] = next;
+                        continue;
+                    }
+
+                    final boolean input = this.canExtract(next, opposite);
+                    final boolean output = this.canReceive(next, opposite);
+                    if (!input && !output) continue;
+                    touchesPort[conduit] = true;
+                    int port = nodePorts[next];
+                    if (port < 0 || hubs.portHubs[port] != hub) {
+                        port = hubs.addPort(next, hub);
+                        nodePorts[next] = port;
+                    }
+                    if (input && hubs.inputFaces[port] < 0) hubs.inputFaces[port] = opposite;
+                    if (output && hubs.outputFaces[port] < 0) hubs.outputFaces[port] = opposite;
+                }
+            }
+
+            /* peels the hub from its loose ends inward, until every conduit left touches a storage or sits between two */
+            int leafCount = 0;
+            for (int i = 0; i < tail; i++) {
+                if (!touchesPort[queue[i]] && links[queue[i]] <= 1) leaves[leafCount++] = queue[i];
+            }
+            while (leafCount > 0) {
+                final int leaf = leaves[--leafCount];
+                links[leaf] = -1;
+                for (int face = 0; face < FACES; face++) {
+                    final int next = this.linkedConduit(leaf, face);
+                    if (next < 0 || links[next] < 0) continue;
+                    if (--links[next] == 1 && !touchesPort[next]) leaves[leafCount++] = next;
+                }
+            }
+
+            long capacity = Long.MAX_VALUE;
+            for (int i = 0; i < tail; i++) {
+                final int conduit = queue[i];
+                if (links[conduit] < 0) continue;
+                for (int face = 0; face < FACES; face++) {
+                    final int next = this.getNeighbour(conduit, face);
+                    final int exit = this.throughput(conduit, face);
+                    if (next < 0 || exit <= 0) continue;
+                    final int opposite = opposite(face);
+                    if (this.conduits[next]) {
+                        final int entry = this.throughput(next, opposite);
+                        if (entry > 0 && links[next] >= 0) capacity = Math.min(capacity, Math.min(exit, entry));
+                    } else if (this.canExtract(next, opposite) || this.canReceive(next, opposite)) {
+                        capacity = Math.min(capacity, exit);
+                    }
+                }
+            }
+            hubs.capacities[hub] = capacity == Long.MAX_VALUE ? 0 : (int) capacity;
+        }
+        hubs.portStarts[hubs.count] = hubs.portCount;
+        return hubs;
+    }
+
+    /**
+     * @return the conduit linked to {@code conduit} through two open faces on {@code face}, -1 if there is none
+     */
+    private int linkedConduit(final int conduit, final int face) {
+        final int next = this.getNeighbour(conduit, face);
+        if (next < 0 || !this.conduits[next] || this.throughput(conduit, face) <= 0) return -1;
+        return this.throughput(next, opposite(face)) > 0 ? next : -1;
+    }
+
+    /**
+     * Orders the nodes breadth first starting at the nodes nothing can push into (generators),
+     * so energy travels down a line within one pass
+     * @param inputCounts the amount of links pushing into every node
+     * @return every node, in order
+     */
+    public int[] breadthFirstOrder(final int[] inputCounts) {
+        final int size = this.size;
+        final int[] order = new int[size];
+        final boolean[] queued = new boolean[size];
+        /* every node is queued once, so the queue is simply the part of order not visited yet */
+        int ordered = 0;
+        int tail = 0;
+
+        /* generators first, then whatever is left (loops without a pure generator) */
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < size; i++) {
+                if (queued[i] || (pass == 0 && inputCounts[i] != 0)) continue;
+                queued[i] = true;
+                order[tail++] = i;
+                while (ordered < tail) {
+                    final int node = order[ordered++];
+                    for (int face = 0; face < FACES; face++) {
+                        final int neighbour = this.getNeighbour(node, face);
+                        if (neighbour < 0 || queued[neighbour]) continue;
+                        queued[neighbour] = true;
+                        order[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * The hubs found by {@link #findHubs()}, & their ports: one per storage touching a hub, through one or more faces
+     */
+    public static final class Hubs {
+        private int count = 0;
+        private final int[] hubOf;
+        private int[] capacities = new int[4];
+        /* ports of hub h are portStarts[h] until portStarts[h + 1] */
+        private int[] portStarts = new int[5];
+        private int portCount = 0;
+        private int[] portNodes = new int[8];
+        private int[] portHubs = new int[8];
+        private int[] inputFaces = new int[8];
+        private int[] outputFaces = new int[8];
+
+        private Hubs(final int size) {
+            this.hubOf = new int[size];
+            Arrays.fill(this.hubOf, -1);
+        }
+
+        private int addHub() {
+            if (this.count + 1 == this.portStarts.length) {
+                this.capacities = Arrays.copyOf(this.capacities, this.count * 2);
+                this.portStarts = Arrays.copyOf(this.portStarts, this.count * 2 + 1);
+            }
+            this.portStarts[this.count] = this.portCount;
+            return this.count++;
+        }
+
+        private int addPort(final int node, final int hub) {
+            if (this.portCount == this.portNodes.length) {
+                final int length = this.portCount * 2;
+                this.portNodes = Arrays.copyOf(this.portNodes, length);
+                this.portHubs = Arrays.copyOf(this.portHubs, length);
+                this.inputFaces = Arrays.copyOf(this.inputFaces, length);
+                this.outputFaces = Arrays.copyOf(this.outputFaces, length);
+            }
+            this.portNodes[this.portCount] = node;
+            this.portHubs[this.portCount] = hub;
+            this.inputFaces[this.portCount] = -1;
+            this.outputFaces[this.portCount] = -1;
+            return this.portCount++;
+        }
+
+        /**
+         * @return the amount of hubs
+         */
+        public int getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return the hub of a conduit, -1 for a storage
+         */
+        public int getHub(final int node) {
+            return this.hubOf[node];
+        }
+
+        /**
+         * @return the max energy the hub may move each tick, 0 if no storage touches it
+         */
+        public int getCapacity(final int hub) {
+            return this.capacities[hub];
+        }
+
+        /**
+         * @return the first port of the hub
+         */
+        public int getPortStart(final int hub) {
+            return this.portStarts[hub];
+        }
+
+        /**
+         * @return the port after the last one of the hub
+         */
+        public int getPortEnd(final int hub) {
+            return this.portStarts[hub + 1];
+        }
+
+        /**
+         * @return the amount of ports of every hub
+         */
+        public int getPortCount() {
+            return this.portCount;
+        }
+
+        /**
+         * @return the storage of the port
+         */
+        public int getPortNode(final int port) {
+            return this.portNodes[port];
+        }
+
+        /**
+         * @return the hub of the port
+         */
+        public int getPortHub(final int port) {
+            return this.portHubs[port];
+        }
+
+        /**
+         * @return the face of the storage energy leaves it through into the hub, -1 if it never does
+         */
+        public int getInputFace(final int port) {
+            return this.inputFaces[port];
+        }
+
+        /**
+         * @return the face of the storage energy enters it through from the hub, -1 if it never does
+         */
+        public int getOutputFace(final int port) {
+            return this.outputFaces[port];
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.burchard36.energy.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BlockKeyTest {
+
+    /* the corners of what 26 bits of X & Z and 12 bits of Y hold, around 0 & at both ends */
+    private static final int[] XZ = {0, 1, -1, 15, 16, -16, -17, 29_999_999, -30_000_000, (1 << 25) - 1, -(1 << 25)};
+    private static final int[] Y = {0, 1, -1, -64, 319, 2047, -2048};
+
+    @Test
+    void packRoundTripsNegativeCoordinates() {
+        for (final int x : XZ) {
+            for (final int y : Y) {
+                for (final int z : XZ) {
+                    final long packed = BlockKey.pack(x, y, z);
+                    final String position = x + " " + y + " " + z;
+                    assertEquals(x, BlockKey.unpackX(packed), position);
+                    assertEquals(y, BlockKey.unpackY(packed), position);
+                    assertEquals(z, BlockKey.unpackZ(packed), position);
+                }
+            }
+        }
+    }
+
+    @Test
+    void neighboursNeverShareAKey() {
+        final long origin = BlockKey.pack(-1, -1, -1);
+        assertTrue(origin != BlockKey.pack(0, -1, -1));
+        assertTrue(origin != BlockKey.pack(-1, 0, -1));
+        assertTrue(origin != BlockKey.pack(-1, -1, 0));
+        assertTrue(origin != BlockKey.pack(-1, -2, -1));
+    }
+
+    @Test
+    void chunkKeyRoundTripsNegativeChunks() {
+        for (final int x : XZ) {
+            for (final int z : XZ) {
+                final long chunkKey = BlockKey.chunkKeyOfBlock(x, z);
+                assertEquals(x >> 4, BlockKey.chunkX(chunkKey));
+                assertEquals(z >> 4, BlockKey.chunkZ(chunkKey));
+            }
+        }
+    }
+
+    @Test
+    void packFromLocalMatchesPack() {
+        for (final int x : XZ) {
+            for (final int y : Y) {
+                for (final int z : XZ) {
+                    final long chunkKey = BlockKey.chunkKeyOfBlock(x, z);
+                    final int localIndex = BlockKey.localIndex(x, y, z);
+                    assertEquals(BlockKey.pack(x, y, z), BlockKey.packFromLocal(chunkKey, localIndex), x + " " + y + " " + z);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.burchard36.energy.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers one storage from many threads at once, energy may only enter or leave through receive & extract.
+ * Runs on an {@link EnergyCell}, on slots of a page & on a long storage, which all share the loops of {@link EnergyOps}
+ */
+class EnergyCellConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 200_000;
+
+    private static EnergyCell cell(final int max, final int stored) {
+        final EnergyCell cell = new EnergyCell() {
+            @Override
+            protected long currentTick() {
+                return 0;
+            }
+        };
+        cell.setMaxEnergyStored(max);
+        cell.generateEnergy(stored);
+        return cell;
+    }
+
+    @Test
+    void mixedOperationsConserveEnergy() throws Exception {
+        this.hammer(new CellStorage(cell(1_000_000, 500_000)), new CellStorage(cell(1_000_000, 500_000)), 1_000_000, 500_000, 100);
+    }
+
+    /* a small cell is full or empty most of the time, where every operation only moves part of what it asked for */
+    @Test
+    void mixedOperationsConserveEnergyNearTheBounds() throws Exception {
+        this.hammer(new CellStorage(cell(64, 32)), new CellStorage(cell(64, 32)), 64, 32, 50);
+    }
+
+    /* two neighbouring slots of the same page, the way a slab keeps its storages */
+    @Test
+    void mixedOperationsConserveEnergyInSlots() throws Exception {
+        final PageSlots page = new PageSlots(4);
+        this.hammer(new SlotStorage(page, page.claim(1, 64, 32)), new SlotStorage(page, page.claim(2, 64, 32)), 64, 32, 50);
+    }
+
+    /* near the top of the long range, where an addition that wrapped would show up as negative energy */
+    @Test
+    void mixedOperationsConserveEnergyInLongStorages() throws Exception {
+        final long max = Long.MAX_VALUE - 10;
+        final LongStorage storage = new LongStorage(max, max - 3_000);
+        final LongStorage other = new LongStorage(max, max - 3_000);
+        this.hammer(storage, other, max, max - 3_000, 50);
+    }
+
+    /* every thread reads a slot with a pending energy rate at once, the ticks in between are applied exactly once */
+    @Test
+    void energyRateIsAppliedOnce() throws Exception {
+        final PageSlots page = new PageSlots(1);
+        final int slot = page.claim(0, 1_000_000, 0);
+        page.rates.set(slot, 3);
+        final LongAdder settled = new LongAdder();
+        this.race(() -> settled.add(EnergyOps.settle(page, slot, 1_000)));
+        assertEquals(3_000, page.getStored(slot));
+        assertEquals(3_000, settled.sum());
+        assertEquals(0, EnergyOps.settle(page, slot, 1_000));
+    }
+
+    /**
+     * Runs receive, extract & transfers both ways between the storage & a second one from every thread,
+     * then checks both storages hold exactly what went in minus what came out
+     */
+    private void hammer(final Storage storage, final Storage other, final long max, final long stored, final int maxAmount) throws Exception {
+        final LongAdder received = new LongAdder();
+        final LongAdder extracted = new LongAdder();
+        this.race(() -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < OPERATIONS; i++) {
+                final int amount = random.nextInt(1, maxAmount + 1);
+                switch (random.nextInt(4)) {
+                    case 0 -> received.add(storage.receive(amount));
+                    case 1 -> extracted.add(storage.extract(amount));
+                    case 2 -> storage.transferTo(other, amount);
+                    default -> other.transferTo(storage, amount);
+                }
+            }
+        });
+
+        /* both start at the same amount, so the sum of their changes is checked instead of a sum that may overflow */
+        final long change = (storage.stored() - stored) + (other.stored() - stored);
+        assertEquals(received.sum() - extracted.sum(), change);
+        assertTrue(storage.stored() >= 0 && storage.stored() <= max, "storage out of bounds: " + storage.stored());
+        assertTrue(other.stored() >= 0 && other.stored() <= max, "other out of bounds: " + other.stored());
+    }
+
+    /**
+     * Runs the task on every thread, all starting at once
+     */
+    private void race(final Runnable task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            final List<Future<?>> workers = new ArrayList<>(THREADS);
+            for (int thread = 0; thread < THREADS; thread++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (final Future<?> worker : workers) worker.get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One of the storages under test, transfers take what fits & hand the rest back like the plugin's EnergyTransfer
+     */
+    private interface Storage {
+
+        long receive(final int amount);
+
+        long extract(final int amount);
+
+        void transferTo(final Storage target, final int amount);
+
+        long stored();
+    }
+
+    private record CellStorage(EnergyCell cell) implements Storage {
+
+        @Override
+        public long receive(final int amount) {
+            return this.cell.receive(amount, false);
+        }
+
+        @Override
+        public long extract(final int amount) {
+            return this.cell.extract(amount, false);
+        }
+
+        @Override
+        public void transferTo(final Storage target, final int amount) {
+            EnergyCell.transfer(this.cell, ((CellStorage) target).cell, amount);
+        }
+
+        @Override
+        public long stored() {
+            return this.cell.getStoredEnergy();
+        }
+    }
+
+    private record SlotStorage(PageSlots page, int slot) implements Storage {
+
+        @Override
+        public long receive(final int amount) {
+            return EnergyOps.give(this.page, this.slot, amount);
+        }
+
+        @Override
+        public long extract(final int amount) {
+            return EnergyOps.take(this.page, this.slot, amount);
+        }
+
+        @Override
+        public void transferTo(final Storage target, final int amount) {
+            final SlotStorage slotTarget = (SlotStorage) target;
+            final int taken = EnergyOps.take(this.page, this.slot, Math.min(amount, EnergyOps.getFreeSpace(slotTarget.page, slotTarget.slot)));
+            final int given = EnergyOps.give(slotTarget.page, slotTarget.slot, taken);
+            if (given < taken) EnergyOps.giveBack(this.page, this.slot, taken - given);
+        }
+
+        @Override
+        public long stored() {
+            return this.page.getStored(this.slot);
+        }
+    }
+
+    /**
+     * A single long storage, its own slot
+     */
+    private static final class LongStorage implements Storage, LongEnergySlots {
+        private final AtomicLong stored;
+        private final long max;
+        private volatile boolean dirty = false;
+
+        private LongStorage(final long max, final long stored) {
+            this.max = max;
+            this.stored = new AtomicLong(stored);
+        }
+
+        @Override
+        public long receive(final int amount) {
+            return EnergyOps.give(this, 0, amount);
+        }
+
+        @Override
+        public long extract(final int amount) {
+            return EnergyOps.take(this, 0, amount);
+        }
+
+        @Override
+        public void transferTo(final Storage target, final int amount) {
+            final LongStorage longTarget = (LongStorage) target;
+            final long taken = EnergyOps.take(this, 0, Math.min(amount, EnergyOps.getFreeSpace(longTarget, 0)));
+            final long given = EnergyOps.give(longTarget, 0, taken);
+            if (given < taken) EnergyOps.giveBack(this, 0, taken - given);
+        }
+
+        @Override
+        public long stored() {
+            return this.stored.get();
+        }
+
+        @Override
+        public long getStored(final int slot) {
+            return this.stored.get();
+        }
+
+        @Override
+        public boolean casStored(final int slot, final long expected, final long value) {
+            return this.stored.compareAndSet(expected, value);
+        }
+
+        @Override
+        public long getMax(final int slot) {
+            return this.max;
+        }
+
+        @Override
+        public boolean isDirty(final int slot) {
+            return this.dirty;
+        }
+
+        @Override
+        public void setDirty(final int slot, final boolean dirty) {
+            this.dirty = dirty;
+        }
+    }
+
+    /**
+     * A page of slots kept in atomic arrays, the same layout the plugin's slabs use
+     */
+    private static final class PageSlots implements EnergySlots {
+        private final AtomicIntegerArray stored;
+        private final AtomicIntegerArray max;
+        private final AtomicIntegerArray rates;
+        private final AtomicLongArray rateTicks;
+        private final AtomicIntegerArray dirty;
+
+        private PageSlots(final int size) {
+            this.stored = new AtomicIntegerArray(size);
+            this.max = new AtomicIntegerArray(size);
+            this.rates = new AtomicIntegerArray(size);
+            this.rateTicks = new AtomicLongArray(size);
+            this.dirty = new AtomicIntegerArray(size);
+        }
+
+        private int claim(final int slot, final int max, final int stored) {
+            this.max.set(slot, max);
+            this.stored.set(slot, stored);
+            return slot;
+        }
+
+        @Override
+        public int getStored(final int slot) {
+            return this.stored.get(slot);
+        }
+
+        @Override
+        public boolean casStored(final int slot, final int expected, final int value) {
+            return this.stored.compareAndSet(slot, expected, value);
+        }
+
+        @Override
+        public int getMax(final int slot) {
+            return this.max.get(slot);
+        }
+
+        @Override
+        public int getRate(final int slot) {
+            return this.rates.get(slot);
+        }
+
+        @Override
+        public long getRateTick(final int slot) {
+            return this.rateTicks.get(slot);
+        }
+
+        @Override
+        public boolean casRateTick(final int slot, final long expected, final long value) {
+            return this.rateTicks.compareAndSet(slot, expected, value);
+        }
+
+        @Override
+        public boolean isDirty(final int slot) {
+            return this.dirty.get(slot) != 0;
+        }
+
+        @Override
+        public void setDirty(final int slot, final boolean dirty) {
+            this.dirty.set(slot, dirty ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.burchard36.energy.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EnergyDataFormatTest {
+
+    @Test
+    void encodesTheCurrentLayout() {
+        final long faces = FaceConfig.with(FaceConfig.ALL_BOTH, 2, FaceConfig.DISABLED);
+        final long[] encoded = EnergyDataFormat.encode(5_000_000_000L, 6_000_000_000L, faces, -20, 1234L, 7);
+        assertEquals(EnergyDataFormat.LENGTH, encoded.length);
+        assertEquals(EnergyDataFormat.VERSION, EnergyDataFormat.checkVersion(encoded));
+        assertEquals(5_000_000_000L, encoded[EnergyDataFormat.STORED]);
+        assertEquals(6_000_000_000L, encoded[EnergyDataFormat.MAX]);
+        assertEquals(faces, encoded[EnergyDataFormat.FACES]);
+        assertEquals(-20, encoded[EnergyDataFormat.RATE]);
+        assertEquals(1234L, encoded[EnergyDataFormat.RATE_TICK]);
+        assertEquals(7, encoded[EnergyDataFormat.PRIORITY]);
+    }
+
+    /* older data only holds the fields of its version, the reader falls back to the defaults for the rest */
+    @Test
+    void readsEveryOlderVersion() {
+        final long[] v1 = {1, 100, 1000, FaceConfig.ALL_BOTH};
+        assertEquals(1, EnergyDataFormat.checkVersion(v1));
+        assertEquals(v1.length, EnergyDataFormat.lengthOf(1));
+        assertEquals(100, v1[EnergyDataFormat.STORED]);
+
+        final long[] v2 = {2, 100, 1000, FaceConfig.ALL_BOTH, 5, 42};
+        assertEquals(2, EnergyDataFormat.checkVersion(v2));
+        assertEquals(v2.length, EnergyDataFormat.lengthOf(2));
+        assertEquals(42, v2[EnergyDataFormat.RATE_TICK]);
+
+        assertEquals(EnergyDataFormat.LENGTH, EnergyDataFormat.lengthOf(EnergyDataFormat.VERSION));
+    }
+
+    /* newer versions may only append fields, so longer data of a known version still reads */
+    @Test
+    void acceptsTrailingFields() {
+        assertEquals(1, EnergyDataFormat.checkVersion(new long[]{1, 100, 1000, FaceConfig.ALL_BOTH, 9, 9}));
+    }
+
+    @Test
+    void rejectsInvalidData() {
+        assertThrows(RuntimeException.class, () -> EnergyDataFormat.checkVersion(new long[0]));
+        assertThrows(RuntimeException.class, () -> EnergyDataFormat.checkVersion(new long[]{0, 100, 1000, FaceConfig.ALL_BOTH}));
+        assertThrows(RuntimeException.class, () -> EnergyDataFormat.checkVersion(new long[]{-1, 100, 1000, FaceConfig.ALL_BOTH}));
+        assertThrows(RuntimeException.class, () -> EnergyDataFormat.checkVersion(new long[]{EnergyDataFormat.VERSION + 1, 0, 0, 0, 0, 0, 0, 0}));
+        assertThrows(RuntimeException.class, () -> EnergyDataFormat.checkVersion(new long[]{1, 100, 1000}));
+        assertThrows(RuntimeException.class, () -> EnergyDataFormat.checkVersion(new long[]{2, 100, 1000, FaceConfig.ALL_BOTH, 5}));
+        assertThrows(RuntimeException.class, () -> EnergyDataFormat.checkVersion(new long[]{3, 100, 1000, FaceConfig.ALL_BOTH, 5, 42}));
+    }
+}
@@ -0,0 +1,116 @@
+package com.burchard36.energy.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EnergyDistributionTest {
+
+    @Test
+    void fillsHigherPrioritiesFirst() {
+        final EnergyDistribution distribution = new EnergyDistribution(3);
+        final int high = distribution.add(10, 100);
+        final int middle = distribution.add(5, 100);
+        final int low = distribution.add(0, 100);
+        assertEquals(150, distribution.solve(150));
+        assertEquals(100, distribution.getAllocation(high));
+        assertEquals(50, distribution.getAllocation(middle));
+        assertEquals(0, distribution.getAllocation(low));
+    }
+
+    /* the order receivers are added in must not matter, only their priority */
+    @Test
+    void sortsReceiversAddedInAnyOrder() {
+        final EnergyDistribution distribution = new EnergyDistribution(3);
+        final int low = distribution.add(0, 100);
+        final int high = distribution.add(10, 100);
+        final int middle = distribution.add(5, 100);
+        assertEquals(150, distribution.solve(150));
+        assertEquals(100, distribution.getAllocation(high));
+        assertEquals(50, distribution.getAllocation(middle));
+        assertEquals(0, distribution.getAllocation(low));
+    }
+
+    @Test
+    void sharesATierProportionallyToDemand() {
+        final EnergyDistribution distribution = new EnergyDistribution(2);
+        final int small = distribution.add(0, 100);
+        final int large = distribution.add(0, 300);
+        assertEquals(200, distribution.solve(200));
+        assertEquals(50, distribution.getAllocation(small));
+        assertEquals(150, distribution.getAllocation(large));
+    }
+
+    @Test
+    void neverAllocatesMoreThanSupplyOrDemand() {
+        final EnergyDistribution distribution = new EnergyDistribution(2);
+        final int first = distribution.add(0, 30);
+        final int second = distribution.add(0, -5);
+        assertEquals(30, distribution.getTotalDemand());
+        assertEquals(30, distribution.solve(1000));
+        assertEquals(30, distribution.getAllocation(first));
+        assertEquals(0, distribution.getAllocation(second));
+        assertEquals(0, distribution.solve(-10));
+        assertEquals(0, distribution.getAllocation(first));
+    }
+
+    /* rounding down every share leaves a few units, those still go out so nothing offered is held back */
+    @Test
+    void handsOutTheRoundingLeftover() {
+        final EnergyDistribution distribution = new EnergyDistribution(3);
+        for (int i = 0; i < 3; i++) distribution.add(0, 10);
+        assertEquals(10, distribution.solve(10));
+        int sum = 0;
+        for (int i = 0; i < 3; i++) sum += distribution.getAllocation(i);
+        assertEquals(10, sum);
+    }
+
+    @Test
+    void growsAndReusesItsArrays() {
+        final EnergyDistribution distribution = new EnergyDistribution(1);
+        for (int i = 0; i < 10; i++) distribution.add(i % 3, 10);
+        assertEquals(10, distribution.size());
+        assertEquals(100, distribution.solve(100));
+        distribution.clear();
+        assertEquals(0, distribution.size());
+        assertEquals(0, distribution.getTotalDemand());
+        distribution.add(0, 5);
+        assertEquals(5, distribution.solve(100));
+        assertEquals(5, distribution.getAllocation(0));
+    }
+
+    @Test
+    void randomSplitsRespectEveryBound() {
+        final Random random = new Random(7);
+        final EnergyDistribution distribution = new EnergyDistribution(4);
+        for (int round = 0; round < 2_000; round++) {
+            distribution.clear();
+            final int size = 1 + random.nextInt(20);
+            final int[] priorities = new int[size];
+            final int[] demands = new int[size];
+            for (int i = 0; i < size; i++) {
+                priorities[i] = random.nextInt(4);
+                demands[i] = random.nextInt(1_000);
+                distribution.add(priorities[i], demands[i]);
+            }
+            final long supply = random.nextInt(10_000);
+            final long allocated = distribution.solve(supply);
+            assertEquals(Math.min(supply, distribution.getTotalDemand()), allocated);
+
+            long sum = 0;
+            for (int i = 0; i < size; i++) {
+                final int allocation = distribution.getAllocation(i);
+                assertTrue(allocation >= 0 && allocation <= demands[i], "allocation " + allocation + " of " + demands[i]);
+                sum += allocation;
+                /* a receiver only gets energy once every higher priority one is full */
+                for (int j = 0; j < size; j++) {
+                    if (allocation > 0 && priorities[j] > priorities[i]) assertEquals(demands[j], distribution.getAllocation(j));
+                }
+            }
+            assertEquals(allocated, sum);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.burchard36.energy.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongObjectMapTest {
+
+    /* a map expecting a single entry has 8 slots & grows at its 4th entry */
+    private static final int MASK = 7;
+
+    /**
+     * @return count keys whose ideal slot in a map from {@link #smallMap()} is the given one, so they probe one after another
+     */
+    private static long[] keysAt(final int slot, final int count, final long after) {
+        final long[] keys = new long[count];
+        int found = 0;
+        for (long key = after + 1; found < count; key++) {
+            if ((LongObjectMap.mix(key) & MASK) == slot) keys[found++] = key;
+        }
+        return keys;
+    }
+
+    private static LongObjectMap<Long> smallMap() {
+        return new LongObjectMap<>(1);
+    }
+
+    @Test
+    void putGetReplaceRemove() {
+        final LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.put(-5L, "a"));
+        assertEquals("a", map.put(-5L, "b"));
+        assertEquals("b", map.get(-5L));
+        assertEquals(1, map.size());
+        assertEquals("b", map.remove(-5L));
+        assertNull(map.get(-5L));
+        assertNull(map.remove(-5L));
+        assertEquals(0, map.size());
+        assertThrows(NullPointerException.class, () -> map.put(1L, null));
+    }
+
+    /* the chain starts in the last slot & wraps around to the first ones */
+    @Test
+    void removeShiftsBackAcrossTheEndOfTheTable() {
+        final long[] chain = keysAt(MASK, 2, 0);
+        final long wrapped = keysAt(0, 1, 0)[0];
+        final LongObjectMap<Long> map = smallMap();
+        map.put(chain[0], chain[0]); // slot 7
+        map.put(chain[1], chain[1]); // wraps to slot 0
+        map.put(wrapped, wrapped); // ideal slot 0 is taken, lands in slot 1
+
+        assertEquals(chain[0], map.remove(chain[0]));
+        assertNull(map.get(chain[0]));
+        assertEquals(chain[1], map.get(chain[1]));
+        assertEquals(wrapped, map.get(wrapped));
+
+        assertEquals(chain[1], map.remove(chain[1]));
+        assertEquals(wrapped, map.get(wrapped));
+        assertEquals(1, map.size());
+    }
+
+    /* an entry already in its ideal slot must stay there when an entry before it is removed */
+    @Test
+    void removeKeepsEntriesInTheirIdealSlot() {
+        final long[] chain = keysAt(6, 2, 0);
+        final long ideal = keysAt(MASK, 1, 0)[0];
+        final LongObjectMap<Long> map = smallMap();
+        map.put(chain[0], chain[0]); // slot 6
+        map.put(ideal, ideal); // slot 7
+        map.put(chain[1], chain[1]); // wraps to slot 0
+
+        map.remove(chain[0]);
+        assertEquals(ideal, map.get(ideal));
+        assertEquals(chain[1], map.get(chain[1]));
+        map.remove(ideal);
+        assertEquals(chain[1], map.get(chain[1]));
+    }
+
+    @Test
+    void matchesHashMapUnderRandomChurn() {
+        final LongObjectMap<Long> map = new LongObjectMap<>();
+        final Map<Long, Long> expected = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            /* a small key range keeps the table crowded, so removals shift long chains */
+            final long key = random.nextInt(512) - 256L;
+            if (random.nextBoolean()) assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            else assertEquals(expected.remove(key), map.remove(key));
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = -256; key < 256; key++) assertEquals(expected.get(key), map.get(key));
+        final Map<Long, Long> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+}
@@ -0,0 +1,198 @@
+package com.burchard36.energy.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetworkGraphTest {
+
+    private static final int NORTH = 0;
+    private static final int EAST = 1;
+    private static final int SOUTH = 2;
+    private static final int WEST = 3;
+    private static final int UP = 4;
+
+    /**
+     * Links two nodes both ways, {@code to} lies on {@code face} of {@code from}
+     */
+    private static void link(final NetworkGraph graph, final int from, final int face, final int to) {
+        graph.setNeighbour(from, face, to);
+        graph.setNeighbour(to, NetworkGraph.opposite(face), from);
+    }
+
+    private static void openStorage(final NetworkGraph graph, final int node, final boolean extract, final boolean receive) {
+        for (int face = 0; face < NetworkGraph.FACES; face++) graph.setStorageFace(node, face, extract, receive);
+    }
+
+    private static void conduit(final NetworkGraph graph, final int node, final int throughput) {
+        for (int face = 0; face < NetworkGraph.FACES; face++) graph.setConduitFace(node, face, throughput);
+    }
+
+    @Test
+    void oppositeFaces() {
+        assertEquals(SOUTH, NetworkGraph.opposite(NORTH));
+        assertEquals(WEST, NetworkGraph.opposite(EAST));
+        assertEquals(NORTH, NetworkGraph.opposite(SOUTH));
+        assertEquals(EAST, NetworkGraph.opposite(WEST));
+        assertEquals(UP + 1, NetworkGraph.opposite(UP));
+        assertEquals(UP, NetworkGraph.opposite(UP + 1));
+    }
+
+    /* generator 0 - conduit 1 (100) - conduit 2 (40) - conduit 3 (100) - machine 4, along the east face */
+    @Test
+    void hubCapacityIsItsNarrowestFace() {
+        final NetworkGraph graph = new NetworkGraph(5);
+        for (int node = 0; node < 4; node++) link(graph, node, EAST, node + 1);
+        openStorage(graph, 0, true, false);
+        conduit(graph, 1, 100);
+        conduit(graph, 2, 40);
+        conduit(graph, 3, 100);
+        openStorage(graph, 4, false, true);
+
+        final NetworkGraph.Hubs hubs = graph.findHubs();
+        assertEquals(1, hubs.getCount());
+        assertEquals(-1, hubs.getHub(0));
+        assertEquals(0, hubs.getHub(1));
+        assertEquals(0, hubs.getHub(3));
+        assertEquals(40, hubs.getCapacity(0));
+        assertEquals(2, hubs.getPortEnd(0) - hubs.getPortStart(0));
+
+        for (int port = hubs.getPortStart(0); port < hubs.getPortEnd(0); port++) {
+            if (hubs.getPortNode(port) == 0) {
+                assertEquals(EAST, hubs.getInputFace(port));
+                assertEquals(-1, hubs.getOutputFace(port));
+            } else {
+                assertEquals(4, hubs.getPortNode(port));
+                assertEquals(-1, hubs.getInputFace(port));
+                assertEquals(WEST, hubs.getOutputFace(port));
+            }
+        }
+    }
+
+    /* only faces energy actually crosses count, a narrow face toward a closed storage does not limit the hub */
+    @Test
+    void hubCapacityIgnoresFacesCarryingNothing() {
+        final NetworkGraph graph = new NetworkGraph(4);
+        link(graph, 0, EAST, 1);
+        link(graph, 1, EAST, 2);
+        link(graph, 1, NORTH, 3);
+        openStorage(graph, 0, true, false);
+        conduit(graph, 1, 100);
+        graph.setConduitFace(1, NORTH, 5);
+        openStorage(graph, 2, false, true);
+        // node 3 is a storage without any open face
+
+        final NetworkGraph.Hubs hubs = graph.findHubs();
+        assertEquals(100, hubs.getCapacity(0));
+        assertEquals(2, hubs.getPortCount());
+    }
+
+    /* generator 0 - conduit 1 - conduit 2 - machine 3 on a wide trunk, a thin stub 4 - 5 north of 1 leads nowhere */
+    @Test
+    void hubCapacityIgnoresDeadEndBranches() {
+        final NetworkGraph graph = new NetworkGraph(7);
+        for (int node = 0; node < 3; node++) link(graph, node, EAST, node + 1);
+        link(graph, 1, NORTH, 4);
+        link(graph, 4, NORTH, 5);
+        openStorage(graph, 0, true, false);
+        conduit(graph, 1, 1000);
+        conduit(graph, 2, 1000);
+        openStorage(graph, 3, false, true);
+        conduit(graph, 4, 10);
+        conduit(graph, 5, 10);
+        openStorage(graph, 6, false, true);
+
+        final NetworkGraph.Hubs hubs = graph.findHubs();
+        assertEquals(1, hubs.getCount());
+        assertEquals(0, hubs.getHub(5));
+        assertEquals(1000, hubs.getCapacity(0));
+
+        /* once the stub leads to machine 6 energy does flow through it */
+        link(graph, 5, NORTH, 6);
+        assertEquals(10, graph.findHubs().getCapacity(0));
+    }
+
+    /* a closed face between two conduits splits them into two hubs */
+    @Test
+    void closedFaceSplitsHubs() {
+        final NetworkGraph graph = new NetworkGraph(4);
+        for (int node = 0; node < 3; node++) link(graph, node, EAST, node + 1);
+        openStorage(graph, 0, true, true);
+        conduit(graph, 1, 100);
+        conduit(graph, 2, 100);
+        graph.setConduitFace(2, WEST, 0);
+        openStorage(graph, 3, true, true);
+
+        final NetworkGraph.Hubs hubs = graph.findHubs();
+        assertEquals(2, hubs.getCount());
+        assertTrue(hubs.getHub(1) != hubs.getHub(2));
+        assertEquals(1, hubs.getPortEnd(hubs.getHub(1)) - hubs.getPortStart(hubs.getHub(1)));
+        assertEquals(1, hubs.getPortEnd(hubs.getHub(2)) - hubs.getPortStart(hubs.getHub(2)));
+    }
+
+    /* a storage touching one hub through several faces is a single port, its input & output may use different faces */
+    @Test
+    void storageTouchingAHubTwiceIsOnePort() {
+        final NetworkGraph graph = new NetworkGraph(3);
+        link(graph, 0, EAST, 1);
+        link(graph, 0, UP, 2);
+        link(graph, 1, UP + 1, 2);
+        graph.setStorageFace(0, EAST, true, false);
+        graph.setStorageFace(0, UP, false, true);
+        conduit(graph, 1, 10);
+        conduit(graph, 2, 10);
+
+        final NetworkGraph.Hubs hubs = graph.findHubs();
+        assertEquals(1, hubs.getCount());
+        assertEquals(1, hubs.getPortCount());
+        assertEquals(EAST, hubs.getInputFace(0));
+        assertEquals(UP, hubs.getOutputFace(0));
+    }
+
+    /* every storage along a long cable is one port of one hub, nothing grows with the square of the storages */
+    @Test
+    void portsGrowLinearlyWithStorages() {
+        final int length = 10_000;
+        final NetworkGraph graph = new NetworkGraph(length * 2);
+        for (int i = 0; i < length; i++) {
+            final int conduit = i * 2;
+            final int storage = conduit + 1;
+            conduit(graph, conduit, 50);
+            if (i + 1 < length) link(graph, conduit, EAST, conduit + 2);
+            link(graph, conduit, UP, storage);
+            openStorage(graph, storage, true, true);
+        }
+
+        final NetworkGraph.Hubs hubs = graph.findHubs();
+        assertEquals(1, hubs.getCount());
+        assertEquals(length, hubs.getPortCount());
+        assertEquals(50, hubs.getCapacity(0));
+    }
+
+    /* 0 only extracts, 1 does both, 2 only extracts */
+    @Test
+    void directOutputsNeedAnOpenFaceOnBothSides() {
+        final NetworkGraph graph = new NetworkGraph(3);
+        link(graph, 0, EAST, 1);
+        link(graph, 1, EAST, 2);
+        openStorage(graph, 0, true, false);
+        openStorage(graph, 1, true, true);
+        openStorage(graph, 2, true, false);
+
+        final int[] outputs = graph.findDirectOutputs();
+        assertEquals(1 << EAST, outputs[0]);
+        assertEquals(0, outputs[1]);
+        assertEquals(1 << WEST, outputs[2]);
+    }
+
+    /* 2 is the only node nothing pushes into, the walk starts there & visits faces in index order */
+    @Test
+    void breadthFirstOrderStartsAtGenerators() {
+        final NetworkGraph graph = new NetworkGraph(4);
+        for (int node = 0; node < 3; node++) link(graph, node, EAST, node + 1);
+        final int[] order = graph.breadthFirstOrder(new int[]{1, 1, 0, 1});
+        assertArrayEquals(new int[]{2, 3, 1, 0}, order);
+    }
+}